@@ -0,0 +1,146 @@
+package com.shepherdmoney.interviewproject.benchmark;
+
+import com.shepherdmoney.interviewproject.InterviewProjectApplication;
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
+import com.shepherdmoney.interviewproject.job.CardNumberFilterLoader;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The application without its web server on an in-memory H2 database, seeded with `cards` cards spread over
+ * one user per ten cards, each with a dense history of `historyDays` days ending yesterday. Seeded rows use
+ * negative ids so they never collide with ids handed out by the sequences.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    private static final int SEED_CHUNK_CARDS = 100;
+
+    // Read by SqlStatementProfiler, which JMH instantiates on its own
+    private static volatile Statistics statistics;
+
+    private static final AtomicLong excludedStatements = new AtomicLong();
+
+    @Param({"1000", "10000"})
+    public int cards;
+
+    @Param({"30", "365"})
+    public int historyDays;
+
+    private ConfigurableApplicationContext context;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private CardLookupCache cardLookupCache;
+
+    private CreditCardService creditCardService;
+
+    private int users;
+
+    private final AtomicInteger nextCardId = new AtomicInteger();
+
+    private final AtomicLong nextHistoryId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(InterviewProjectApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:jmh-" + cards + "-" + historyDays + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.generate_statistics=true",
+                        "--logging.level.root=WARN");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        cardLookupCache = context.getBean(CardLookupCache.class);
+        creditCardService = context.getBean(CreditCardService.class);
+
+        users = Math.max(1, cards / 10);
+        jdbcTemplate.update("INSERT INTO my_user (id, name, email) " +
+                "SELECT -X, 'bench', 'bench@example.com' FROM SYSTEM_RANGE(1, ?)", users);
+        jdbcTemplate.update("INSERT INTO credit_card (id, issuance_bank, number, user_id) " +
+                "SELECT -X, 'Bench Bank', CONCAT('jmh-', X), -(MOD(X, ?) + 1) FROM SYSTEM_RANGE(1, ?)", users, cards);
+        for (int card = 1; card <= cards; card += SEED_CHUNK_CARDS) {
+            jdbcTemplate.update("INSERT INTO balance_history (id, balance, date, credit_card_id) " +
+                            "SELECT -(C.X * ? + D.X), D.X, DATEADD('DAY', -D.X, CURRENT_DATE), -C.X " +
+                            "FROM SYSTEM_RANGE(?, ?) C, SYSTEM_RANGE(1, ?) D",
+                    historyDays, card, Math.min(card + SEED_CHUNK_CARDS - 1, cards), historyDays);
+        }
+        nextCardId.set(-cards - 1);
+        nextHistoryId.set(-(long) (cards + 2) * historyDays);
+        context.getBean(CardNumberFilterLoader.class).reload();
+
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        statistics = null;
+        context.close();
+    }
+
+    public CreditCardService creditCardService() {
+        return creditCardService;
+    }
+
+    public String randomCardNumber() {
+        return "jmh-" + (1 + ThreadLocalRandom.current().nextInt(cards));
+    }
+
+    public int randomUserId() {
+        return -(1 + ThreadLocalRandom.current().nextInt(users));
+    }
+
+    public LocalDate earliestDate() {
+        return LocalDate.now().minusDays(historyDays);
+    }
+
+    /**
+     * Create a card whose history only has an entry every `step` days over the seeded range, so its next
+     * update has to fill every gap. Its statements are not counted against the benchmark.
+     *
+     * @return The card number
+     */
+    public String createGappedCard(int step) {
+        long before = statistics.getPrepareStatementCount();
+        int id = nextCardId.getAndDecrement();
+        String number = "jmh-gapped" + id;
+        jdbcTemplate.update("INSERT INTO credit_card (id, issuance_bank, number, user_id) VALUES (?, 'Bench Bank', ?, -1)", id, number);
+        int entries = (historyDays + step - 1) / step;
+        long firstHistoryId = nextHistoryId.getAndAdd(-entries);
+        jdbcTemplate.update("INSERT INTO balance_history (id, balance, date, credit_card_id) " +
+                        "SELECT ? - X, X, DATEADD('DAY', -(? - X * ?), CURRENT_DATE), ? FROM SYSTEM_RANGE(0, ?)",
+                firstHistoryId, historyDays, step, id, entries - 1);
+        cardLookupCache.cardCreated(number);
+        excludedStatements.addAndGet(statistics.getPrepareStatementCount() - before);
+        return number;
+    }
+
+    /**
+     * @return Statement counters of the running trial, null between trials
+     */
+    static Statistics statistics() {
+        return statistics;
+    }
+
+    /**
+     * @return Statements issued by benchmark setup code since startup, to be left out of per-operation counts
+     */
+    static long excludedStatements() {
+        return excludedStatements.get();
+    }
+}
@@ -0,0 +1,81 @@
+package com.shepherdmoney.interviewproject.benchmark;
+
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.CreditCardView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the service hot paths. Run with the gc profiler for the allocation rate and with
+ * SqlStatementProfiler for the statements per operation; `./gradlew jmh` enables both.
+ * <p>
+ * Update cases: same-day rewrites the latest entry of a card, backdated rewrites its earliest entry so every
+ * later one shifts, gap-heavy updates a fresh card holding one entry per week so the update fills the gaps.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreditCardServiceBenchmark {
+
+    private static final int GAP_STEP_DAYS = 7;
+
+    @State(Scope.Thread)
+    public static class GappedCard {
+
+        private String number;
+
+        @Setup(Level.Invocation)
+        public void create(BenchmarkDatabase database) {
+            number = database.createGappedCard(GAP_STEP_DAYS);
+        }
+    }
+
+    @Benchmark
+    public String updateBalance_SameDay(BenchmarkDatabase database) {
+        return update(database, database.randomCardNumber(), LocalDate.now().minusDays(1));
+    }
+
+    @Benchmark
+    public String updateBalance_Backdated(BenchmarkDatabase database) {
+        return update(database, database.randomCardNumber(), database.earliestDate());
+    }
+
+    @Benchmark
+    public String updateBalance_GapHeavy(BenchmarkDatabase database, GappedCard card) {
+        return update(database, card.number, LocalDate.now().minusDays(1));
+    }
+
+    @Benchmark
+    public Integer getUserByCreditCardNumber(BenchmarkDatabase database) {
+        return database.creditCardService().getUserByCreditCardNumber(database.randomCardNumber());
+    }
+
+    @Benchmark
+    public List<CreditCardView> getCreditCardsByUserId(BenchmarkDatabase database) {
+        return database.creditCardService().getCreditCardsByUserId(database.randomUserId());
+    }
+
+    private static String update(BenchmarkDatabase database, String cardNumber, LocalDate date) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(cardNumber);
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(ThreadLocalRandom.current().nextInt(10_000));
+        return database.creditCardService().updateBalanceHistory(new UpdateBalancePayload[]{payload});
+    }
+}
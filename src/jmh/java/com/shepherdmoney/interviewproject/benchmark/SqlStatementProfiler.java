@@ -0,0 +1,52 @@
+package com.shepherdmoney.interviewproject.benchmark;
+
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reports the JDBC statements Hibernate prepared per benchmark operation, next to throughput.
+ * Enable with -prof com.shepherdmoney.interviewproject.benchmark.SqlStatementProfiler.
+ */
+public class SqlStatementProfiler implements InternalProfiler {
+
+    // Kept from the start of the iteration, the trial may be torn down before afterIteration runs
+    private Statistics statistics;
+
+    private long statementsBefore;
+
+    private long excludedBefore;
+
+    @Override
+    public String getDescription() {
+        return "SQL statements per operation, from the Hibernate statistics of the benchmarked application";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        statistics = BenchmarkDatabase.statistics();
+        statementsBefore = statistics == null ? 0 : statistics.getPrepareStatementCount();
+        excludedBefore = BenchmarkDatabase.excludedStatements();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        long operations = result.getMetadata().getAllOps();
+        // The application starts within the first iteration of a trial, which is a warmup one
+        if (statistics == null || operations == 0) {
+            return List.of();
+        }
+        long statements = statistics.getPrepareStatementCount() - statementsBefore
+                - (BenchmarkDatabase.excludedStatements() - excludedBefore);
+        return List.of(new ScalarResult("·sql.statements", (double) statements / operations, "statements/op", AggregationPolicy.AVG));
+    }
+}
@@ -2,10 +2,14 @@ package com.shepherdmoney.interviewproject;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaRepositories
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class InterviewProjectApplication {
     public static void main(String[] args) {
         SpringApplication.run(InterviewProjectApplication.class, args);
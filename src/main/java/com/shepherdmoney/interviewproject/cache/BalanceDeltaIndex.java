@@ -0,0 +1,103 @@
+package com.shepherdmoney.interviewproject.cache;
+
+import java.util.Arrays;
+
+/**
+ * Fenwick tree over the days of one card's delta log. Adding a delta and summing every delta before a
+ * day are both O(log n) in the number of days covered. The covered days grow on demand in both directions,
+ * which rebuilds the tree in O(n), so growth is amortized by doubling the capacity.
+ */
+public final class BalanceDeltaIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Epoch day of the first covered day
+    private int origin;
+
+    // Delta of each covered day, needed to rebuild the tree when the covered days grow
+    private long[] deltas;
+
+    // 1-based Fenwick tree over deltas
+    private long[] tree;
+
+    public BalanceDeltaIndex() {
+    }
+
+    private BalanceDeltaIndex(BalanceDeltaIndex other) {
+        this.origin = other.origin;
+        this.deltas = other.deltas == null ? null : other.deltas.clone();
+        this.tree = other.tree == null ? null : other.tree.clone();
+    }
+
+    /**
+     * @return An independent copy, so an update can work on the index without touching the shared one
+     */
+    public BalanceDeltaIndex copy() {
+        return new BalanceDeltaIndex(this);
+    }
+
+    public boolean isEmpty() {
+        return deltas == null;
+    }
+
+    /**
+     * Record a delta that shifts every day after the given one
+     */
+    public void add(int epochDay, long delta) {
+        if (deltas == null) {
+            origin = epochDay - INITIAL_CAPACITY / 2;
+            deltas = new long[INITIAL_CAPACITY];
+            tree = new long[INITIAL_CAPACITY + 1];
+        } else if (epochDay < origin || epochDay >= origin + deltas.length) {
+            grow(epochDay);
+        }
+        int position = epochDay - origin;
+        deltas[position] += delta;
+        for (int i = position + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @return The sum of every delta dated strictly before the given day
+     */
+    public long sumBefore(int epochDay) {
+        if (deltas == null) {
+            return 0;
+        }
+        int count = Math.min(epochDay - origin, deltas.length);
+        long sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void grow(int epochDay) {
+        int first = Math.min(origin, epochDay);
+        int last = Math.max(origin + deltas.length - 1, epochDay);
+        int capacity = deltas.length;
+        while (capacity < 2 * (last - first + 1)) {
+            capacity *= 2;
+        }
+        // Leave room on both sides, backdated corrections are as likely as new ones
+        int newOrigin = first - (capacity - (last - first + 1)) / 2;
+        long[] newDeltas = new long[capacity];
+        System.arraycopy(deltas, 0, newDeltas, origin - newOrigin, deltas.length);
+        origin = newOrigin;
+        deltas = newDeltas;
+        tree = new long[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            tree[i] += deltas[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BalanceDeltaIndex{origin=" + origin + ", deltas=" + Arrays.toString(deltas) + "}";
+    }
+}
@@ -0,0 +1,43 @@
+package com.shepherdmoney.interviewproject.cache;
+
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Delta indexes of the cards updated in delta-log mode, keyed by credit card id. An index is only published
+ * after the transaction that produced it has committed, and callers never mutate a published index.
+ * Bounded like the timeline cache.
+ */
+@Component
+public class BalanceDeltaIndexCache {
+
+    private final Map<Integer, BalanceDeltaIndex> indexes;
+
+    public BalanceDeltaIndexCache(BalanceProperties balanceProperties) {
+        int maxCards = balanceProperties.getCache().getMaxCards();
+        this.indexes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BalanceDeltaIndex> eldest) {
+                return size() > maxCards;
+            }
+        };
+    }
+
+    /**
+     * @return The cached index of the card, null if it is not cached
+     */
+    public synchronized BalanceDeltaIndex get(int creditCardId) {
+        return indexes.get(creditCardId);
+    }
+
+    public synchronized void put(int creditCardId, BalanceDeltaIndex index) {
+        indexes.put(creditCardId, index);
+    }
+
+    public synchronized void invalidate(int creditCardId) {
+        indexes.remove(creditCardId);
+    }
+}
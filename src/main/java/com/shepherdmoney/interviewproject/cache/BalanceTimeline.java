@@ -0,0 +1,109 @@
+package com.shepherdmoney.interviewproject.cache;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable balance history of one credit card, stored as two parallel primitive arrays sorted by date:
+ * the epoch day of every entry and its balance in cents. Lookups are binary searches returning an index, so point,
+ * closest-date and range reads never allocate.
+ */
+public final class BalanceTimeline {
+
+    /**
+     * Receives the entries of a range read
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int epochDay, long balance);
+    }
+
+    private final int[] epochDays;
+
+    private final long[] balances;
+
+    /**
+     * @param epochDays Epoch days in strictly ascending order, owned by the timeline from now on
+     * @param balances  The balance of each day, same length as epochDays
+     */
+    public BalanceTimeline(int[] epochDays, long[] balances) {
+        if (epochDays.length != balances.length) {
+            throw new IllegalArgumentException("epochDays and balances must have the same length");
+        }
+        this.epochDays = epochDays;
+        this.balances = balances;
+    }
+
+    public static int toEpochDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    public int size() {
+        return epochDays.length;
+    }
+
+    public int epochDayAt(int index) {
+        return epochDays[index];
+    }
+
+    public long balanceAt(int index) {
+        return balances[index];
+    }
+
+    /**
+     * @return The index of the entry of the given day, -1 if that day has no entry
+     */
+    public int indexOf(int epochDay) {
+        int index = search(epochDay);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @return The index of the latest entry on or before the given day, -1 if there is none
+     */
+    public int floorIndex(int epochDay) {
+        int index = search(epochDay);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * @return The index of the earliest entry on or after the given day, -1 if there is none
+     */
+    public int ceilingIndex(int epochDay) {
+        int index = search(epochDay);
+        if (index >= 0) {
+            return index;
+        }
+        int insertionPoint = -index - 1;
+        return insertionPoint < epochDays.length ? insertionPoint : -1;
+    }
+
+    /**
+     * Visit every entry between two days, both inclusive, in ascending date order
+     */
+    public void forEachInRange(int fromEpochDay, int toEpochDay, EntryConsumer consumer) {
+        int index = ceilingIndex(fromEpochDay);
+        if (index < 0) {
+            return;
+        }
+        for (; index < epochDays.length && epochDays[index] <= toEpochDay; index++) {
+            consumer.accept(epochDays[index], balances[index]);
+        }
+    }
+
+    private int search(int epochDay) {
+        int low = 0;
+        int high = epochDays.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midDay = epochDays[mid];
+            if (midDay < epochDay) {
+                low = mid + 1;
+            } else if (midDay > epochDay) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
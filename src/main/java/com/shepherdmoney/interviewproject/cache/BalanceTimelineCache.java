@@ -0,0 +1,52 @@
+package com.shepherdmoney.interviewproject.cache;
+
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write-through cache of per-card balance timelines, keyed by credit card id. Timelines are replaced as a
+ * whole after every committed balance update, and the least recently used card is evicted once the
+ * configured number of cards is reached.
+ */
+@Component
+public class BalanceTimelineCache {
+
+    private final Map<Integer, BalanceTimeline> timelines;
+
+    public BalanceTimelineCache(BalanceProperties balanceProperties) {
+        int maxCards = balanceProperties.getCache().getMaxCards();
+        this.timelines = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BalanceTimeline> eldest) {
+                return size() > maxCards;
+            }
+        };
+    }
+
+    /**
+     * @return The cached timeline of the card, null if it is not cached
+     */
+    public synchronized BalanceTimeline get(int creditCardId) {
+        return timelines.get(creditCardId);
+    }
+
+    public synchronized void put(int creditCardId, BalanceTimeline timeline) {
+        timelines.put(creditCardId, timeline);
+    }
+
+    public synchronized void invalidate(int creditCardId) {
+        timelines.remove(creditCardId);
+    }
+
+    public synchronized void invalidateAll(Collection<Integer> creditCardIds) {
+        timelines.keySet().removeAll(creditCardIds);
+    }
+
+    public synchronized int size() {
+        return timelines.size();
+    }
+}
@@ -0,0 +1,159 @@
+package com.shepherdmoney.interviewproject.cache;
+
+import com.shepherdmoney.interviewproject.config.CardLookupProperties;
+import com.shepherdmoney.interviewproject.vo.response.CardLookupStatsView;
+import com.shepherdmoney.interviewproject.vo.response.CardOwnerView;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Card number to (card id, user id) cache in front of CreditCardRepository. Unknown numbers are cached as
+ * well, entries expire after the configured TTL and the least recently used one is evicted once the cache
+ * is full. A Bloom filter over every card number rejects numbers that were never seen without a lookup;
+ * until the filter is loaded on startup every number passes it.
+ * <p>
+ * The loader runs outside the monitor, so a card may be created or deleted between its read and the put of
+ * its result. Every invalidation advances a generation, and a loaded result is only cached if no
+ * invalidation happened since the lookup started; otherwise it is returned without being cached.
+ */
+@Component
+public class CardLookupCache {
+
+    // Cached owner, null for a number that does not exist
+    private record Entry(CardOwnerView owner, long expiresAtNanos) {
+    }
+
+    private final Map<String, Entry> entries;
+
+    private final long ttlNanos;
+
+    // Number of invalidations so far, guarded by the monitor
+    private long generation;
+
+    private volatile CardNumberBloomFilter filter;
+
+    // Filter being loaded, receives the cards created during the load as well
+    private volatile CardNumberBloomFilter pendingFilter;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder bloomRejections = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    public CardLookupCache(CardLookupProperties cardLookupProperties) {
+        int maxEntries = cardLookupProperties.getMaxEntries();
+        this.ttlNanos = cardLookupProperties.getTtl().toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Look a card number up, rejected by the Bloom filter, then from the cache, then through the loader
+     *
+     * @param loader Reads the owner of a card number from the database
+     * @return The card and its owner, empty if the card does not exist
+     */
+    public Optional<CardOwnerView> find(String cardNumber, Function<String, Optional<CardOwnerView>> loader) {
+        if (!mightExist(cardNumber)) {
+            return Optional.empty();
+        }
+        long now = System.nanoTime();
+        Entry entry;
+        long loadGeneration;
+        synchronized (this) {
+            entry = entries.get(cardNumber);
+            loadGeneration = generation;
+        }
+        if (entry != null && entry.expiresAtNanos() - now > 0) {
+            hits.increment();
+            return Optional.ofNullable(entry.owner());
+        }
+        misses.increment();
+        Optional<CardOwnerView> owner = loader.apply(cardNumber);
+        if (owner.isEmpty() && filter != null) {
+            falsePositives.increment();
+        }
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(cardNumber, new Entry(owner.orElse(null), now + ttlNanos));
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * @return false if the Bloom filter proves the card number was never created
+     */
+    public boolean mightExist(String cardNumber) {
+        CardNumberBloomFilter current = filter;
+        if (current != null && !current.mightContain(cardNumber)) {
+            bloomRejections.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * A card has been created: let it pass the Bloom filter and drop a cached "not found"
+     */
+    public void cardCreated(String cardNumber) {
+        CardNumberBloomFilter current = filter;
+        if (current != null) {
+            current.add(cardNumber);
+        }
+        CardNumberBloomFilter pending = pendingFilter;
+        if (pending != null) {
+            pending.add(cardNumber);
+        }
+        invalidate(cardNumber);
+    }
+
+    public synchronized void invalidate(String cardNumber) {
+        generation++;
+        entries.remove(cardNumber);
+    }
+
+    /**
+     * Drop the cached cards of a user
+     */
+    public synchronized void invalidateUser(int userId) {
+        generation++;
+        entries.values().removeIf(entry -> entry.owner() != null
+                && entry.owner().getUserId() != null && entry.owner().getUserId() == userId);
+    }
+
+    /**
+     * Start loading a new Bloom filter; cards created from now on are added to it as well as to the current one
+     */
+    public void beginFilterLoad(CardNumberBloomFilter loading) {
+        pendingFilter = loading;
+    }
+
+    /**
+     * Replace the Bloom filter by the one loaded since beginFilterLoad
+     */
+    public void completeFilterLoad() {
+        filter = pendingFilter;
+        pendingFilter = null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public CardLookupStatsView stats() {
+        return new CardLookupStatsView(hits.sum(), misses.sum(), bloomRejections.sum(), falsePositives.sum(), size());
+    }
+}
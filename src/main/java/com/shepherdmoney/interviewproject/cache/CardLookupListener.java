@@ -0,0 +1,39 @@
+package com.shepherdmoney.interviewproject.cache;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps the card lookup cache in step with card inserts and deletes, whichever code path made them.
+ * Adding a number to the Bloom filter before the transaction commits is harmless: a rolled back card
+ * only costs a false positive. A "not found" cached by a lookup racing with the insert is dropped again
+ * once the card is committed.
+ */
+public class CardLookupListener {
+
+    @Autowired
+    private CardLookupCache cardLookupCache;
+
+    @PostPersist
+    public void cardCreated(CreditCard creditCard) {
+        String cardNumber = creditCard.getNumber();
+        cardLookupCache.cardCreated(cardNumber);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cardLookupCache.invalidate(cardNumber);
+                }
+            });
+        }
+    }
+
+    @PostRemove
+    public void cardRemoved(CreditCard creditCard) {
+        cardLookupCache.invalidate(creditCard.getNumber());
+    }
+}
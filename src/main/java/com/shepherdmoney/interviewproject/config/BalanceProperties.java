@@ -0,0 +1,241 @@
+package com.shepherdmoney.interviewproject.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Tuning of the balance history storage, bound from the "balance.*" properties
+ */
+@Data
+@ConfigurationProperties(prefix = "balance")
+public class BalanceProperties {
+
+    private Cache cache = new Cache();
+
+    private Store store = new Store();
+
+    private Storage storage = new Storage();
+
+    private DeltaLog deltaLog = new DeltaLog();
+
+    private EventLog eventLog = new EventLog();
+
+    private Rollover rollover = new Rollover();
+
+    private Ingest ingest = new Ingest();
+
+    private Locking locking = new Locking();
+
+    private BulkImport bulkImport = new BulkImport();
+
+    private Export export = new Export();
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Maximum number of card timelines kept in memory, the least recently used one is evicted first
+         */
+        private int maxCards = 10_000;
+    }
+
+    @Data
+    public static class Store {
+
+        /**
+         * Where balance history entries are kept, users and cards always stay in the database
+         */
+        private StoreType type = StoreType.JPA;
+
+        /**
+         * Directory of the MAPPED store segment files, empty for a temporary directory removed on shutdown
+         */
+        private String directory = "";
+
+        /**
+         * Size of one memory-mapped segment file of the MAPPED store
+         */
+        private DataSize regionSize = DataSize.ofMegabytes(64);
+    }
+
+    @Data
+    public static class Storage {
+
+        /**
+         * How balance history rows are persisted
+         */
+        private StorageMode mode = StorageMode.DENSE;
+
+        /**
+         * Remove the redundant rows of existing dense histories on startup, only honoured in SPARSE mode
+         */
+        private boolean compactOnStartup = false;
+    }
+
+    @Data
+    public static class DeltaLog {
+
+        /**
+         * Record retroactive corrections as (date, delta) rows instead of rewriting every later balance
+         */
+        private boolean enabled = false;
+
+        /**
+         * Pause between two runs of the job folding the deltas back into the stored balances
+         */
+        private Duration foldInterval = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class EventLog {
+
+        /**
+         * Append every applied update batch to a local log the balance histories can be rebuilt from
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the log segments and snapshots
+         */
+        private String directory = "balance-events";
+
+        /**
+         * Size at which the current log segment is closed and a new one started
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Pause between two snapshots, each one lets the log segments it covers be deleted
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(10);
+
+        /**
+         * Rewrite the histories of every logged card from the latest snapshot and the log tail on startup
+         */
+        private boolean rebuildOnStartup = true;
+    }
+
+    @Data
+    public static class Rollover {
+
+        /**
+         * Let a daily job carry balances forward over days without an entry instead of filling gaps on every
+         * update, only in DENSE mode without the delta log
+         */
+        private boolean enabled = false;
+
+        /**
+         * When the job runs, it also runs once on startup to catch up on the days missed while down
+         */
+        private String cron = "0 5 0 * * *";
+
+        /**
+         * Cards carried forward per statement and transaction
+         */
+        private int chunkCards = 500;
+
+        /**
+         * Chunks carried forward at once
+         */
+        private int parallelism = 4;
+    }
+
+    @Data
+    public static class Ingest {
+
+        /**
+         * Number of single-writer partitions of asynchronous update-balance batches, 0 for one per core
+         */
+        private int partitions = 0;
+
+        /**
+         * Maximum number of queued payloads per partition, also the largest share of one batch a partition accepts
+         */
+        private int queueCapacity = 100_000;
+
+        /**
+         * What a submission does when a partition queue it needs is full
+         */
+        private Backpressure backpressure = Backpressure.REJECT;
+
+        /**
+         * How long a BLOCK submission waits for queue capacity before it is rejected
+         */
+        private Duration offerTimeout = Duration.ofSeconds(1);
+
+        /**
+         * Maximum number of tickets kept for status queries, the finished one that finished first is forgotten
+         * first. Queued and running tickets are always kept
+         */
+        private int maxTickets = 10_000;
+
+        /**
+         * How long a finished ticket is kept for status queries
+         */
+        private Duration ticketTtl = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Locking {
+
+        /**
+         * Number of lock stripes over card ids, updates of cards on different stripes run in parallel
+         */
+        private int stripes = 1_024;
+    }
+
+    @Data
+    public static class BulkImport {
+
+        /**
+         * Number of parsed lines of an import or of a streamed bulk creation applied and committed together
+         */
+        private int chunkSize = 1_000;
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * Number of rows the JDBC driver fetches per round trip while an export streams
+         */
+        private int fetchSize = 1_000;
+    }
+
+    public enum Backpressure {
+        /**
+         * Reject the submission right away
+         */
+        REJECT,
+        /**
+         * Wait up to the offer timeout for queue capacity, then reject
+         */
+        BLOCK
+    }
+
+    public enum StoreType {
+        /**
+         * One balance_history row per entry, read and written through JPA
+         */
+        JPA,
+        /**
+         * Per-card columnar segments (epoch days, then balances) in memory-mapped files, appended on write
+         */
+        MAPPED
+    }
+
+    public enum StorageMode {
+        /**
+         * One row per card per day, gaps are filled with the previous balance when a card is updated
+         */
+        DENSE,
+        /**
+         * Only the days where the balance changes are stored, the days in between are derived on read
+         * by carrying the previous change forward
+         */
+        SPARSE
+    }
+}
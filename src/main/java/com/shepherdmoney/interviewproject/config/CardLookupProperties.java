@@ -0,0 +1,34 @@
+package com.shepherdmoney.interviewproject.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Tuning of the card number lookup cache, bound from the "card-lookup.*" properties
+ */
+@Data
+@ConfigurationProperties(prefix = "card-lookup")
+public class CardLookupProperties {
+
+    /**
+     * Maximum number of card numbers cached, the least recently used one is evicted first
+     */
+    private int maxEntries = 100_000;
+
+    /**
+     * How long a cached card number, found or not, is trusted
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Number of cards the Bloom filter is sized for when there are fewer cards than that on startup
+     */
+    private int expectedCards = 1_000_000;
+
+    /**
+     * Target false positive rate of the Bloom filter at its expected number of cards
+     */
+    private double falsePositiveRate = 0.01;
+}
@@ -0,0 +1,57 @@
+package com.shepherdmoney.interviewproject.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs request handling on virtual threads when execution.mode is VIRTUAL: Tomcat hands every request to a
+ * new virtual thread instead of its bounded pool, and asynchronous MVC handlers use virtual threads as well.
+ * <p>
+ * Pinning review of the blocking JPA path. The balance update path waits on ReentrantLocks (card stripes) and
+ * Semaphores (update bulkhead, ingestion queues), which unmount a waiting virtual thread. The synchronized
+ * blocks of the caches only guard in-memory maps, and CardLookupCache calls its database loader outside its
+ * monitor, so none of them blocks while holding a monitor. What is left is H2 itself, which synchronizes on
+ * its session while a statement runs: a virtual thread inside a JDBC call keeps its carrier. The Hikari pool
+ * size bounds how many threads can be inside JDBC at once, and the update bulkhead keeps slow batches from
+ * taking all of them. Run with -Djdk.tracePinnedThreads=short to see any remaining pinned stack.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "execution", name = "mode", havingValue = "virtual")
+public class ExecutionConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionConfig.class);
+
+    private final Optional<ExecutorService> virtualThreads = VirtualThreads.newPerTaskExecutor();
+
+    public ExecutionConfig() {
+        if (virtualThreads.isEmpty()) {
+            logger.warn("execution.mode=VIRTUAL needs Java 21, running on Java {} with platform threads", Runtime.version().feature());
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> virtualThreads.ifPresent(protocolHandler::setExecutor);
+    }
+
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncSupport() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                virtualThreads.ifPresent(executor -> configurer.setTaskExecutor(new TaskExecutorAdapter(executor)));
+            }
+        };
+    }
+}
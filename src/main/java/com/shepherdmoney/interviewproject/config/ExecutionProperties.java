@@ -0,0 +1,41 @@
+package com.shepherdmoney.interviewproject.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Threads serving HTTP requests, bound from the "execution.*" properties
+ */
+@Data
+@ConfigurationProperties(prefix = "execution")
+public class ExecutionProperties {
+
+    /**
+     * Threads running request handling and the service calls made from it
+     */
+    private ExecutionMode mode = ExecutionMode.PLATFORM;
+
+    /**
+     * Maximum number of update-balance requests applying their batch at once, so that they cannot take every
+     * pooled connection away from cheap reads. Asynchronous ingestion and imports are not counted
+     */
+    private int maxConcurrentUpdates = 4;
+
+    /**
+     * How long an update-balance batch waits for its turn before it is rejected
+     */
+    private Duration updateWaitTimeout = Duration.ofSeconds(30);
+
+    public enum ExecutionMode {
+        /**
+         * The bounded Tomcat thread pool, server.tomcat.threads.max
+         */
+        PLATFORM,
+        /**
+         * One virtual thread per request; needs Java 21, falls back to PLATFORM with a warning on older runtimes
+         */
+        VIRTUAL
+    }
+}
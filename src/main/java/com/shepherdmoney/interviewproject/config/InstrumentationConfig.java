@@ -0,0 +1,19 @@
+package com.shepherdmoney.interviewproject.config;
+
+import com.shepherdmoney.interviewproject.metrics.RequestStatementInspector;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lets Hibernate report every statement it prepares, so requests can be measured by their SQL statements
+ */
+@Configuration
+public class InstrumentationConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer requestStatementInspector() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new RequestStatementInspector());
+    }
+}
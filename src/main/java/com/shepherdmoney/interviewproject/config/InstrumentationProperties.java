@@ -0,0 +1,24 @@
+package com.shepherdmoney.interviewproject.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Request instrumentation, bound from the "instrumentation.*" properties
+ */
+@Data
+@ConfigurationProperties(prefix = "instrumentation")
+public class InstrumentationProperties {
+
+    /**
+     * Requests taking longer than this are logged with their SQL statement breakdown
+     */
+    private Duration slowRequestThreshold = Duration.ofSeconds(1);
+
+    /**
+     * Number of distinct statements listed in a slow request log line, the most frequent first
+     */
+    private int slowRequestTopStatements = 5;
+}
@@ -0,0 +1,31 @@
+package com.shepherdmoney.interviewproject.config;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads while the project still compiles against Java 17. The factory method is looked
+ * up reflectively, so the same build runs virtual threads on a Java 21 runtime and falls back elsewhere.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return An executor starting one virtual thread per task, empty if the runtime has no virtual threads
+     */
+    public static Optional<ExecutorService> newPerTaskExecutor() {
+        if (Runtime.version().feature() < 21) {
+            return Optional.empty();
+        }
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Optional.of((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.shepherdmoney.interviewproject.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Synthetic dataset and traffic for capacity tests, bound from the "workload.*" properties
+ */
+@Data
+@ConfigurationProperties(prefix = "workload")
+public class WorkloadProperties {
+
+    private Generate generate = new Generate();
+
+    private Replay replay = new Replay();
+
+    @Data
+    public static class Generate {
+
+        /**
+         * Number of users bulk-loaded on startup, 0 to load nothing
+         */
+        private int users = 0;
+
+        private int cardsPerUser = 3;
+
+        /**
+         * Days of dense balance history of every card, ending yesterday
+         */
+        private int historyDays = 365;
+
+        /**
+         * Card numbers and balances are derived from it, the same seed gives the same dataset
+         */
+        private long seed = 42;
+    }
+
+    @Data
+    public static class Replay {
+
+        /**
+         * Replay the operation mix against the embedded server once the dataset is loaded
+         */
+        private boolean enabled = false;
+
+        /**
+         * Operations started per second, whatever the latency of earlier ones
+         */
+        private int rate = 200;
+
+        private Duration duration = Duration.ofMinutes(1);
+
+        /**
+         * Client threads sending requests; when they are all busy, operations queue and their wait counts
+         * towards their latency
+         */
+        private int threads = 64;
+
+        private Mix mix = new Mix();
+    }
+
+    /**
+     * Relative weights of the operations
+     */
+    @Data
+    public static class Mix {
+
+        // GET /credit-card:user-id
+        private int lookup = 50;
+
+        // GET /credit-card:all
+        private int userCards = 10;
+
+        // POST /credit-card
+        private int newCard = 5;
+
+        // POST /credit-card:update-balance for today
+        private int sameDayUpdate = 25;
+
+        // POST /credit-card:update-balance for a day of the history, shifting every later day
+        private int backdatedUpdate = 10;
+    }
+}
@@ -1,17 +1,36 @@
 package com.shepherdmoney.interviewproject.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.service.BalanceExportService;
+import com.shepherdmoney.interviewproject.service.BalanceFileFormat;
+import com.shepherdmoney.interviewproject.service.BalanceImportService;
+import com.shepherdmoney.interviewproject.service.BalanceIngestionService;
+import com.shepherdmoney.interviewproject.service.BulkCreationService;
 import com.shepherdmoney.interviewproject.service.CreditCardService;
 import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
 import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
-import com.shepherdmoney.interviewproject.vo.response.CreditCardView;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BulkCreateResultView;
+import com.shepherdmoney.interviewproject.vo.response.CardLookupStatsView;
+import com.shepherdmoney.interviewproject.vo.response.IngestTicketView;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @Api(tags = "Credit Card Management")
 @RestController
@@ -21,6 +40,21 @@ public class CreditCardController {
     @Autowired
     private CreditCardService creditCardService;
 
+    @Autowired
+    private BalanceIngestionService balanceIngestionService;
+
+    @Autowired
+    private BalanceImportService balanceImportService;
+
+    @Autowired
+    private BalanceExportService balanceExportService;
+
+    @Autowired
+    private BulkCreationService bulkCreationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @ApiOperation(value = "Add a credit card for a user")
     @PostMapping("/credit-card")
     public ResponseEntity<Integer> addCreditCardToUser(@RequestBody AddCreditCardToUserPayload payload) {
@@ -31,14 +65,41 @@ public class CreditCardController {
         return ResponseEntity.ok(creditCardService.createCardForUser(payload));
     }
 
-    @ApiOperation(value = "Get credit cards for a user")
+    @ApiOperation(value = "Add many credit cards, each for the user of its payload")
+    @PostMapping(value = "/credit-card:bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BulkCreateResultView>> addCreditCardsToUsers(@RequestBody List<AddCreditCardToUserPayload> payloads) {
+        // One result per payload in request order: the credit card id, or the 404/409/400 that payload alone
+        // would have got; the other cards are created all the same
+        return ResponseEntity.ok(creditCardService.createCardsForUsers(payloads));
+    }
+
+    @ApiOperation(value = "Add many credit cards from an NDJSON stream, each for the user of its line")
+    @PostMapping(value = "/credit-card:bulk", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    public void addCreditCardsToUsersFromStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Lines are committed in chunks and one NDJSON result per non-blank line is streamed back as its chunk commits
+        response.setContentType("application/x-ndjson");
+        OutputStream output = response.getOutputStream();
+        bulkCreationService.createCards(request.getInputStream(), result -> writeEvent(output, result));
+    }
+
+    @ApiOperation(value = "Get credit cards for a user, all of them or one page at a time")
     @GetMapping("/credit-card:all")
-    public ResponseEntity<List<CreditCardView>> getAllCardOfUser(@RequestParam
-                                                                     @ApiParam(value = "The ID of the user to retrieve", required = true)
-                                                                     int userId) {
-        // TODO: return a list of all credit card associated with the given userId, using CreditCardView class
-        //       if the user has no credit card, return empty list, never return null
-        return ResponseEntity.ok(creditCardService.getCreditCardsByUserId(userId));
+    public void getAllCardOfUser(@RequestParam
+                                 @ApiParam(value = "The ID of the user to retrieve", required = true)
+                                 int userId,
+                                 @RequestParam(required = false)
+                                 @ApiParam(value = "Only cards after this one: the id of the last card of the previous page")
+                                 Integer afterId,
+                                 @RequestParam(required = false)
+                                 @ApiParam(value = "At most this many cards, all of them if absent")
+                                 Integer limit,
+                                 HttpServletResponse response) throws IOException {
+        // A JSON array of CreditCardView in card id order, written as the database cursor returns the rows;
+        // an empty array if the user has no credit card, 400 if the limit is not positive
+        creditCardService.writeCreditCardsByUserId(userId, afterId, limit, () -> {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            return response.getOutputStream();
+        });
     }
 
     @ApiOperation(value = "Find a user_id by credit card number if exists")
@@ -67,5 +128,120 @@ public class CreditCardController {
 
         return ResponseEntity.ok(creditCardService.updateBalanceHistory(payload));
     }
-    
+
+    @ApiOperation(value = "Queue a credit card balance update batch for asynchronous application")
+    @PostMapping("/credit-card:update-balance-async")
+    public ResponseEntity<IngestTicketView> updateCreditCardBalanceAsync(@RequestBody UpdateBalancePayload[] payload) {
+        // Return 202 Accepted with the ticket of the batch once it is validated and queued,
+        // 400 Bad Request if a card number is unknown, 413 if a queue could never hold its share of the
+        // batch, 503 if the queues are full
+        return ResponseEntity.accepted().body(balanceIngestionService.submit(payload));
+    }
+
+    @ApiOperation(value = "Import credit card balance updates from an NDJSON or CSV stream")
+    @PostMapping(value = "/credit-card:import-balances", consumes = {"application/x-ndjson", "text/csv"}, produces = "application/x-ndjson")
+    public void importCreditCardBalances(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // The body is read line by line and committed in chunks; the response streams one NDJSON event per
+        // rejected line and per committed chunk, then a summary, so neither side holds the whole file
+        BalanceFileFormat format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.valueOf("text/csv"))
+                ? BalanceFileFormat.CSV : BalanceFileFormat.NDJSON;
+        response.setContentType("application/x-ndjson");
+        OutputStream output = response.getOutputStream();
+        balanceImportService.importBalances(request.getInputStream(), format, event -> writeEvent(output, event));
+    }
+
+    @ApiOperation(value = "Export the balance history of a credit card, of a user's credit cards, or of every credit card")
+    @GetMapping("/credit-card:export-balances")
+    public void exportCreditCardBalances(@RequestParam(required = false)
+                                         @ApiParam(value = "Export only this credit card")
+                                         String creditCardNumber,
+                                         @RequestParam(required = false)
+                                         @ApiParam(value = "Export only the credit cards of this user")
+                                         Integer userId,
+                                         @RequestParam(defaultValue = "NDJSON")
+                                         @ApiParam(value = "NDJSON or CSV, both can be imported back")
+                                         BalanceFileFormat format,
+                                         @RequestParam(defaultValue = "false")
+                                         @ApiParam(value = "Compress the response with gzip")
+                                         boolean gzip,
+                                         HttpServletResponse response) throws IOException {
+        // Rows are written as the database cursor returns them; 400 if both a card and a user are given,
+        // 404 if the card or the user does not exist, checked before anything is written
+        balanceExportService.exportBalances(creditCardNumber, userId, format, () -> {
+            response.setContentType(format == BalanceFileFormat.CSV ? "text/csv" : "application/x-ndjson");
+            if (!gzip) {
+                return response.getOutputStream();
+            }
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new GZIPOutputStream(response.getOutputStream(), 64 * 1024);
+        });
+    }
+
+    private void writeEvent(OutputStream output, Object event) {
+        try {
+            output.write(objectMapper.writeValueAsBytes(event));
+            output.write('\n');
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @ApiOperation(value = "Get the status of an asynchronous balance update batch")
+    @GetMapping("/credit-card:update-balance-status")
+    public ResponseEntity<IngestTicketView> getUpdateBalanceStatus(@RequestParam
+                                                                   @ApiParam(value = "The ticket id returned on submission", required = true)
+                                                                   String ticketId) {
+        return ResponseEntity.ok(balanceIngestionService.getTicket(ticketId));
+    }
+
+    @ApiOperation(value = "Get a credit card's balance on a date")
+    @GetMapping("/credit-card:balance")
+    public ResponseEntity<BalanceHistoryView> getBalanceOnDate(@RequestParam
+                                                               @ApiParam(value = "The credit card number", required = true)
+                                                               String creditCardNumber,
+                                                               @RequestParam
+                                                               @ApiParam(value = "The balance date, yyyy-MM-dd", required = true)
+                                                               @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                               LocalDate date) {
+        // Return 200 OK with the balance of that date, 404 if the card or the entry does not exist
+        return ResponseEntity.ok(creditCardService.getBalanceOnDate(creditCardNumber, date));
+    }
+
+    @ApiOperation(value = "Get a credit card's nearest balance on or after a date")
+    @GetMapping("/credit-card:balance-nearest")
+    public ResponseEntity<BalanceHistoryView> getNearestBalance(@RequestParam
+                                                                @ApiParam(value = "The credit card number", required = true)
+                                                                String creditCardNumber,
+                                                                @RequestParam
+                                                                @ApiParam(value = "The balance date, yyyy-MM-dd", required = true)
+                                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                                LocalDate date) {
+        // Given 4-15 when the history has 4-13 and 4-16, return the 4-16 entry
+        return ResponseEntity.ok(creditCardService.getNearestBalance(creditCardNumber, date));
+    }
+
+    @ApiOperation(value = "Get a credit card's balance history between two dates")
+    @GetMapping("/credit-card:balance-history")
+    public ResponseEntity<List<BalanceHistoryView>> getBalanceHistory(@RequestParam
+                                                                      @ApiParam(value = "The credit card number", required = true)
+                                                                      String creditCardNumber,
+                                                                      @RequestParam
+                                                                      @ApiParam(value = "First date of the range, yyyy-MM-dd", required = true)
+                                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                                      LocalDate from,
+                                                                      @RequestParam
+                                                                      @ApiParam(value = "Last date of the range, yyyy-MM-dd", required = true)
+                                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                                                      LocalDate to) {
+        // Entries in ascending date order, empty list if the range has none
+        return ResponseEntity.ok(creditCardService.getBalanceHistory(creditCardNumber, from, to));
+    }
+
+    @ApiOperation(value = "Get the counters of the card number lookup cache")
+    @GetMapping("/credit-card:lookup-stats")
+    public ResponseEntity<CardLookupStatsView> getCardLookupStats() {
+        return ResponseEntity.ok(creditCardService.getCardLookupStats());
+    }
 }
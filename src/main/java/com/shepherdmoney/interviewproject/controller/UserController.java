@@ -1,14 +1,24 @@
 package com.shepherdmoney.interviewproject.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.service.BulkCreationService;
 import com.shepherdmoney.interviewproject.service.UserService;
 import com.shepherdmoney.interviewproject.vo.request.CreateUserPayload;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
 @Api(tags = "User Management")
 @RestController
 public class UserController {
@@ -17,6 +27,12 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private BulkCreationService bulkCreationService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @ApiOperation(value = "Create a new user")
     @PutMapping("/user")
     public ResponseEntity<Integer> createUser(@RequestBody CreateUserPayload payload) {
@@ -26,6 +42,30 @@ public class UserController {
 
     }
 
+    @ApiOperation(value = "Create many users")
+    @PutMapping(value = "/user:bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Integer>> createUsers(@RequestBody List<CreateUserPayload> payloads) {
+        // The ids of the new users, in request order
+        return ResponseEntity.ok(userService.createUsers(payloads));
+    }
+
+    @ApiOperation(value = "Create many users from an NDJSON stream")
+    @PutMapping(value = "/user:bulk", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    public void createUsersFromStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Lines are committed in chunks and one NDJSON result per non-blank line is streamed back as its chunk commits
+        response.setContentType("application/x-ndjson");
+        OutputStream output = response.getOutputStream();
+        bulkCreationService.createUsers(request.getInputStream(), result -> {
+            try {
+                output.write(objectMapper.writeValueAsBytes(result));
+                output.write('\n');
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     @ApiOperation(value = "Delete a user by ID")
     @DeleteMapping("/user")
     public ResponseEntity<String> deleteUser(@RequestParam
@@ -36,4 +76,12 @@ public class UserController {
         //       The response body could be anything you consider appropriate
         return ResponseEntity.ok(userService.deleteUser(userId));
     }
+
+    @ApiOperation(value = "Delete many users by ID, with their credit cards and balance history")
+    @PostMapping("/user:bulk-delete")
+    public ResponseEntity<Integer> deleteUsers(@RequestBody
+                                               @ApiParam(value = "The IDs of the users to be deleted, all of them must exist", required = true)
+                                               int[] userIds) {
+        return ResponseEntity.ok(userService.deleteUsers(userIds));
+    }
 }
@@ -0,0 +1,25 @@
+package com.shepherdmoney.interviewproject.eventlog;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+
+import java.util.Map;
+
+/**
+ * One applied update batch as it is logged. The payloads are parallel arrays in arrival order, and every card
+ * of the batch the log had not seen before comes with the history it had just before the batch, so replaying
+ * the log never needs anything but the log.
+ *
+ * @param sequence          Position of the batch in the log, starting at 1
+ * @param appliedOnEpochDay The day the batch was applied on, which bounds gap filling when it is replayed
+ * @param bases             Histories before the batch of the cards first seen by it, by credit card id
+ * @param creditCardIds     The card of each payload
+ * @param epochDays         The balance date of each payload
+ * @param amounts           The balance amount of each payload in cents
+ */
+public record BalanceEvent(long sequence, int appliedOnEpochDay, Map<Integer, BalanceTimeline> bases,
+                           int[] creditCardIds, int[] epochDays, long[] amounts) {
+
+    public int size() {
+        return creditCardIds.length;
+    }
+}
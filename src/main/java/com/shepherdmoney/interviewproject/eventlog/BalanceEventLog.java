@@ -0,0 +1,494 @@
+package com.shepherdmoney.interviewproject.eventlog;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of applied balance update batches, in segment files of balance.event-log.segment-size.
+ * Records are written sequentially and are durable when append returns: appenders that arrive while an
+ * fsync is running wait for the next one, which covers all of them (group commit), so the fsync rate does
+ * not grow with the number of writers.
+ * <p>
+ * A record is [length][crc32][sequence][type][body]. A batch whose transaction rolls back after it was
+ * logged gets an abort record and is skipped on replay. A record cut short by a crash fails its length or
+ * checksum and ends the log; it is truncated away when the log is opened.
+ * <p>
+ * A snapshot holds the histories of every logged card once all batches before its sequence are applied.
+ * Writing one deletes older snapshots and the segments it covers, so a replay is the latest snapshot plus
+ * the log tail.
+ */
+@Component
+@ConditionalOnProperty(prefix = "balance.event-log", name = "enabled", havingValue = "true")
+public class BalanceEventLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceEventLog.class);
+
+    private static final byte BATCH = 1;
+
+    private static final byte ABORT = 2;
+
+    // Length, checksum, sequence
+    private static final int HEADER_BYTES = 16;
+
+    private static final String SEGMENT_PREFIX = "events-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    // Guarded by this: the segment being appended to, null until the first append after opening
+    private FileChannel segment;
+
+    private long segmentBytes;
+
+    private long nextSequence;
+
+    private long lastAppended;
+
+    // Batches logged whose transaction has not completed yet
+    private final NavigableSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+    // Cards whose history is in the log or a snapshot, their next batch does not log a base history
+    private final Set<Integer> loggedCards = ConcurrentHashMap.newKeySet();
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private final Condition synced = syncLock.newCondition();
+
+    // Guarded by syncLock
+    private long durableSequence;
+
+    private boolean syncing;
+
+    public BalanceEventLog(BalanceProperties balanceProperties) throws IOException {
+        if (balanceProperties.getDeltaLog().isEnabled()) {
+            throw new IllegalStateException("balance.event-log.enabled does not support balance.delta-log.enabled");
+        }
+        BalanceProperties.EventLog eventLog = balanceProperties.getEventLog();
+        this.directory = Files.createDirectories(Path.of(eventLog.getDirectory()));
+        this.segmentSize = eventLog.getSegmentSize().toBytes();
+        long lastSequence = Math.max(0, latestSnapshotSequence() - 1);
+        List<Path> segments = files(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int index = 0; index < segments.size(); index++) {
+            lastSequence = Math.max(lastSequence, openSegment(segments.get(index), index == segments.size() - 1));
+        }
+        this.nextSequence = lastSequence + 1;
+        this.lastAppended = lastSequence;
+        this.durableSequence = lastSequence;
+    }
+
+    /**
+     * Log one applied batch and wait until it is on disk
+     *
+     * @return The sequence of the batch, to be completed once its transaction has
+     */
+    public long append(int appliedOnEpochDay, Map<Integer, BalanceTimeline> bases,
+                       int[] creditCardIds, int[] epochDays, long[] amounts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 16 * creditCardIds.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(BATCH);
+            out.writeInt(appliedOnEpochDay);
+            writeTimelines(out, bases);
+            out.writeInt(creditCardIds.length);
+            for (int index = 0; index < creditCardIds.length; index++) {
+                out.writeInt(creditCardIds[index]);
+                out.writeInt(epochDays[index]);
+                out.writeLong(amounts[index]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long sequence = write(bytes.toByteArray(), true);
+        awaitDurable(sequence);
+        return sequence;
+    }
+
+    /**
+     * Record the outcome of a logged batch. A rolled back batch gets a durable abort record, so replay skips it.
+     */
+    public void complete(long sequence, boolean committed) {
+        try {
+            if (!committed) {
+                ByteBuffer body = ByteBuffer.allocate(9).put(ABORT).putLong(sequence);
+                awaitDurable(write(body.array(), false));
+            }
+        } finally {
+            inFlight.remove(sequence);
+        }
+    }
+
+    public boolean isLogged(int creditCardId) {
+        return loggedCards.contains(creditCardId);
+    }
+
+    public void markLogged(Collection<Integer> creditCardIds) {
+        loggedCards.addAll(creditCardIds);
+    }
+
+    /**
+     * @return The lowest sequence whose batch may still be in flight: every batch before it is committed or aborted
+     */
+    public synchronized long lowWaterMark() {
+        return inFlight.isEmpty() ? nextSequence : inFlight.first();
+    }
+
+    /**
+     * Pass the histories of the latest snapshot to the consumer
+     *
+     * @return The sequence of the snapshot, 1 when there is none
+     */
+    public long readLatestSnapshot(BiConsumer<Integer, BalanceTimeline> consumer) {
+        List<Path> snapshots = files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (snapshots.isEmpty()) {
+            return 1;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshots.get(snapshots.size() - 1))))) {
+            long sequence = in.readLong();
+            int cards = in.readInt();
+            for (int card = 0; card < cards; card++) {
+                consumer.accept(in.readInt(), readTimeline(in));
+            }
+            return sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write a snapshot of the histories after every batch before the given sequence, then delete the older
+     * snapshots and the segments holding only batches before it
+     */
+    public void writeSnapshot(long sequence, Map<Integer, BalanceTimeline> timelines) {
+        Path snapshot = directory.resolve(name(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+                out.writeLong(sequence);
+                writeTimelines(out, timelines);
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+            for (Path older : files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (!older.equals(snapshot)) {
+                    Files.deleteIfExists(older);
+                }
+            }
+            deleteSegmentsBefore(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Pass the batches from one sequence (inclusive) to another (exclusive) to the consumer in log order,
+     * without the aborted ones
+     */
+    public void replay(long fromSequence, long toSequence, Consumer<BalanceEvent> consumer) {
+        List<Path> segments = files(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        Set<Long> aborted = new HashSet<>();
+        forEachRecord(segments, (sequence, body) -> {
+            if (body[0] == ABORT) {
+                aborted.add(ByteBuffer.wrap(body, 1, 8).getLong());
+            }
+        });
+        forEachRecord(segments, (sequence, body) -> {
+            if (body[0] == BATCH && sequence >= fromSequence && sequence < toSequence && !aborted.contains(sequence)) {
+                consumer.accept(readEvent(sequence, body));
+            }
+        });
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.force(false);
+            segment.close();
+            segment = null;
+        }
+    }
+
+    private synchronized long write(byte[] body, boolean batch) {
+        long sequence = nextSequence++;
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(body.length).putInt(0).putLong(sequence);
+        crc.update(header.array(), 8, 8);
+        crc.update(body);
+        header.putInt(4, (int) crc.getValue()).flip();
+        try {
+            if (segment == null || segmentBytes >= segmentSize) {
+                rollSegment(sequence);
+            }
+            ByteBuffer[] record = {header, ByteBuffer.wrap(body)};
+            while (record[1].hasRemaining()) {
+                segment.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segmentBytes += HEADER_BYTES + body.length;
+        lastAppended = sequence;
+        if (batch) {
+            inFlight.add(sequence);
+        }
+        return sequence;
+    }
+
+    private void rollSegment(long firstSequence) throws IOException {
+        if (segment != null) {
+            // Forced before it is closed, a sync that still holds the old channel counts on it
+            segment.force(false);
+            segment.close();
+        }
+        segment = FileChannel.open(directory.resolve(name(SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentBytes = 0;
+    }
+
+    /**
+     * Group commit: the first waiter forces everything appended so far while later ones wait for it, then
+     * one of those still not covered forces the next group
+     */
+    private void awaitDurable(long sequence) {
+        syncLock.lock();
+        try {
+            while (durableSequence < sequence) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long target = durableSequence;
+                syncLock.unlock();
+                try {
+                    target = forceAppended();
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    durableSequence = Math.max(durableSequence, target);
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private long forceAppended() {
+        FileChannel channel;
+        long target;
+        synchronized (this) {
+            channel = segment;
+            target = lastAppended;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Rolled over meanwhile, which forced it
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return target;
+    }
+
+    /**
+     * Read a segment on startup; a torn record at the end of the last one is cut off
+     *
+     * @return The highest sequence in the segment, 0 if it has none
+     */
+    private long openSegment(Path file, boolean last) throws IOException {
+        long[] lastSequence = {0};
+        long validBytes = readRecords(file, (sequence, body) -> lastSequence[0] = sequence);
+        long size = Files.size(file);
+        if (validBytes < size) {
+            if (!last) {
+                throw new IllegalStateException("Balance event log segment " + file + " is corrupt at byte " + validBytes);
+            }
+            logger.warn("Truncating torn balance event record at byte {} of {}", validBytes, file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+                channel.force(false);
+            }
+        }
+        return lastSequence[0];
+    }
+
+    @FunctionalInterface
+    private interface RecordConsumer {
+        void accept(long sequence, byte[] body);
+    }
+
+    private void forEachRecord(List<Path> segments, RecordConsumer consumer) {
+        try {
+            for (Path segment : segments) {
+                readRecords(segment, consumer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The number of bytes of complete records with a valid checksum at the start of the segment
+     */
+    private static long readRecords(Path file, RecordConsumer consumer) throws IOException {
+        long validBytes = 0;
+        long size = Files.size(file);
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                int length;
+                int checksum;
+                long sequence;
+                byte[] body;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    sequence = in.readLong();
+                    if (length <= 0 || length > size - validBytes - HEADER_BYTES) {
+                        return validBytes;
+                    }
+                    body = in.readNBytes(length);
+                } catch (EOFException e) {
+                    return validBytes;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(ByteBuffer.allocate(8).putLong(sequence).array());
+                crc.update(body);
+                if (body.length != length || (int) crc.getValue() != checksum) {
+                    return validBytes;
+                }
+                consumer.accept(sequence, body);
+                validBytes += HEADER_BYTES + length;
+            }
+        }
+    }
+
+    private synchronized void deleteSegmentsBefore(long sequence) throws IOException {
+        List<Path> segments = files(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        // A segment only holds records before the first sequence of the next one
+        for (int index = 0; index + 1 < segments.size() && firstSequence(segments.get(index + 1)) <= sequence; index++) {
+            Files.deleteIfExists(segments.get(index));
+        }
+    }
+
+    private long latestSnapshotSequence() {
+        List<Path> snapshots = files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        return snapshots.isEmpty() ? 0 : firstSequence(snapshots.get(snapshots.size() - 1));
+    }
+
+    private List<Path> files(String prefix, String suffix) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)
+                            && file.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+
+    private static String name(String prefix, long sequence, String suffix) {
+        return String.format("%s%020d%s", prefix, sequence, suffix);
+    }
+
+    private static BalanceEvent readEvent(long sequence, byte[] body) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body, 1, body.length - 1))) {
+            int appliedOnEpochDay = in.readInt();
+            int cards = in.readInt();
+            Map<Integer, BalanceTimeline> bases = new HashMap<>();
+            for (int card = 0; card < cards; card++) {
+                bases.put(in.readInt(), readTimeline(in));
+            }
+            int size = in.readInt();
+            int[] creditCardIds = new int[size];
+            int[] epochDays = new int[size];
+            long[] amounts = new long[size];
+            for (int index = 0; index < size; index++) {
+                creditCardIds[index] = in.readInt();
+                epochDays[index] = in.readInt();
+                amounts[index] = in.readLong();
+            }
+            return new BalanceEvent(sequence, appliedOnEpochDay, bases, creditCardIds, epochDays, amounts);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeTimelines(DataOutput out, Map<Integer, BalanceTimeline> timelines) throws IOException {
+        out.writeInt(timelines.size());
+        for (Map.Entry<Integer, BalanceTimeline> entry : timelines.entrySet()) {
+            BalanceTimeline timeline = entry.getValue();
+            out.writeInt(entry.getKey());
+            out.writeInt(timeline.size());
+            for (int index = 0; index < timeline.size(); index++) {
+                out.writeInt(timeline.epochDayAt(index));
+                out.writeLong(timeline.balanceAt(index));
+            }
+        }
+    }
+
+    private static BalanceTimeline readTimeline(DataInput in) throws IOException {
+        int size = in.readInt();
+        int[] epochDays = new int[size];
+        long[] balances = new long[size];
+        for (int index = 0; index < size; index++) {
+            epochDays[index] = in.readInt();
+            balances[index] = in.readLong();
+        }
+        return new BalanceTimeline(epochDays, balances);
+    }
+}
@@ -0,0 +1,126 @@
+package com.shepherdmoney.interviewproject.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One-time migration of the stored amounts from dollars in DOUBLE columns to cents in BIGINT columns.
+ * Hibernate's schema update never changes the type of an existing column, so a database created before
+ * amounts were held as cents would otherwise have its dollars read as cents. Runs before the entity manager
+ * factory is built, so before Hibernate updates the schema and before any request is served.
+ * The version reached is kept in balance_schema_version: the amounts are multiplied in one transaction that
+ * also records it, and the column types are changed after, so an interrupted migration resumes where it
+ * stopped instead of multiplying the amounts twice.
+ */
+@Component
+public class BalanceCentsMigration implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceCentsMigration.class);
+
+    /**
+     * Amounts multiplied by 100, their columns may still be DOUBLE
+     */
+    public static final int AMOUNTS_IN_CENTS = 1;
+
+    /**
+     * Amounts in cents in BIGINT columns
+     */
+    public static final int CENTS_COLUMNS = 2;
+
+    // Table and column of every stored amount
+    private static final String[][] AMOUNT_COLUMNS = {{"BALANCE_HISTORY", "BALANCE"}, {"BALANCE_DELTA", "DELTA"}};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public BalanceCentsMigration(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        migrate();
+    }
+
+    /**
+     * Bring the amount columns to cents, unless the recorded version says they already are
+     *
+     * @return The schema version reached
+     */
+    public int migrate() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS balance_schema_version (version INT NOT NULL)");
+        int version = currentVersion();
+        if (version >= CENTS_COLUMNS) {
+            return version;
+        }
+        List<String[]> doubleColumns = new ArrayList<>();
+        for (String[] column : AMOUNT_COLUMNS) {
+            if ("DOUBLE PRECISION".equals(columnType(column[0], column[1]))) {
+                doubleColumns.add(column);
+            }
+        }
+        if (doubleColumns.isEmpty()) {
+            // A new database, or one created with cents columns: Hibernate's types are already right
+            setVersion(CENTS_COLUMNS);
+            return CENTS_COLUMNS;
+        }
+        long start = System.currentTimeMillis();
+        if (version < AMOUNTS_IN_CENTS) {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (String[] column : doubleColumns) {
+                    jdbcTemplate.update("UPDATE " + column[0] + " SET " + column[1] + " = ROUND(" + column[1] + " * 100)");
+                }
+                setVersion(AMOUNTS_IN_CENTS);
+            });
+        }
+        for (String[] column : doubleColumns) {
+            jdbcTemplate.execute("ALTER TABLE " + column[0] + " ALTER COLUMN " + column[1] + " SET DATA TYPE BIGINT");
+        }
+        setVersion(CENTS_COLUMNS);
+        logger.info("Migrated the stored amounts of {} tables from dollars to cents in {} ms",
+                doubleColumns.size(), System.currentTimeMillis() - start);
+        return CENTS_COLUMNS;
+    }
+
+    private int currentVersion() {
+        Integer version = jdbcTemplate.queryForObject("SELECT MAX(version) FROM balance_schema_version", Integer.class);
+        return version == null ? 0 : version;
+    }
+
+    private void setVersion(int version) {
+        jdbcTemplate.update("DELETE FROM balance_schema_version");
+        jdbcTemplate.update("INSERT INTO balance_schema_version (version) VALUES (?)", version);
+    }
+
+    /**
+     * @return The SQL type of the column, or null when its table does not exist yet
+     */
+    private String columnType(String table, String column) {
+        List<String> types = jdbcTemplate.queryForList("SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = ? AND COLUMN_NAME = ?", String.class, table, column);
+        return types.isEmpty() ? null : types.get(0);
+    }
+
+    /**
+     * Makes the entity manager factory, and with it Hibernate's schema update, wait for the migration
+     */
+    @Component
+    static class EntityManagerFactoryDependsOnMigration extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependsOnMigration() {
+            super(BalanceCentsMigration.class);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.shepherdmoney.interviewproject.job;
+
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndexCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.model.BalanceDelta;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceDeltaRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.serviceImpl.CardLockStripes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Fold-down of the delta log: adds the deltas of every card to its stored base balances and removes them,
+ * so the log and the delta indexes stay small. The balances readers see do not change. Each card is folded
+ * in its own transaction while holding the card lock stripe and the card row that balance updates take in
+ * delta-log mode.
+ * Runs every balance.delta-log.fold-interval when the delta log is enabled.
+ */
+@Component
+public class BalanceDeltaFolder {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceDeltaFolder.class);
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Autowired
+    private BalanceDeltaRepository balanceDeltaRepository;
+
+    @Autowired
+    private BalanceDeltaIndexCache balanceDeltaIndexCache;
+
+    @Autowired
+    private CardLockStripes cardLockStripes;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Scheduled(fixedDelayString = "${balance.delta-log.fold-interval:PT10M}",
+            initialDelayString = "${balance.delta-log.fold-interval:PT10M}")
+    public void scheduledFold() {
+        if (!balanceProperties.getDeltaLog().isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long folded = foldAll();
+        if (folded > 0) {
+            logger.info("Folded {} balance deltas in {} ms", folded, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Fold the deltas of every card that has any, one transaction per card
+     *
+     * @return The number of deltas folded
+     */
+    public long foldAll() {
+        long folded = 0;
+        for (Integer creditCardId : balanceDeltaRepository.findCreditCardIdsWithDeltas()) {
+            folded += fold(creditCardId);
+        }
+        return folded;
+    }
+
+    /**
+     * Fold the deltas of one card in a transaction of its own, under the card's lock stripe so that the cached
+     * delta index is not dropped in the middle of an update
+     *
+     * @return The number of deltas folded
+     */
+    public int fold(int creditCardId) {
+        Integer folded = cardLockStripes.withCardLocks(List.of(creditCardId),
+                () -> transactionTemplate.execute(status -> foldInTransaction(creditCardId)));
+        return folded == null ? 0 : folded;
+    }
+
+    private int foldInTransaction(int creditCardId) {
+        CreditCard creditCard = creditCardRepository.findByIdForUpdate(creditCardId).orElse(null);
+        if (creditCard == null) {
+            return 0;
+        }
+        List<BalanceDelta> deltas = balanceDeltaRepository.findByCreditCardId(creditCardId);
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        // Both lists are sorted by date, so a single merge pass adds every earlier delta to each balance
+        List<BalanceHistory> histories = balanceHistoryRepository.findByCreditCardInOrderByDateAsc(List.of(creditCard));
+        long sumBefore = 0;
+        int next = 0;
+        for (BalanceHistory history : histories) {
+            while (next < deltas.size() && deltas.get(next).getDate().isBefore(history.getDate())) {
+                sumBefore += deltas.get(next).getDelta();
+                next++;
+            }
+            if (sumBefore != 0) {
+                history.setBalance(history.getBalance() + sumBefore);
+            }
+        }
+        balanceDeltaRepository.deleteAllInBatch(deltas);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                balanceDeltaIndexCache.invalidate(creditCardId);
+            }
+        });
+        return deltas.size();
+    }
+}
@@ -0,0 +1,138 @@
+package com.shepherdmoney.interviewproject.job;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.eventlog.BalanceEventLog;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.serviceImpl.BalanceEventFold;
+import com.shepherdmoney.interviewproject.serviceImpl.CardLockStripes;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshots and recovery of the balance event log. A snapshot folds the latest one and every completed
+ * batch after it into a new one, from the log alone, so it never blocks updates. On startup the histories of
+ * every logged card are rebuilt from the latest snapshot plus the log tail and written to the balance store,
+ * before the rollover job catches up, since the log does not hold the entries that job writes. The startup
+ * rebuild runs once every bean is created, before the web server and the scheduled jobs start, so no update
+ * can be applied between the log replay and the write of the rebuilt histories.
+ */
+@Component
+@ConditionalOnProperty(prefix = "balance.event-log", name = "enabled", havingValue = "true")
+public class BalanceEventRecovery implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceEventRecovery.class);
+
+    private static final int REBUILD_CHUNK_CARDS = 500;
+
+    @Autowired
+    private BalanceEventLog balanceEventLog;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private CardLockStripes cardLockStripes;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (balanceProperties.getEventLog().isRebuildOnStartup()) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${balance.event-log.snapshot-interval:PT10M}",
+            initialDelayString = "${balance.event-log.snapshot-interval:PT10M}")
+    public void scheduledSnapshot() {
+        long start = System.currentTimeMillis();
+        long sequence = snapshot();
+        logger.info("Balance event snapshot at sequence {} written in {} ms", sequence, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Write a snapshot covering every batch before the low-water mark of the log
+     *
+     * @return The sequence of the latest snapshot
+     */
+    public synchronized long snapshot() {
+        long upTo = balanceEventLog.lowWaterMark();
+        Map<Integer, BalanceTimeline> timelines = new HashMap<>();
+        long from = balanceEventLog.readLatestSnapshot(timelines::put);
+        if (upTo <= from) {
+            return from;
+        }
+        boolean carryGaps = carriesGaps();
+        balanceEventLog.replay(from, upTo, event -> BalanceEventFold.apply(timelines, event, carryGaps));
+        balanceEventLog.writeSnapshot(upTo, timelines);
+        return upTo;
+    }
+
+    /**
+     * Replace the stored history of every logged card that still exists with the one the log holds. Each
+     * chunk of cards is written under its card lock stripes, so no update writes to a card while its history
+     * is replaced. An update applied after the log was replayed is still overwritten, which is why the startup
+     * rebuild runs before any update can arrive.
+     *
+     * @return The number of cards rebuilt
+     */
+    public synchronized int rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Integer, BalanceTimeline> timelines = new HashMap<>();
+        long from = balanceEventLog.readLatestSnapshot(timelines::put);
+        boolean carryGaps = carriesGaps();
+        balanceEventLog.replay(from, Long.MAX_VALUE, event -> BalanceEventFold.apply(timelines, event, carryGaps));
+        balanceEventLog.markLogged(timelines.keySet());
+
+        List<Integer> creditCardIds = new ArrayList<>(timelines.keySet());
+        int rebuilt = 0;
+        for (int offset = 0; offset < creditCardIds.size(); offset += REBUILD_CHUNK_CARDS) {
+            List<Integer> chunk = creditCardIds.subList(offset, Math.min(offset + REBUILD_CHUNK_CARDS, creditCardIds.size()));
+            Integer written = cardLockStripes.withCardLocks(chunk, () -> transactionTemplate.execute(status -> {
+                Map<CreditCard, BalanceTimeline> byCard = new HashMap<>();
+                for (CreditCard creditCard : creditCardRepository.findAllById(chunk)) {
+                    byCard.put(creditCard, timelines.get(creditCard.getId()));
+                }
+                balanceStore.replaceAll(byCard);
+                return byCard.size();
+            }));
+            rebuilt += written == null ? 0 : written;
+        }
+        balanceTimelineCache.invalidateAll(creditCardIds);
+        if (!creditCardIds.isEmpty()) {
+            logger.info("Rebuilt the balance histories of {} cards from the event log in {} ms, {} logged cards no longer exist",
+                    rebuilt, System.currentTimeMillis() - start, creditCardIds.size() - rebuilt);
+        }
+        return rebuilt;
+    }
+
+    private boolean carriesGaps() {
+        return balanceProperties.getStorage().getMode() == BalanceProperties.StorageMode.SPARSE
+                || balanceProperties.getRollover().isEnabled();
+    }
+}
@@ -0,0 +1,113 @@
+package com.shepherdmoney.interviewproject.job;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.serviceImpl.CardLockStripes;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Migration from dense to sparse storage. Removes every balance history entry that only repeats the balance
+ * of the entry before it, so that only the days where the balance changes remain. Each card whose history
+ * shrinks has it replaced in the balance store, whichever store that is. Entries from today on are kept,
+ * since sparse reads only carry balances forward up to yesterday. Pending deltas of the delta log are folded
+ * first, so the entries compared hold the balances readers see.
+ * Runs on startup when balance.storage.compact-on-startup is set and the storage mode is SPARSE.
+ */
+@Component
+public class BalanceHistoryCompactor implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceHistoryCompactor.class);
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Autowired
+    private BalanceDeltaFolder balanceDeltaFolder;
+
+    @Autowired
+    private CardLockStripes cardLockStripes;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        BalanceProperties.Storage storage = balanceProperties.getStorage();
+        if (!storage.isCompactOnStartup()) {
+            return;
+        }
+        if (storage.getMode() != BalanceProperties.StorageMode.SPARSE) {
+            logger.warn("balance.storage.compact-on-startup is ignored in {} mode, the next update would fill the gaps again",
+                    storage.getMode());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long removed = compactAll();
+        logger.info("Compacted balance history: {} redundant rows removed in {} ms", removed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Compact the history of every card, one transaction per card, holding the card's lock stripe so that no
+     * update changes the rows being compared
+     *
+     * @return The number of rows removed
+     */
+    public long compactAll() {
+        LocalDate today = LocalDate.now();
+        long removed = 0;
+        for (Integer creditCardId : creditCardRepository.findAllIds()) {
+            balanceDeltaFolder.fold(creditCardId);
+            Integer cardRemoved = cardLockStripes.withCardLocks(List.of(creditCardId),
+                    () -> transactionTemplate.execute(status -> compact(creditCardId, today)));
+            balanceTimelineCache.invalidate(creditCardId);
+            removed += cardRemoved == null ? 0 : cardRemoved;
+        }
+        return removed;
+    }
+
+    private int compact(int creditCardId, LocalDate today) {
+        CreditCard creditCard = creditCardRepository.getReferenceById(creditCardId);
+        List<BalanceHistory> histories = balanceStore.loadForUpdate(List.of(creditCard)).getOrDefault(creditCardId, List.of());
+        int[] epochDays = new int[histories.size()];
+        long[] balances = new long[histories.size()];
+        int kept = 0;
+        for (BalanceHistory history : histories) {
+            if (kept > 0 && history.getDate().isBefore(today) && history.getBalance() == balances[kept - 1]) {
+                continue;
+            }
+            epochDays[kept] = BalanceTimeline.toEpochDay(history.getDate());
+            balances[kept] = history.getBalance();
+            kept++;
+        }
+        if (kept < histories.size()) {
+            balanceStore.replaceAll(Map.of(creditCard,
+                    new BalanceTimeline(Arrays.copyOf(epochDays, kept), Arrays.copyOf(balances, kept))));
+        }
+        return histories.size() - kept;
+    }
+}
@@ -0,0 +1,127 @@
+package com.shepherdmoney.interviewproject.job;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.serviceImpl.CardLockStripes;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * End-of-day rollover of dense balance histories: gives every day without an entry up to yesterday the
+ * carried-forward balance of the closest entry before it, so updates never have to fill gaps. The cards are
+ * split into chunks of balance.rollover.chunk-cards, each carried forward by one set-based statement in its
+ * own transaction while holding the lock stripes updates of those cards take; balance.rollover.parallelism
+ * chunks run at once. Only missing days are written, so a run is idempotent and the first one after downtime
+ * catches up on every missed day. Runs on balance.rollover.cron and once on startup.
+ */
+@Component
+@ConditionalOnProperty(prefix = "balance.rollover", name = "enabled", havingValue = "true")
+public class BalanceRolloverJob implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceRolloverJob.class);
+
+    private final BalanceProperties balanceProperties;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Autowired
+    private CardLockStripes cardLockStripes;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    public BalanceRolloverJob(BalanceProperties balanceProperties) {
+        if (balanceProperties.getStorage().getMode() != BalanceProperties.StorageMode.DENSE) {
+            throw new IllegalStateException("balance.rollover.enabled requires balance.storage.mode=DENSE");
+        }
+        if (balanceProperties.getDeltaLog().isEnabled()) {
+            throw new IllegalStateException("balance.rollover.enabled does not support balance.delta-log.enabled");
+        }
+        this.balanceProperties = balanceProperties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        scheduledRollover();
+    }
+
+    @Scheduled(cron = "${balance.rollover.cron:0 5 0 * * *}")
+    public void scheduledRollover() {
+        long start = System.currentTimeMillis();
+        long added = rollover(LocalDate.now());
+        logger.info("Balance rollover added {} carried-forward entries in {} ms", added, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Carry the balances of every card forward up to the day before the given one
+     *
+     * @return The number of entries added
+     */
+    public synchronized long rollover(LocalDate today) {
+        List<Integer> creditCardIds = creditCardRepository.findAllIds();
+        int chunkCards = balanceProperties.getRollover().getChunkCards();
+        ExecutorService workers = Executors.newFixedThreadPool(balanceProperties.getRollover().getParallelism());
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (int offset = 0; offset < creditCardIds.size(); offset += chunkCards) {
+                List<Integer> chunk = creditCardIds.subList(offset, Math.min(offset + chunkCards, creditCardIds.size()));
+                chunks.add(workers.submit(() -> rolloverChunk(chunk, today)));
+            }
+            long added = 0;
+            for (Future<Integer> chunk : chunks) {
+                added += chunk.get();
+            }
+            return added;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Balance rollover interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Balance rollover failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private int rolloverChunk(List<Integer> creditCardIds, LocalDate today) {
+        Integer added = cardLockStripes.withCardLocks(creditCardIds, () -> transactionTemplate.execute(status -> {
+            int rows = balanceStore.carryForward(creditCardIds, today);
+            if (rows > 0) {
+                // The statement does not say which cards got entries, so the cached timelines of the whole chunk go
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        balanceTimelineCache.invalidateAll(creditCardIds);
+                    }
+                });
+            }
+            return rows;
+        }));
+        return added == null ? 0 : added;
+    }
+}
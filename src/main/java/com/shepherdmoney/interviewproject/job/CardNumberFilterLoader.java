@@ -0,0 +1,61 @@
+package com.shepherdmoney.interviewproject.job;
+
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
+import com.shepherdmoney.interviewproject.cache.CardNumberBloomFilter;
+import com.shepherdmoney.interviewproject.config.CardLookupProperties;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+/**
+ * Loads the Bloom filter of the card lookup cache from every card number on startup. The filter is sized
+ * for twice the current number of cards, and for at least card-lookup.expected-cards.
+ */
+@Component
+public class CardNumberFilterLoader implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CardNumberFilterLoader.class);
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private CardLookupCache cardLookupCache;
+
+    @Autowired
+    private CardLookupProperties cardLookupProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        reload();
+    }
+
+    /**
+     * Build a new filter from the card numbers in the database and swap it in, for instance after cards
+     * were inserted with plain SQL
+     */
+    public void reload() {
+        long start = System.currentTimeMillis();
+        long cards = creditCardRepository.count();
+        CardNumberBloomFilter filter = new CardNumberBloomFilter(
+                Math.max(cardLookupProperties.getExpectedCards(), 2 * cards), cardLookupProperties.getFalsePositiveRate());
+        cardLookupCache.beginFilterLoad(filter);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> numbers = creditCardRepository.streamAllNumbers()) {
+                numbers.forEach(filter::add);
+            }
+        });
+        cardLookupCache.completeFilterLoad();
+        logger.info("Card number filter loaded from {} cards in {} ms", cards, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,55 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Work done by update-balance batches: payloads per batch, and gap rows inserted and rows touched per
+ * batch, tagged with the batch size class so large backfills do not hide the cost of single updates
+ */
+@Component
+public class BalanceUpdateMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * @param payloads    Payloads of the batch
+     * @param gapRows     History entries inserted to fill days without a balance
+     * @param rowsTouched History entries inserted or rewritten, gap rows included, and deltas appended
+     */
+    public void recordBatch(int payloads, int gapRows, int rowsTouched) {
+        String batchSize = batchSizeClass(payloads);
+        summary("balance.update.batch.payloads", "Payloads per update-balance batch", null).record(payloads);
+        summary("balance.update.gap.rows", "History entries inserted to fill gaps per batch", batchSize).record(gapRows);
+        summary("balance.update.rows.touched", "History entries and deltas written per batch", batchSize).record(rowsTouched);
+    }
+
+    private DistributionSummary summary(String name, String description, String batchSize) {
+        DistributionSummary.Builder builder = DistributionSummary.builder(name)
+                .description(description)
+                .publishPercentileHistogram();
+        if (batchSize != null) {
+            builder.tag("batch.size", batchSize);
+        }
+        return builder.register(meterRegistry);
+    }
+
+    private static String batchSizeClass(int payloads) {
+        if (payloads <= 1) {
+            return "1";
+        }
+        if (payloads <= 10) {
+            return "2-10";
+        }
+        if (payloads <= 100) {
+            return "11-100";
+        }
+        if (payloads <= 1000) {
+            return "101-1000";
+        }
+        return ">1000";
+    }
+}
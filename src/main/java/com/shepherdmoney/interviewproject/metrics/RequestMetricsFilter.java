@@ -0,0 +1,74 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import com.shepherdmoney.interviewproject.config.InstrumentationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Counts the SQL statements of every request per endpoint and logs requests slower than
+ * instrumentation.slow-request-threshold with their statement breakdown. Request latency per endpoint is
+ * recorded by the actuator as http.server.requests. For asynchronous requests only the work done on the
+ * container thread is measured.
+ */
+@Component
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestMetricsFilter.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private InstrumentationProperties instrumentationProperties;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestStatements statements = RequestStatements.begin();
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestStatements.end();
+            record(request, response, statements, System.nanoTime() - start);
+        }
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, RequestStatements statements, long nanos) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder("http.server.requests.statements")
+                .description("SQL statements prepared by Hibernate per request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statements.getTotal());
+
+        long millis = nanos / 1_000_000;
+        if (millis >= instrumentationProperties.getSlowRequestThreshold().toMillis()) {
+            Counter.builder("http.server.requests.slow")
+                    .description("Requests slower than instrumentation.slow-request-threshold")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            logger.warn("Slow request {} {} ({}) answered {} in {} ms with {} statements: {}",
+                    request.getMethod(), request.getRequestURI(), uri, response.getStatus(), millis,
+                    statements.getTotal(), statements.breakdown(instrumentationProperties.getSlowRequestTopStatements()));
+        }
+    }
+}
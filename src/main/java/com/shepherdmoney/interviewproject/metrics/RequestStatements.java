@@ -0,0 +1,69 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * SQL statements prepared by Hibernate on the current request thread, counted per distinct statement.
+ * Statements run through JdbcTemplate, and statements of work handed to other threads, are not counted.
+ * A JDBC batch counts once however many rows it carries.
+ */
+public class RequestStatements {
+
+    private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+
+    // Distinct statements tracked per request, further ones only count towards the total
+    private static final int MAX_DISTINCT = 64;
+
+    private static final int MAX_SQL_LENGTH = 160;
+
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+    private int total;
+
+    public static RequestStatements begin() {
+        RequestStatements statements = new RequestStatements();
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return The statements of the request running on this thread, null outside of a request
+     */
+    public static RequestStatements current() {
+        return CURRENT.get();
+    }
+
+    void record(String sql) {
+        total++;
+        if (counts.size() < MAX_DISTINCT || counts.containsKey(sql)) {
+            counts.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The most frequent statements with their counts, e.g. "12 x update balance_history set ..."
+     */
+    public String breakdown(int top) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
+                .limit(top)
+                .map(entry -> entry.getValue() + " x " + abbreviate(entry.getKey()))
+                .collect(Collectors.joining("; "));
+    }
+
+    private static String abbreviate(String sql) {
+        String singleLine = sql.replaceAll("\\s+", " ").trim();
+        return singleLine.length() <= MAX_SQL_LENGTH ? singleLine : singleLine.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,53 @@
+package com.shepherdmoney.interviewproject.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every call to the CreditCardService and UserService methods as service.calls, tagged with the
+ * service, the method and the exception thrown, if any
+ */
+@Aspect
+@Component
+public class ServiceTimingAspect {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Around("execution(public * com.shepherdmoney.interviewproject.service.CreditCardService.*(..))")
+    public Object timeCreditCardService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "CreditCardService");
+    }
+
+    @Around("execution(public * com.shepherdmoney.interviewproject.service.UserService.*(..))")
+    public Object timeUserService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "UserService");
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String service) throws Throwable {
+        long start = System.nanoTime();
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            Timer.builder("service.calls")
+                    .description("Calls to the credit card and user services")
+                    .tag("service", service)
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.shepherdmoney.interviewproject.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * A retroactive balance correction in delta-log mode: every balance history entry of the card dated after
+ * the delta date is shifted by the delta. The stored balance of an entry is its base balance, the balance
+ * seen by readers is the base plus the sum of all deltas dated before it.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@ApiModel(description = "Retroactive balance correction of a credit card")
+@RequiredArgsConstructor
+@Table(name = "BalanceDelta", indexes = {
+        @Index(name = "idx_delta_credit_card_id_date", columnList = "creditCard_id, date ASC")
+})
+public class BalanceDelta {
+
+    @Id
+    @ApiModelProperty(notes = "The unique ID of the delta")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_delta_seq")
+    @SequenceGenerator(name = "balance_delta_seq", sequenceName = "balance_delta_seq", allocationSize = 50)
+    private long id;
+
+    @ApiModelProperty(notes = "The date of the corrected balance, later entries are shifted")
+    private LocalDate date;
+
+    @ApiModelProperty(notes = "The amount in cents added to every later balance")
+    private long delta;
+
+    @ApiModelProperty(notes = "The credit card that this delta is associated with")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "creditCard_id")
+    private CreditCard creditCard;
+}
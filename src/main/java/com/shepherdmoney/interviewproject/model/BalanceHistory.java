@@ -18,21 +18,22 @@ import java.time.LocalDate;
 @RequiredArgsConstructor
 @Table(name = "BalanceHistory", indexes = {
         @Index(name = "idx_date", columnList = "date ASC"),
-        @Index(name = "idx_credit_card_id_date_asc", columnList = "creditCard_id, date ASC"),
+        @Index(name = "uk_balance_history_card_date", columnList = "creditCard_id, date ASC", unique = true),
         @Index(name = "idx_credit_card_id_date_desc", columnList = "creditCard_id, date DESC")
 })
 public class BalanceHistory implements Comparable<BalanceHistory> {
 
     @Id
     @ApiModelProperty(notes = "The unique ID of the history")
-    @GeneratedValue(strategy = GenerationType.AUTO)
-    private int id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_history_seq")
+    @SequenceGenerator(name = "balance_history_seq", sequenceName = "balance_history_seq", allocationSize = 50)
+    private long id;
 
     @ApiModelProperty(notes = "The date of history")
     private LocalDate date;
 
-    @ApiModelProperty(notes = "The balance")
-    private double balance;
+    @ApiModelProperty(notes = "The balance in cents")
+    private long balance;
 
     @ApiModelProperty(notes = "The credit card that this balance history is assiciated with")
     @ManyToOne
@@ -1,5 +1,6 @@
 package com.shepherdmoney.interviewproject.model;
 
+import com.shepherdmoney.interviewproject.cache.CardLookupListener;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import jakarta.persistence.*;
@@ -18,11 +19,17 @@ import java.util.TreeSet;
 @ToString
 @RequiredArgsConstructor
 @ApiModel(description = "Details about a credit card")
+@Table(indexes = {
+        @Index(name = "uk_credit_card_number", columnList = "number", unique = true),
+        @Index(name = "idx_credit_card_user_id", columnList = "user_id, id")
+})
+@EntityListeners(CardLookupListener.class)
 public class CreditCard {
 
     @Id
     @ApiModelProperty(notes = "The unique ID of the credit card")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "credit_card_seq")
+    @SequenceGenerator(name = "credit_card_seq", sequenceName = "credit_card_seq", allocationSize = 50)
     private int id;
 
     @ApiModelProperty(required = true, notes = "The bank that issued the credit card")
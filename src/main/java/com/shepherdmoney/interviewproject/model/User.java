@@ -21,7 +21,8 @@ public class User {
 
     @Id
     @ApiModelProperty(notes = "The unique ID of the user")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "my_user_seq")
+    @SequenceGenerator(name = "my_user_seq", sequenceName = "my_user_seq", allocationSize = 50)
     private int id;
 
     @ApiModelProperty(required = true, notes = "The name of the user")
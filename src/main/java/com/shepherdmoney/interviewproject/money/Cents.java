@@ -0,0 +1,45 @@
+package com.shepherdmoney.interviewproject.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Balances are held as whole cents in a long everywhere inside the application: the column, the entities,
+ * the caches and every sum. Decimal amounts only exist at the edges, in JSON and CSV.
+ */
+public final class Cents {
+
+    private Cents() {
+    }
+
+    /**
+     * @param amount A decimal amount such as 1234.5, rounded half-even to a cent
+     * @throws ArithmeticException if the amount does not fit in a long number of cents
+     */
+    public static long fromDecimal(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @param amount A decimal amount such as "1234.50"
+     * @throws NumberFormatException if the text is not a decimal number
+     * @throws ArithmeticException   if the amount does not fit in a long number of cents
+     */
+    public static long parse(String amount) {
+        return fromDecimal(new BigDecimal(amount.trim()));
+    }
+
+    /**
+     * @return The amount with two decimals, e.g. 123450 as 1234.50
+     */
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * @return The amount as text with two decimals, e.g. 123450 as "1234.50"
+     */
+    public static String format(long cents) {
+        return toDecimal(cents).toPlainString();
+    }
+}
@@ -0,0 +1,29 @@
+package com.shepherdmoney.interviewproject.repository;
+
+import com.shepherdmoney.interviewproject.model.BalanceDelta;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository("BalanceDeltaRepo")
+public interface BalanceDeltaRepository extends JpaRepository<BalanceDelta, Long> {
+
+    @Query("SELECT d FROM BalanceDelta d WHERE d.creditCard IN :creditCards ORDER BY d.date ASC")
+    List<BalanceDelta> findByCreditCardInOrderByDateAsc(@Param("creditCards") Collection<CreditCard> creditCards);
+
+    @Query("SELECT d FROM BalanceDelta d WHERE d.creditCard.id = :creditCardId ORDER BY d.date ASC")
+    List<BalanceDelta> findByCreditCardId(@Param("creditCardId") int creditCardId);
+
+    @Query("SELECT DISTINCT d.creditCard.id FROM BalanceDelta d ORDER BY d.creditCard.id")
+    List<Integer> findCreditCardIdsWithDeltas();
+
+    @Modifying
+    @Query("DELETE FROM BalanceDelta d WHERE d.creditCard.id IN :creditCardIds")
+    int deleteByCreditCardIdIn(@Param("creditCardIds") Collection<Integer> creditCardIds);
+}
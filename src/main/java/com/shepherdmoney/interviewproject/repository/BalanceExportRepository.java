@@ -0,0 +1,116 @@
+package com.shepherdmoney.interviewproject.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * Forward-only JDBC cursors over the balance tables for exports. Rows go straight from the result set to the
+ * handler: nothing is hydrated or kept in a persistence context, and the driver fetches fetchSize rows at a
+ * time. On H2, which materializes query results by default, the statement runs with LAZY_QUERY_EXECUTION so
+ * rows are produced as they are read.
+ * <p>
+ * Both scopes are optional and at most one is expected: a card id, a user id, or every card when both are null.
+ */
+@Repository
+public class BalanceExportRepository {
+
+    @FunctionalInterface
+    public interface BalanceRowHandler {
+        void accept(int creditCardId, String cardNumber, LocalDate date, long balance);
+    }
+
+    @FunctionalInterface
+    public interface DeltaRowHandler {
+        void accept(int creditCardId, LocalDate date, long delta);
+    }
+
+    @FunctionalInterface
+    public interface CardRowHandler {
+        void accept(int creditCardId, String cardNumber);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Stream the stored balance rows in (card id, date) order, the order of uk_balance_history_card_date
+     */
+    public void streamBalances(Integer creditCardId, Integer userId, int fetchSize, BalanceRowHandler handler) {
+        String sql = "SELECT cc.id, cc.number, bh.date, bh.balance FROM balance_history bh " +
+                "JOIN credit_card cc ON cc.id = bh.credit_card_id" + where(creditCardId, userId) +
+                " ORDER BY bh.credit_card_id, bh.date";
+        stream(sql, creditCardId, userId, fetchSize,
+                rs -> handler.accept(rs.getInt(1), rs.getString(2), rs.getObject(3, LocalDate.class), rs.getLong(4)));
+    }
+
+    /**
+     * Stream the cards in id order, for stores that keep the balance rows outside the database
+     */
+    public void streamCards(Integer creditCardId, Integer userId, int fetchSize, CardRowHandler handler) {
+        String sql = "SELECT cc.id, cc.number FROM credit_card cc" + where(creditCardId, userId) + " ORDER BY cc.id";
+        stream(sql, creditCardId, userId, fetchSize, rs -> handler.accept(rs.getInt(1), rs.getString(2)));
+    }
+
+    /**
+     * Stream the pending deltas of the delta log in (card id, date) order
+     */
+    public void streamDeltas(Integer creditCardId, Integer userId, int fetchSize, DeltaRowHandler handler) {
+        String sql = "SELECT cc.id, d.date, d.delta FROM balance_delta d " +
+                "JOIN credit_card cc ON cc.id = d.credit_card_id" + where(creditCardId, userId) +
+                " ORDER BY d.credit_card_id, d.date";
+        stream(sql, creditCardId, userId, fetchSize,
+                rs -> handler.accept(rs.getInt(1), rs.getObject(2, LocalDate.class), rs.getLong(3)));
+    }
+
+    private interface RowReader {
+        void read(ResultSet rs) throws SQLException;
+    }
+
+    private void stream(String sql, Integer creditCardId, Integer userId, int fetchSize, RowReader reader) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean h2 = "H2".equals(connection.getMetaData().getDatabaseProductName());
+            if (h2) {
+                setLazy(connection.createStatement(), true);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                if (creditCardId != null) {
+                    statement.setInt(1, creditCardId);
+                } else if (userId != null) {
+                    statement.setInt(1, userId);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        reader.read(rs);
+                    }
+                }
+            } finally {
+                if (h2) {
+                    setLazy(connection.createStatement(), false);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void setLazy(Statement statement, boolean lazy) throws SQLException {
+        try (statement) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+
+    private static String where(Integer creditCardId, Integer userId) {
+        if (creditCardId != null) {
+            return " WHERE cc.id = ?";
+        }
+        return userId != null ? " WHERE cc.user_id = ?" : "";
+    }
+}
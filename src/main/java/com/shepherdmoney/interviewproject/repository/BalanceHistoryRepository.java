@@ -2,6 +2,7 @@ package com.shepherdmoney.interviewproject.repository;
 
 import com.shepherdmoney.interviewproject.model.BalanceHistory;
 import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,24 +10,70 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository("BalanceHistoryRepo")
-public interface BalanceHistoryRepository extends JpaRepository<BalanceHistory, Integer> {
+public interface BalanceHistoryRepository extends JpaRepository<BalanceHistory, Long> {
+    @Query("SELECT bh FROM BalanceHistory bh WHERE bh.creditCard IN :creditCards ORDER BY bh.date ASC")
+    List<BalanceHistory> findByCreditCardInOrderByDateAsc(@Param("creditCards") Collection<CreditCard> creditCards);
+
+    @Modifying
+    @Query("DELETE FROM BalanceHistory bh WHERE bh.creditCard IN :creditCards")
+    int deleteByCreditCardIn(@Param("creditCards") Collection<CreditCard> creditCards);
+
     @Modifying
-    @Query("UPDATE BalanceHistory bh SET bh.balance = bh.balance + :difference WHERE bh.date > :date AND bh.creditCard = :creditCard")
-    void updateBalancesAfterDate(@Param("date") LocalDate date,
-                                 @Param("difference") double difference,
-                                 @Param("creditCard") CreditCard creditCard);
+    @Query("DELETE FROM BalanceHistory bh WHERE bh.creditCard.id IN :creditCardIds")
+    int deleteByCreditCardIdIn(@Param("creditCardIds") Collection<Integer> creditCardIds);
+
+    @Query("SELECT MIN(bh.date) FROM BalanceHistory bh WHERE bh.creditCard.id IN :creditCardIds")
+    LocalDate findEarliestDate(@Param("creditCardIds") Collection<Integer> creditCardIds);
+
+    /**
+     * Insert the carried-forward rows of every day without a row between the earliest row of each card and
+     * the day before today in a single INSERT ... SELECT: each row followed by a gap is joined with the day
+     * offsets of that gap. The LEFT JOIN keeps H2 from driving the join with the day offsets, and every gap
+     * has at least one of them. Each row takes its own sequence value, the pooled-lo blocks Hibernate hands
+     * out start at sequence values too, so the two never collide.
+     *
+     * @param maxDays An upper bound of the gap length, the days between the earliest row and today
+     * @return The number of rows inserted
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO balance_history (id, balance, date, credit_card_id) " +
+            "SELECT NEXT VALUE FOR balance_history_seq, G.balance, DATEADD('DAY', D.X, G.date), G.credit_card_id " +
+            "FROM (SELECT credit_card_id, date, balance, DATEDIFF('DAY', date, " +
+            "LEAST(LEAD(date, 1, :today) OVER (PARTITION BY credit_card_id ORDER BY date), :today)) AS gap " +
+            "FROM balance_history WHERE credit_card_id IN (:creditCardIds) QUALIFY gap > 1) G " +
+            "LEFT JOIN SYSTEM_RANGE(1, :maxDays) D ON D.X BETWEEN 1 AND G.gap - 1")
+    int insertCarriedBalances(@Param("creditCardIds") Collection<Integer> creditCardIds,
+                              @Param("today") LocalDate today,
+                              @Param("maxDays") long maxDays);
+
+    /**
+     * Read the whole balance history of a card as (date, balance) pairs in one range scan over
+     * uk_balance_history_card_date, without hydrating BalanceHistory entities.
+     */
+    @Query("SELECT new com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView(bh.date, bh.balance) " +
+            "FROM BalanceHistory bh WHERE bh.creditCard = :creditCard ORDER BY bh.date ASC")
+    List<BalanceHistoryView> findBalancesByCreditCardOrderByDateAsc(@Param("creditCard") CreditCard creditCard);
 
-    @Query("SELECT bh FROM BalanceHistory bh WHERE bh.creditCard = :creditCard AND bh.date = :date")
-    Optional<BalanceHistory> getByCreditCardAndDate(@Param("creditCard") CreditCard creditCard, @Param("date") LocalDate date);
+    @Query("SELECT new com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView(bh.date, bh.balance) " +
+            "FROM BalanceHistory bh WHERE bh.creditCard.id = :creditCardId AND bh.date = :date")
+    Optional<BalanceHistoryView> findBalanceOnDate(@Param("creditCardId") int creditCardId, @Param("date") LocalDate date);
 
-    @Query("SELECT MIN(bh.date) FROM BalanceHistory bh WHERE bh.creditCard = :creditCard")
-    Optional<LocalDate> findEarliestDateByCreditCard(@Param("creditCard") CreditCard creditCard);
+    @Query("SELECT new com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView(bh.date, bh.balance) " +
+            "FROM BalanceHistory bh WHERE bh.creditCard.id = :creditCardId AND bh.date >= :date ORDER BY bh.date ASC LIMIT 1")
+    Optional<BalanceHistoryView> findFirstBalanceOnOrAfter(@Param("creditCardId") int creditCardId, @Param("date") LocalDate date);
 
-    boolean existsByCreditCardAndDate(CreditCard creditCard, LocalDate date);
+    @Query("SELECT new com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView(bh.date, bh.balance) " +
+            "FROM BalanceHistory bh WHERE bh.creditCard.id = :creditCardId AND bh.date <= :date ORDER BY bh.date DESC LIMIT 1")
+    Optional<BalanceHistoryView> findLatestBalanceOnOrBefore(@Param("creditCardId") int creditCardId, @Param("date") LocalDate date);
 
-    @Query("SELECT bh FROM BalanceHistory bh WHERE bh.creditCard = :creditCard AND bh.date < :date ORDER BY bh.date DESC LIMIT 1")
-    Optional<BalanceHistory> findTopByCreditCardAndDateBeforeOrderByDateDesc(@Param("creditCard") CreditCard creditCard, @Param("date") LocalDate date);
+    @Query("SELECT new com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView(bh.date, bh.balance) " +
+            "FROM BalanceHistory bh WHERE bh.creditCard.id = :creditCardId AND bh.date BETWEEN :from AND :to ORDER BY bh.date ASC")
+    List<BalanceHistoryView> findBalancesBetween(@Param("creditCardId") int creditCardId,
+                                                 @Param("from") LocalDate from,
+                                                 @Param("to") LocalDate to);
 }
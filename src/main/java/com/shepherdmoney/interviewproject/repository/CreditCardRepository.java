@@ -1,13 +1,24 @@
 package com.shepherdmoney.interviewproject.repository;
 
 import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.vo.response.CardOwnerView;
+import com.shepherdmoney.interviewproject.vo.response.CreditCardView;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Crud repository to store credit cards
@@ -15,12 +26,66 @@ import java.util.Optional;
 @Repository("CreditCardRepo")
 public interface CreditCardRepository extends JpaRepository<CreditCard, Integer> {
 
-    @Query("SELECT cc FROM CreditCard cc WHERE cc.number = :cardNumber")
-    Optional<CreditCard> findByCardNumber(String cardNumber);
+    @Query("SELECT cc FROM CreditCard cc WHERE cc.number IN :cardNumbers")
+    List<CreditCard> findByCardNumberIn(@Param("cardNumbers") Collection<String> cardNumbers);
 
-    @Query("SELECT cc.user.id FROM CreditCard cc WHERE cc.number = :cardNumber")
-    Optional<Integer> findUserByCreditCardNumber(@Param("cardNumber") String cardNumber);
+    @Query("SELECT cc.id FROM CreditCard cc WHERE cc.number IN :cardNumbers")
+    List<Integer> findIdsByCardNumberIn(@Param("cardNumbers") Collection<String> cardNumbers);
+
+    @Query("SELECT cc.number FROM CreditCard cc WHERE cc.number IN :cardNumbers")
+    List<String> findExistingNumbers(@Param("cardNumbers") Collection<String> cardNumbers);
+
+    /**
+     * Same as findByCardNumberIn, but locks the card rows until the transaction ends. Rows are locked in id
+     * order, so two batches sharing cards cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT cc FROM CreditCard cc WHERE cc.number IN :cardNumbers ORDER BY cc.id")
+    List<CreditCard> findByCardNumberInForUpdate(@Param("cardNumbers") Collection<String> cardNumbers);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT cc FROM CreditCard cc WHERE cc.id = :id")
+    Optional<CreditCard> findByIdForUpdate(@Param("id") int id);
+
+    /**
+     * Resolve a card and its owner in one lookup on uk_credit_card_number. Empty if the card does not exist,
+     * a null user id if the card has no owner.
+     */
+    @Query("SELECT new com.shepherdmoney.interviewproject.vo.response.CardOwnerView(cc.id, u.id) " +
+            "FROM CreditCard cc LEFT JOIN cc.user u WHERE cc.number = :cardNumber")
+    Optional<CardOwnerView> findOwnerByCardNumber(@Param("cardNumber") String cardNumber);
+
+    /**
+     * Every card number, streamed from the database. Must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT cc.number FROM CreditCard cc")
+    Stream<String> streamAllNumbers();
+
+    @Query("SELECT cc.id FROM CreditCard cc ORDER BY cc.id")
+    List<Integer> findAllIds();
+
+    @Query("SELECT cc.id FROM CreditCard cc WHERE cc.user.id IN :userIds")
+    List<Integer> findIdsByUserIdIn(@Param("userIds") Collection<Integer> userIds);
+
+    @Modifying
+    @Query("DELETE FROM CreditCard cc WHERE cc.user.id IN :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Integer> userIds);
 
     @Query("SELECT c FROM CreditCard c WHERE c.user.id = :userId")
     List<CreditCard> findByUserId(@Param("userId") int userId);
+
+    @Query("SELECT new com.shepherdmoney.interviewproject.vo.response.CreditCardView(cc.issuanceBank, cc.number, cc.id) " +
+            "FROM CreditCard cc WHERE cc.user.id = :userId ORDER BY cc.id")
+    List<CreditCardView> findViewsByUserId(@Param("userId") int userId);
+
+    /**
+     * The views of a user's cards with an id after the given one, in id order, read as a constructor
+     * projection without loading the entities. A seek on idx_credit_card_user_id; page with the pageable's size.
+     * Must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.shepherdmoney.interviewproject.vo.response.CreditCardView(cc.issuanceBank, cc.number, cc.id) " +
+            "FROM CreditCard cc WHERE cc.user.id = :userId AND cc.id > :afterId ORDER BY cc.id")
+    Stream<CreditCardView> streamViewsByUserId(@Param("userId") int userId, @Param("afterId") int afterId, Pageable pageable);
 }
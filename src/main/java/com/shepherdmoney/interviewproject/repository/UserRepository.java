@@ -1,12 +1,40 @@
 package com.shepherdmoney.interviewproject.repository;
 
 import com.shepherdmoney.interviewproject.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Crud Repository to store User classes
  */
 @Repository("UserRepo")
 public interface UserRepository extends JpaRepository<User, Integer> {
+
+    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds")
+    List<Integer> findExistingIds(@Param("userIds") Collection<Integer> userIds);
+
+    /**
+     * Same as findExistingIds, but locks the user rows until the transaction ends. Cards are only added to a
+     * user while holding its row, so the cards of locked users cannot change. Rows are locked in id order.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds ORDER BY u.id")
+    List<Integer> findExistingIdsForUpdate(@Param("userIds") Collection<Integer> userIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> findByIdForUpdate(@Param("id") int id);
+
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id IN :userIds")
+    int deleteByIdIn(@Param("userIds") Collection<Integer> userIds);
 }
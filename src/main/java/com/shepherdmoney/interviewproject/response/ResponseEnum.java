@@ -5,7 +5,13 @@ public enum ResponseEnum {
     SYSTEM_ERROR(500, "Internal Server Error"),
     PARAM_EXCEPTION(400, "Bad Request"),
     CARD_NOT_FOUND(404, "There is no such credit card related to the given user_id/credit card number"),
-    USER_NOT_FOUND(404, "There is no such user");
+    USER_NOT_FOUND(404, "There is no such user"),
+    DUPLICATE_CARD_NUMBER(409, "A credit card with the given number already exists"),
+    BALANCE_NOT_FOUND(404, "There is no balance history entry for the given credit card and date"),
+    TICKET_NOT_FOUND(404, "There is no such update-balance ticket"),
+    INGEST_QUEUE_FULL(503, "The update-balance queues are full, retry later"),
+    INGEST_BATCH_TOO_LARGE(413, "The update-balance batch has more payloads for one queue than it can hold"),
+    UPDATES_BUSY(503, "Too many update-balance batches are running, retry later");
 
     private final int code;
     private final String message;
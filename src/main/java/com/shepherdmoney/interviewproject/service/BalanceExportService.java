@@ -0,0 +1,26 @@
+package com.shepherdmoney.interviewproject.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface BalanceExportService {
+
+    /**
+     * Opens the stream an export is written to
+     */
+    @FunctionalInterface
+    interface OutputOpener {
+        OutputStream open() throws IOException;
+    }
+
+    /**
+     * Write the balance history of one card, of every card of a user, or of every card when both are null,
+     * as the same daily balances the balance read endpoints return
+     * @param cardNumber
+     * @param userId
+     * @param format
+     * @param output Opened only once the scope is valid, so a rejected export writes nothing; closed when done
+     * @return The number of rows written
+     */
+    long exportBalances(String cardNumber, Integer userId, BalanceFileFormat format, OutputOpener output) throws IOException;
+}
@@ -0,0 +1,11 @@
+package com.shepherdmoney.interviewproject.service;
+
+/**
+ * Line formats of balance imports and exports. An export can be imported back as it is.
+ */
+public enum BalanceFileFormat {
+    // One JSON object per line: creditCardNumber, balanceDate, balanceAmount
+    NDJSON,
+    // creditCardNumber,balanceDate,balanceAmount per line, with a header line
+    CSV
+}
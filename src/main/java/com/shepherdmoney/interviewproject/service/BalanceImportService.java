@@ -0,0 +1,19 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.vo.response.ImportEventView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+public interface BalanceImportService {
+
+    /**
+     * Apply the balance updates of a stream chunk by chunk, each chunk in its own transaction
+     * @param input The updates, read incrementally and never held in memory as a whole
+     * @param format The line format; the CSV header line is optional
+     * @param events Receives every error, progress and summary event as soon as it happens
+     * @return The summary event
+     */
+    ImportEventView importBalances(InputStream input, BalanceFileFormat format, Consumer<ImportEventView> events) throws IOException;
+}
@@ -0,0 +1,21 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.IngestTicketView;
+
+public interface BalanceIngestionService {
+
+    /**
+     * Validate a batch of balance updates and queue it for asynchronous application
+     * @param payloads
+     * @return The ticket of the batch, to be polled with getTicket
+     */
+    IngestTicketView submit(UpdateBalancePayload[] payloads);
+
+    /**
+     * Get the progress of a submitted batch
+     * @param ticketId
+     * @return The ticket, with the number of applied and failed parts
+     */
+    IngestTicketView getTicket(String ticketId);
+}
@@ -0,0 +1,26 @@
+package com.shepherdmoney.interviewproject.service;
+
+import com.shepherdmoney.interviewproject.vo.response.BulkCreateResultView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+public interface BulkCreationService {
+
+    /**
+     * Create the users of an NDJSON stream chunk by chunk, each chunk in its own transaction
+     * @param input One CreateUserPayload per line, read incrementally and never held in memory as a whole
+     * @param results Receives the result of every non-blank line, in input order, as soon as its chunk is committed
+     * @return The number of users created
+     */
+    long createUsers(InputStream input, Consumer<BulkCreateResultView> results) throws IOException;
+
+    /**
+     * Create the credit cards of an NDJSON stream chunk by chunk, each chunk in its own transaction
+     * @param input One AddCreditCardToUserPayload per line, read incrementally and never held in memory as a whole
+     * @param results Receives the result of every non-blank line, in input order, as soon as its chunk is committed
+     * @return The number of credit cards created
+     */
+    long createCards(InputStream input, Consumer<BulkCreateResultView> results) throws IOException;
+}
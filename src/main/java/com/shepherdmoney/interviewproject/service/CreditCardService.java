@@ -2,8 +2,13 @@ package com.shepherdmoney.interviewproject.service;
 
 import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
 import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BulkCreateResultView;
+import com.shepherdmoney.interviewproject.vo.response.CardLookupStatsView;
 import com.shepherdmoney.interviewproject.vo.response.CreditCardView;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface CreditCardService {
@@ -15,6 +20,16 @@ public interface CreditCardService {
      */
     List<CreditCardView> getCreditCardsByUserId(int userId);
 
+    /**
+     * Write the credit cards of a user as a JSON array in id order, optionally one keyset page of them
+     * @param userId
+     * @param afterId Only cards with a greater id: the id of the last card of the previous page, null for the first page
+     * @param limit At most this many cards, null for all of them
+     * @param output Opened only once the page is valid, so a rejected request writes nothing; closed when done
+     * @return The number of cards written
+     */
+    long writeCreditCardsByUserId(int userId, Integer afterId, Integer limit, BalanceExportService.OutputOpener output) throws IOException;
+
     /**
      * Get user according to a given credit card number
      * @param cardNumber
@@ -29,10 +44,56 @@ public interface CreditCardService {
      */
     String updateBalanceHistory(UpdateBalancePayload[] payloads);
 
+    /**
+     * Same as updateBalanceHistory, without waiting for a slot of execution.max-concurrent-updates. For
+     * internal callers that bound their own concurrency and must not fail on a busy bulkhead
+     * @param payloads
+     * @return 200 OK if success
+     */
+    String applyBalanceUpdates(UpdateBalancePayload[] payloads);
+
     /**
      * Create a credit card entity, and then associate that credit card with user with given userId
      * @param payload
      * @return userId if successful
      */
     Integer createCardForUser(AddCreditCardToUserPayload payload);
+
+    /**
+     * Create many credit cards in one transaction, each associated with the user of its payload
+     * @param payloads
+     * @return one result per payload, in the same order: the card id, or why the payload was left out
+     */
+    List<BulkCreateResultView> createCardsForUsers(List<AddCreditCardToUserPayload> payloads);
+
+    /**
+     * Get the balance of a credit card on a given date
+     * @param cardNumber
+     * @param date
+     * @return The balance history entry of that date
+     */
+    BalanceHistoryView getBalanceOnDate(String cardNumber, LocalDate date);
+
+    /**
+     * Get the balance history entry closest to a given date, on or after it
+     * @param cardNumber
+     * @param date
+     * @return The earliest balance history entry whose date is not before the given date
+     */
+    BalanceHistoryView getNearestBalance(String cardNumber, LocalDate date);
+
+    /**
+     * Get the balance history of a credit card between two dates, both inclusive
+     * @param cardNumber
+     * @param from
+     * @param to
+     * @return The balance history entries of the range in ascending date order, empty if there are none
+     */
+    List<BalanceHistoryView> getBalanceHistory(String cardNumber, LocalDate from, LocalDate to);
+
+    /**
+     * Get the counters of the card number lookup cache
+     * @return Cache hits, misses, Bloom filter rejections and false positives
+     */
+    CardLookupStatsView getCardLookupStats();
 }
@@ -2,6 +2,8 @@ package com.shepherdmoney.interviewproject.service;
 
 import com.shepherdmoney.interviewproject.vo.request.CreateUserPayload;
 
+import java.util.List;
+
 public interface UserService {
 
     /**
@@ -11,6 +13,13 @@ public interface UserService {
      */
     Integer createUser(CreateUserPayload payload);
 
+    /**
+     * Create many users in one transaction, inserted in JDBC batches
+     * @param payloads
+     * @return the user ids, in the order of the payloads
+     */
+    List<Integer> createUsers(List<CreateUserPayload> payloads);
+
     /**
      * delete a user in database according to id
      * @param id
@@ -18,5 +27,13 @@ public interface UserService {
      *         Return 400 Bad Request if a user with the ID does not exist
      */
     String deleteUser(int id);
+
+    /**
+     * Delete users together with their credit cards and balance history, all or none
+     * @param userIds
+     * @return the number of users deleted
+     * @throws com.shepherdmoney.interviewproject.exception.BusinessException PARAM_EXCEPTION if any user does not exist
+     */
+    int deleteUsers(int[] userIds);
     // Additional methods as needed
 }
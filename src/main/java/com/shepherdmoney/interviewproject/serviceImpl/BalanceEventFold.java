@@ -0,0 +1,68 @@
+package com.shepherdmoney.interviewproject.serviceImpl;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.eventlog.BalanceEvent;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays logged update batches onto card histories with the same plan the update path uses, so a history
+ * rebuilt from the event log is the one the updates produced. Each batch costs one pass over the history of
+ * each of its cards.
+ */
+public final class BalanceEventFold {
+
+    private BalanceEventFold() {
+    }
+
+    /**
+     * Apply one logged batch
+     *
+     * @param timelines The histories so far by credit card id, updated in place
+     * @param sparse    Whether gaps were carried instead of filled (sparse mode or the rollover job), as they
+     *                  were when the batch was applied
+     * @throws IllegalStateException if the batch touches a card the log has no history of
+     */
+    public static void apply(Map<Integer, BalanceTimeline> timelines, BalanceEvent event, boolean sparse) {
+        timelines.putAll(event.bases());
+        LocalDate appliedOn = LocalDate.ofEpochDay(event.appliedOnEpochDay());
+        Map<Integer, CardBalancePlan> plans = new LinkedHashMap<>();
+        try {
+            for (int index = 0; index < event.size(); index++) {
+                CardBalancePlan plan = plans.computeIfAbsent(event.creditCardIds()[index],
+                        creditCardId -> new CardBalancePlan(card(creditCardId), histories(timelines.get(creditCardId)), sparse, null));
+                plan.apply(LocalDate.ofEpochDay(event.epochDays()[index]), event.amounts()[index], appliedOn);
+            }
+        } catch (BusinessException e) {
+            throw new IllegalStateException("Balance event " + event.sequence() + " touches a card without a logged history", e);
+        }
+        plans.forEach((creditCardId, plan) -> timelines.put(creditCardId, plan.toTimeline()));
+    }
+
+    private static CreditCard card(int creditCardId) {
+        CreditCard creditCard = new CreditCard();
+        creditCard.setId(creditCardId);
+        return creditCard;
+    }
+
+    private static List<BalanceHistory> histories(BalanceTimeline timeline) {
+        if (timeline == null) {
+            return List.of();
+        }
+        List<BalanceHistory> histories = new ArrayList<>(timeline.size());
+        for (int index = 0; index < timeline.size(); index++) {
+            BalanceHistory history = new BalanceHistory();
+            history.setDate(LocalDate.ofEpochDay(timeline.epochDayAt(index)));
+            history.setBalance(timeline.balanceAt(index));
+            histories.add(history);
+        }
+        return histories;
+    }
+}
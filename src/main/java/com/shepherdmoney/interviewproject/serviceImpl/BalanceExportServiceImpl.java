@@ -0,0 +1,248 @@
+package com.shepherdmoney.interviewproject.serviceImpl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndex;
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.money.Cents;
+import com.shepherdmoney.interviewproject.repository.BalanceExportRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.BalanceExportService;
+import com.shepherdmoney.interviewproject.service.BalanceFileFormat;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
+import com.shepherdmoney.interviewproject.vo.response.CardOwnerView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming balance export. Stored rows come from the balance store in (card, date) order, through a
+ * forward-only cursor for the JPA store, and are written as they arrive, so memory does not depend on the
+ * number of rows. Rows are resolved exactly like the read endpoints resolve them: pending deltas of the delta
+ * log are added, and in sparse mode the days between change points up to yesterday are written with the
+ * balance carried forward. The pending deltas of the
+ * exported cards are loaded up front; the fold job keeps them few.
+ */
+@Service
+public class BalanceExportServiceImpl implements BalanceExportService {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private BalanceExportRepository balanceExportRepository;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardLookupCache cardLookupCache;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * @throws BusinessException PARAM_EXCEPTION if both a card number and a user id are given,
+     *                           CARD_NOT_FOUND or USER_NOT_FOUND if the one given does not exist
+     */
+    @Override
+    public long exportBalances(String cardNumber, Integer userId, BalanceFileFormat format, OutputOpener output) throws IOException {
+        if (cardNumber != null && userId != null) {
+            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+        }
+        Integer creditCardId = null;
+        if (cardNumber != null) {
+            creditCardId = cardLookupCache.find(cardNumber, creditCardRepository::findOwnerByCardNumber)
+                    .map(CardOwnerView::getCreditCardId)
+                    .orElseThrow(() -> new BusinessException(ResponseEnum.CARD_NOT_FOUND));
+        } else if (userId != null && !userRepository.existsById(userId)) {
+            throw new BusinessException(ResponseEnum.USER_NOT_FOUND);
+        }
+
+        Integer scopeCardId = creditCardId;
+        int fetchSize = balanceProperties.getExport().getFetchSize();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        try (RowWriter writer = format == BalanceFileFormat.CSV ? new CsvRowWriter(output.open()) : new NdjsonRowWriter(output.open())) {
+            ExportRun run = new ExportRun(writer, balanceProperties.getStorage().getMode() == BalanceProperties.StorageMode.SPARSE);
+            readOnly.executeWithoutResult(status -> {
+                if (balanceProperties.getDeltaLog().isEnabled()) {
+                    balanceExportRepository.streamDeltas(scopeCardId, userId, fetchSize, run::addDelta);
+                }
+                balanceStore.streamBalances(scopeCardId, userId, fetchSize, run::row);
+            });
+            run.finishCard();
+            return run.rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Card by card state of an export: the pending deltas and the previous row, to carry balances forward
+     */
+    private static final class ExportRun {
+
+        private final RowWriter writer;
+
+        private final boolean sparse;
+
+        private final LocalDate today = LocalDate.now();
+
+        private final Map<Integer, BalanceDeltaIndex> deltaIndexes = new HashMap<>();
+
+        private int creditCardId = -1;
+
+        private String cardNumber;
+
+        private BalanceDeltaIndex deltaIndex;
+
+        private LocalDate previousDate;
+
+        private long previousBalance;
+
+        private long rows;
+
+        private ExportRun(RowWriter writer, boolean sparse) {
+            this.writer = writer;
+            this.sparse = sparse;
+        }
+
+        private void addDelta(int creditCardId, LocalDate date, long delta) {
+            deltaIndexes.computeIfAbsent(creditCardId, key -> new BalanceDeltaIndex()).add(BalanceTimeline.toEpochDay(date), delta);
+        }
+
+        private void row(int creditCardId, String cardNumber, LocalDate date, long storedBalance) {
+            if (creditCardId != this.creditCardId) {
+                finishCard();
+                this.creditCardId = creditCardId;
+                this.cardNumber = cardNumber;
+                this.deltaIndex = deltaIndexes.remove(creditCardId);
+                previousDate = null;
+            }
+            long balance = deltaIndex == null ? storedBalance
+                    : storedBalance + deltaIndex.sumBefore(BalanceTimeline.toEpochDay(date));
+            carryForwardUntil(date);
+            write(date, balance);
+            previousDate = date;
+            previousBalance = balance;
+        }
+
+        /**
+         * Write the carried days after the last row of the current card, up to yesterday
+         */
+        private void finishCard() {
+            carryForwardUntil(today);
+        }
+
+        private void carryForwardUntil(LocalDate nextDate) {
+            if (!sparse || previousDate == null) {
+                return;
+            }
+            LocalDate end = nextDate.isAfter(today) ? today : nextDate;
+            for (LocalDate date = previousDate.plusDays(1); date.isBefore(end); date = date.plusDays(1)) {
+                write(date, previousBalance);
+            }
+        }
+
+        private void write(LocalDate date, long balance) {
+            try {
+                writer.write(cardNumber, date, balance);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows++;
+        }
+    }
+
+    private interface RowWriter extends AutoCloseable {
+
+        void write(String cardNumber, LocalDate date, long balance) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * One {"creditCardNumber", "balanceDate", "balanceAmount"} object per line, written by a buffered generator
+     */
+    private final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(OutputStream output) throws IOException {
+            generator = objectMapper.getFactory().createGenerator(output);
+        }
+
+        @Override
+        public void write(String cardNumber, LocalDate date, long balance) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("creditCardNumber", cardNumber);
+            generator.writeStringField("balanceDate", date.toString());
+            generator.writeNumberField("balanceAmount", Cents.toDecimal(balance));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * creditCardNumber,balanceDate,balanceAmount lines after a header line
+     */
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        private CsvRowWriter(OutputStream output) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+            writer.write("creditCardNumber,balanceDate,balanceAmount\n");
+        }
+
+        @Override
+        public void write(String cardNumber, LocalDate date, long balance) throws IOException {
+            writer.write(cardNumber);
+            writer.write(',');
+            writer.write(date.toString());
+            writer.write(',');
+            writer.write(Cents.format(balance));
+            writer.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.shepherdmoney.interviewproject.serviceImpl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.money.Cents;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.BalanceFileFormat;
+import com.shepherdmoney.interviewproject.service.BalanceImportService;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.ImportEventView;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Streaming balance import. Lines are parsed one at a time into a fixed-size chunk, and every full chunk goes
+ * through the regular update-balance path in its own transaction, so memory stays bounded by the chunk size
+ * whatever the size of the input. Lines that cannot be applied are reported as they are found and skipped.
+ * Updates of a card are applied in input order; a card whose lines span several chunks sees them committed
+ * chunk after chunk.
+ */
+@Service
+public class BalanceImportServiceImpl implements BalanceImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceImportServiceImpl.class);
+
+    private static final String CSV_HEADER = "creditCardNumber";
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private CardLookupCache cardLookupCache;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ObjectReader payloadReader;
+
+    @PostConstruct
+    public void init() {
+        payloadReader = objectMapper.readerFor(UpdateBalancePayload.class);
+    }
+
+    @Override
+    public ImportEventView importBalances(InputStream input, BalanceFileFormat format, Consumer<ImportEventView> events) throws IOException {
+        ImportRun run = new ImportRun(balanceProperties.getBulkImport().getChunkSize(), events);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            run.linesRead++;
+            if (line.isBlank() || format == BalanceFileFormat.CSV && run.linesRead == 1 && line.startsWith(CSV_HEADER)) {
+                continue;
+            }
+            UpdateBalancePayload payload;
+            try {
+                payload = format == BalanceFileFormat.CSV ? parseCsv(line) : parseJson(line);
+            } catch (IllegalArgumentException e) {
+                run.error(run.linesRead, e.getMessage());
+                continue;
+            }
+            run.add(run.linesRead, payload);
+            if (run.isChunkFull()) {
+                applyChunk(run);
+            }
+        }
+        if (!run.chunk.isEmpty()) {
+            applyChunk(run);
+        }
+        ImportEventView summary = run.event(ImportEventView.Type.SUMMARY);
+        events.accept(summary);
+        logger.info("Balance import: {} lines read, {} imported, {} failed in {} chunks",
+                summary.getLinesRead(), summary.getImported(), summary.getFailed(), summary.getChunks());
+        return summary;
+    }
+
+    private UpdateBalancePayload parseJson(String line) {
+        UpdateBalancePayload payload;
+        try {
+            payload = payloadReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+        if (payload == null || payload.getCreditCardNumber() == null || payload.getCreditCardNumber().isBlank()
+                || payload.getBalanceDate() == null) {
+            throw new IllegalArgumentException("creditCardNumber and balanceDate are required");
+        }
+        return payload;
+    }
+
+    private static UpdateBalancePayload parseCsv(String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length != 3 || columns[0].isBlank()) {
+            throw new IllegalArgumentException("Expected creditCardNumber,balanceDate,balanceAmount");
+        }
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(columns[0].trim());
+        try {
+            payload.setBalanceDate(LocalDate.parse(columns[1].trim()));
+            payload.setBalanceAmount(Cents.parse(columns[2]));
+        } catch (DateTimeParseException | NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Malformed balanceDate or balanceAmount");
+        }
+        return payload;
+    }
+
+    /**
+     * Report the lines of unknown cards, apply the rest as one batch and report progress. If the batch is
+     * rejected, every card is retried on its own so that only the lines of the failing cards are reported.
+     */
+    private void applyChunk(ImportRun run) {
+        Set<String> numbers = new HashSet<>();
+        for (UpdateBalancePayload payload : run.chunk) {
+            if (cardLookupCache.mightExist(payload.getCreditCardNumber())) {
+                numbers.add(payload.getCreditCardNumber());
+            }
+        }
+        Set<String> existing = numbers.isEmpty() ? Set.of() : new HashSet<>(creditCardRepository.findExistingNumbers(numbers));
+
+        // Line indexes of the chunk grouped by card, in input order
+        Map<String, List<Integer>> indexesByCard = new LinkedHashMap<>();
+        List<UpdateBalancePayload> known = new ArrayList<>(run.chunk.size());
+        for (int i = 0; i < run.chunk.size(); i++) {
+            UpdateBalancePayload payload = run.chunk.get(i);
+            if (existing.contains(payload.getCreditCardNumber())) {
+                known.add(payload);
+                indexesByCard.computeIfAbsent(payload.getCreditCardNumber(), key -> new ArrayList<>()).add(i);
+            } else {
+                run.error(run.chunkLines[i], ResponseEnum.CARD_NOT_FOUND.getMessage());
+            }
+        }
+        try {
+            if (!known.isEmpty()) {
+                creditCardService.applyBalanceUpdates(known.toArray(new UpdateBalancePayload[0]));
+                run.imported += known.size();
+            }
+        } catch (BusinessException e) {
+            if (e.getCode() != ResponseEnum.PARAM_EXCEPTION.getCode()) {
+                indexesByCard.values().forEach(indexes -> indexes.forEach(i -> run.error(run.chunkLines[i], e.getMessage())));
+            } else {
+                indexesByCard.values().forEach(indexes -> applyCard(run, indexes));
+            }
+        }
+        run.chunks++;
+        run.chunk.clear();
+        run.events.accept(run.event(ImportEventView.Type.PROGRESS));
+    }
+
+    private void applyCard(ImportRun run, List<Integer> indexes) {
+        UpdateBalancePayload[] payloads = new UpdateBalancePayload[indexes.size()];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = run.chunk.get(indexes.get(i));
+        }
+        try {
+            creditCardService.applyBalanceUpdates(payloads);
+            run.imported += payloads.length;
+        } catch (BusinessException e) {
+            indexes.forEach(i -> run.error(run.chunkLines[i], e.getMessage()));
+        }
+    }
+
+    /**
+     * State of one import: the current chunk with the input line of each of its payloads, and the counters
+     */
+    private static final class ImportRun {
+
+        private final List<UpdateBalancePayload> chunk;
+
+        private final long[] chunkLines;
+
+        private final Consumer<ImportEventView> events;
+
+        private long linesRead;
+
+        private long imported;
+
+        private long failed;
+
+        private long chunks;
+
+        private ImportRun(int chunkSize, Consumer<ImportEventView> events) {
+            this.chunk = new ArrayList<>(chunkSize);
+            this.chunkLines = new long[chunkSize];
+            this.events = events;
+        }
+
+        private void add(long line, UpdateBalancePayload payload) {
+            chunkLines[chunk.size()] = line;
+            chunk.add(payload);
+        }
+
+        private boolean isChunkFull() {
+            return chunk.size() == chunkLines.length;
+        }
+
+        private void error(long line, String message) {
+            failed++;
+            ImportEventView event = event(ImportEventView.Type.ERROR);
+            event.setLine(line);
+            event.setMessage(message);
+            events.accept(event);
+        }
+
+        private ImportEventView event(ImportEventView.Type type) {
+            return ImportEventView.builder().type(type).linesRead(linesRead).imported(imported)
+                    .failed(failed).chunks(chunks).build();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.shepherdmoney.interviewproject.serviceImpl;
+
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.BalanceIngestionService;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.IngestTicketView;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous update-balance ingestion. A submitted batch is validated, split by hash(card number) into
+ * partitions and queued; every partition has a single worker thread that applies its parts in submission
+ * order, one transaction per part. All updates of a card therefore go through one worker in order, and
+ * workers never contend for the same card. Each partition queue holds at most balance.ingest.queue-capacity
+ * payloads, and a submission either fits into every queue it needs or is rejected as a whole. A ticket is kept until it has been finished for
+ * balance.ingest.ticket-ttl, or until more than balance.ingest.max-tickets are kept; queued and running
+ * tickets are never forgotten.
+ */
+@Service
+public class BalanceIngestionServiceImpl implements BalanceIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceIngestionServiceImpl.class);
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private CardLookupCache cardLookupCache;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    private ExecutorService[] workers;
+
+    // Free payload slots of each partition queue
+    private Semaphore[] capacity;
+
+    private final Map<String, Ticket> tickets = new HashMap<>();
+
+    // Finished tickets in the order they finished, the first one is forgotten first
+    private final Deque<Ticket> finishedTickets = new ArrayDeque<>();
+
+    @PostConstruct
+    public void start() {
+        BalanceProperties.Ingest ingest = balanceProperties.getIngest();
+        int partitions = ingest.getPartitions() > 0 ? ingest.getPartitions() : Runtime.getRuntime().availableProcessors();
+        workers = new ExecutorService[partitions];
+        capacity = new Semaphore[partitions];
+        for (int i = 0; i < partitions; i++) {
+            String name = "balance-ingest-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, name));
+            capacity[i] = new Semaphore(ingest.getQueueCapacity());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        for (ExecutorService worker : workers) {
+            if (!worker.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Update-balance worker did not drain its queue in time");
+            }
+        }
+    }
+
+    /**
+     * Validates every payload and card number, then queues one part per partition.
+     *
+     * @throws BusinessException PARAM_EXCEPTION if a payload is incomplete or a card number is unknown,
+     *                           INGEST_BATCH_TOO_LARGE if a part has more payloads than a queue can hold,
+     *                           INGEST_QUEUE_FULL if a partition queue has no room for its part now
+     */
+    @Override
+    public IngestTicketView submit(UpdateBalancePayload[] payloads) {
+        Map<Integer, List<UpdateBalancePayload>> parts = validateAndPartition(payloads);
+        acquireCapacity(parts);
+
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), payloads.length, parts.size());
+        synchronized (this) {
+            evictFinishedTickets();
+            tickets.put(ticket.id, ticket);
+            if (parts.isEmpty()) {
+                finish(ticket);
+            }
+        }
+        parts.forEach((partition, part) -> workers[partition].execute(() -> {
+            capacity[partition].release(part.size());
+            apply(ticket, part.toArray(new UpdateBalancePayload[0]));
+        }));
+        return ticket.toView();
+    }
+
+    @Override
+    public IngestTicketView getTicket(String ticketId) {
+        Ticket ticket;
+        synchronized (this) {
+            evictFinishedTickets();
+            ticket = tickets.get(ticketId);
+        }
+        if (ticket == null) {
+            throw new BusinessException(ResponseEnum.TICKET_NOT_FOUND);
+        }
+        return ticket.toView();
+    }
+
+    private Map<Integer, List<UpdateBalancePayload>> validateAndPartition(UpdateBalancePayload[] payloads) {
+        Set<String> numbers = new HashSet<>();
+        Map<Integer, List<UpdateBalancePayload>> parts = new TreeMap<>();
+        for (UpdateBalancePayload payload : payloads) {
+            if (payload == null || payload.getCreditCardNumber() == null || payload.getBalanceDate() == null
+                    || !cardLookupCache.mightExist(payload.getCreditCardNumber())) {
+                throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+            }
+            numbers.add(payload.getCreditCardNumber());
+            int partition = Math.floorMod(payload.getCreditCardNumber().hashCode(), workers.length);
+            parts.computeIfAbsent(partition, key -> new ArrayList<>()).add(payload);
+        }
+        if (!numbers.isEmpty() && creditCardRepository.findExistingNumbers(numbers).size() != numbers.size()) {
+            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+        }
+        return parts;
+    }
+
+    /**
+     * Take one queue slot per payload of its part in every partition, in ascending partition order, or none at all
+     */
+    private void acquireCapacity(Map<Integer, List<UpdateBalancePayload>> parts) {
+        BalanceProperties.Ingest ingest = balanceProperties.getIngest();
+        for (List<UpdateBalancePayload> part : parts.values()) {
+            if (part.size() > ingest.getQueueCapacity()) {
+                throw new BusinessException(ResponseEnum.INGEST_BATCH_TOO_LARGE);
+            }
+        }
+        List<Integer> acquired = new ArrayList<>();
+        try {
+            for (Map.Entry<Integer, List<UpdateBalancePayload>> part : parts.entrySet()) {
+                int partition = part.getKey();
+                int slots = part.getValue().size();
+                boolean granted = ingest.getBackpressure() == BalanceProperties.Backpressure.BLOCK
+                        ? capacity[partition].tryAcquire(slots, ingest.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                        : capacity[partition].tryAcquire(slots);
+                if (!granted) {
+                    throw new BusinessException(ResponseEnum.INGEST_QUEUE_FULL);
+                }
+                acquired.add(partition);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired.forEach(partition -> capacity[partition].release(parts.get(partition).size()));
+            throw new BusinessException(ResponseEnum.INGEST_QUEUE_FULL, e);
+        } catch (BusinessException e) {
+            acquired.forEach(partition -> capacity[partition].release(parts.get(partition).size()));
+            throw e;
+        }
+    }
+
+    private void apply(Ticket ticket, UpdateBalancePayload[] part) {
+        ticket.started.incrementAndGet();
+        try {
+            creditCardService.applyBalanceUpdates(part);
+            ticket.completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            logger.warn("Update-balance ticket {}: a part of {} payloads failed", ticket.id, part.length, e);
+            if (ticket.error == null) {
+                ticket.error = e.getMessage();
+            }
+            ticket.failed.incrementAndGet();
+        }
+        if (ticket.remaining.decrementAndGet() == 0) {
+            finish(ticket);
+        }
+    }
+
+    private synchronized void finish(Ticket ticket) {
+        ticket.finishedAt = System.currentTimeMillis();
+        finishedTickets.addLast(ticket);
+        evictFinishedTickets();
+    }
+
+    /**
+     * Forget the finished tickets whose TTL has passed, then the ones that finished first while more than
+     * max-tickets are kept. Must be called holding this service's monitor.
+     */
+    private void evictFinishedTickets() {
+        BalanceProperties.Ingest ingest = balanceProperties.getIngest();
+        long expiredBefore = System.currentTimeMillis() - ingest.getTicketTtl().toMillis();
+        Ticket oldest;
+        while ((oldest = finishedTickets.peekFirst()) != null
+                && (oldest.finishedAt < expiredBefore || tickets.size() > ingest.getMaxTickets())) {
+            finishedTickets.removeFirst();
+            tickets.remove(oldest.id);
+        }
+    }
+
+    private static final class Ticket {
+
+        private final String id;
+
+        private final int payloads;
+
+        private final int parts;
+
+        private final AtomicInteger started = new AtomicInteger();
+
+        private final AtomicInteger completed = new AtomicInteger();
+
+        private final AtomicInteger failed = new AtomicInteger();
+
+        // Parts not completed or failed yet
+        private final AtomicInteger remaining;
+
+        private volatile String error;
+
+        // When the last part completed or failed, guarded by the service's monitor
+        private long finishedAt;
+
+        private Ticket(String id, int payloads, int parts) {
+            this.id = id;
+            this.payloads = payloads;
+            this.parts = parts;
+            this.remaining = new AtomicInteger(parts);
+        }
+
+        private IngestTicketView toView() {
+            int completedParts = completed.get();
+            int failedParts = failed.get();
+            IngestTicketView.Status status;
+            if (completedParts + failedParts == parts) {
+                status = failedParts > 0 ? IngestTicketView.Status.FAILED : IngestTicketView.Status.COMPLETED;
+            } else if (started.get() > 0) {
+                status = IngestTicketView.Status.RUNNING;
+            } else {
+                status = IngestTicketView.Status.QUEUED;
+            }
+            return new IngestTicketView(id, status, payloads, parts, completedParts, failedParts, error);
+        }
+    }
+}
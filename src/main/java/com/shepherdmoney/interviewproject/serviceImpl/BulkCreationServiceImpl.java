@@ -0,0 +1,152 @@
+package com.shepherdmoney.interviewproject.serviceImpl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.BulkCreationService;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.service.UserService;
+import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
+import com.shepherdmoney.interviewproject.vo.request.CreateUserPayload;
+import com.shepherdmoney.interviewproject.vo.response.BulkCreateResultView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Streaming bulk creation of users and credit cards. Lines are parsed one at a time into a chunk of
+ * balance.bulk-import.chunk-size payloads, and every full chunk goes through the bulk create of the user or
+ * credit card service in its own transaction, so memory stays bounded whatever the size of the input. The
+ * result of a line carries its index in the input; lines that cannot be parsed are reported and skipped.
+ */
+@Service
+public class BulkCreationServiceImpl implements BulkCreationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkCreationServiceImpl.class);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public long createUsers(InputStream input, Consumer<BulkCreateResultView> results) throws IOException {
+        long created = create(input, CreateUserPayload.class, results, chunk -> {
+            List<Integer> ids = userService.createUsers(chunk);
+            List<BulkCreateResultView> chunkResults = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                chunkResults.add(BulkCreateResultView.builder().index(i).id(ids.get(i)).build());
+            }
+            return chunkResults;
+        });
+        logger.info("Bulk creation: {} users created", created);
+        return created;
+    }
+
+    @Override
+    public long createCards(InputStream input, Consumer<BulkCreateResultView> results) throws IOException {
+        long created = create(input, AddCreditCardToUserPayload.class, results, chunk -> {
+            try {
+                return creditCardService.createCardsForUsers(chunk);
+            } catch (BusinessException e) {
+                // A number taken concurrently rolled the chunk back, report it on every line of the chunk
+                List<BulkCreateResultView> chunkResults = new ArrayList<>(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunkResults.add(BulkCreateResultView.builder().index(i).status(e.getCode()).error(e.getMessage()).build());
+                }
+                return chunkResults;
+            }
+        });
+        logger.info("Bulk creation: {} credit cards created", created);
+        return created;
+    }
+
+    /**
+     * Read the payloads line by line and create them chunk by chunk
+     *
+     * @param createChunk Creates a chunk and returns one result per payload, indexed within the chunk
+     * @return The number of payloads created
+     */
+    private <T> long create(InputStream input, Class<T> payloadType, Consumer<BulkCreateResultView> results,
+                            Function<List<T>, List<BulkCreateResultView>> createChunk) throws IOException {
+        int chunkSize = balanceProperties.getBulkImport().getChunkSize();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        long[] chunkIndexes = new long[chunkSize];
+        // Parse errors are held back until the chunk before them is committed, so results stay in input order
+        List<BulkCreateResultView> pending = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long index = -1;
+        long created = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            index++;
+            if (line.isBlank()) {
+                continue;
+            }
+            T payload;
+            try {
+                payload = objectMapper.readValue(line, payloadType);
+            } catch (JsonProcessingException e) {
+                pending.add(BulkCreateResultView.builder().index(index).status(ResponseEnum.PARAM_EXCEPTION.getCode())
+                        .error("Malformed JSON: " + e.getOriginalMessage()).build());
+                continue;
+            }
+            if (payload == null) {
+                pending.add(BulkCreateResultView.builder().index(index).status(ResponseEnum.PARAM_EXCEPTION.getCode())
+                        .error(ResponseEnum.PARAM_EXCEPTION.getMessage()).build());
+                continue;
+            }
+            chunkIndexes[chunk.size()] = index;
+            chunk.add(payload);
+            pending.add(null);
+            if (chunk.size() == chunkSize) {
+                created += flush(chunk, chunkIndexes, pending, results, createChunk);
+            }
+        }
+        return created + flush(chunk, chunkIndexes, pending, results, createChunk);
+    }
+
+    /**
+     * Create the chunk and emit its results together with the parse errors between them, in input order
+     */
+    private static <T> long flush(List<T> chunk, long[] chunkIndexes, List<BulkCreateResultView> pending,
+                                  Consumer<BulkCreateResultView> results,
+                                  Function<List<T>, List<BulkCreateResultView>> createChunk) {
+        List<BulkCreateResultView> chunkResults = chunk.isEmpty() ? List.of() : createChunk.apply(chunk);
+        long created = 0;
+        int next = 0;
+        for (BulkCreateResultView result : pending) {
+            if (result == null) {
+                result = chunkResults.get(next);
+                result.setIndex(chunkIndexes[next++]);
+                if (result.getStatus() == null) {
+                    created++;
+                }
+            }
+            results.accept(result);
+        }
+        chunk.clear();
+        pending.clear();
+        return created;
+    }
+}
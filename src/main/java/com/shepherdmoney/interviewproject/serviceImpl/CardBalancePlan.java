@@ -0,0 +1,246 @@
+package com.shepherdmoney.interviewproject.serviceImpl;
+
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndex;
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.model.BalanceDelta;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The balance history of one credit card while an update-balance batch is applied to it.
+ * The history is loaded once, every payload of the batch is folded into the sorted timeline in memory
+ * with exactly the rules of a single update, and the new and changed rows are written back once.
+ * In sparse mode only change points are stored: gaps are not filled, and a day without an entry between
+ * the earliest entry and yesterday is read as the balance of the closest entry before it. With the rollover
+ * job the plan works the same way in dense mode: the job writes the carried-forward entries later.
+ * In delta-log mode the entities hold base balances: a backdated change sets the base of its own entry and
+ * appends one delta for all later entries instead of rewriting each of them.
+ */
+class CardBalancePlan {
+
+    private final CreditCard creditCard;
+
+    private final boolean sparse;
+
+    // Managed entities with the JPA store, so changed balances are written by the persistence context on flush
+    private final TreeMap<LocalDate, BalanceHistory> timeline = new TreeMap<>();
+
+    private final List<BalanceHistory> newHistories = new ArrayList<>();
+
+    // Deltas of the card in delta-log mode, null when later balances are rewritten in place
+    private final BalanceDeltaIndex deltaIndex;
+
+    // One new delta per date, changes of the same date within a batch are merged
+    private final Map<LocalDate, BalanceDelta> newDeltas = new LinkedHashMap<>();
+
+    // Loaded entries whose balance this plan changed, each written once on flush however often it changed
+    private final Set<BalanceHistory> changedHistories = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // The same entries as newHistories, by identity: entries loaded from a mapped store have no id either
+    private final Set<BalanceHistory> createdHistories = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Entries added to fill days without a balance, a part of newHistories
+    private int gapRows;
+
+    // Earliest date of the timeline when gaps were last filled, null if they never were
+    private LocalDate filledFrom;
+
+    /**
+     * @param sparse     Carry the previous balance into days without an entry instead of filling gaps
+     * @param deltaIndex The persisted deltas of the card in delta-log mode, owned by the plan from now on;
+     *                   null to rewrite later balances in place
+     */
+    CardBalancePlan(CreditCard creditCard, List<BalanceHistory> histories, boolean sparse, BalanceDeltaIndex deltaIndex) {
+        this.creditCard = creditCard;
+        this.sparse = sparse;
+        this.deltaIndex = deltaIndex;
+        for (BalanceHistory history : histories) {
+            timeline.put(history.getDate(), history);
+        }
+    }
+
+    CreditCard getCreditCard() {
+        return creditCard;
+    }
+
+    /**
+     * @return The entries created by this plan that still have to be persisted
+     */
+    List<BalanceHistory> getNewHistories() {
+        return newHistories;
+    }
+
+    /**
+     * @return The deltas created by this plan that still have to be persisted
+     */
+    Collection<BalanceDelta> getNewDeltas() {
+        return newDeltas.values();
+    }
+
+    /**
+     * @return The number of entries created by this plan to fill gaps
+     */
+    int getGapRows() {
+        return gapRows;
+    }
+
+    /**
+     * @return The number of rows this plan writes: new entries, rewritten loaded entries and new deltas
+     */
+    int getRowsTouched() {
+        return newHistories.size() + changedHistories.size() + newDeltas.size();
+    }
+
+    /**
+     * @return The delta index including the deltas of this plan, null when not in delta-log mode
+     */
+    BalanceDeltaIndex getDeltaIndex() {
+        return deltaIndex;
+    }
+
+    /**
+     * @return The resulting history of the card as a primitive timeline
+     */
+    BalanceTimeline toTimeline() {
+        int[] epochDays = new int[timeline.size()];
+        long[] balances = new long[timeline.size()];
+        int index = 0;
+        for (BalanceHistory history : timeline.values()) {
+            epochDays[index] = BalanceTimeline.toEpochDay(history.getDate());
+            balances[index] = balanceOf(history);
+            index++;
+        }
+        return new BalanceTimeline(epochDays, balances);
+    }
+
+    /**
+     * Apply one payload: fill the gaps of the history (dense mode without the rollover job only), then set the balance of the payload
+     * date and shift every later balance by the difference. A payload date without a balance gets a new entry.
+     *
+     * @param date   The balance date of the payload
+     * @param amount The balance amount of the payload in cents
+     * @param today  The first date that gap filling must not cover
+     */
+    void apply(LocalDate date, long amount, LocalDate today) {
+        if (timeline.isEmpty()) {
+            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+        }
+        if (!sparse) {
+            fillGaps(today);
+        }
+
+        BalanceHistory payloadHistory = timeline.get(date);
+        Map.Entry<LocalDate, BalanceHistory> carried = payloadHistory == null && sparse && date.isBefore(today)
+                ? timeline.lowerEntry(date) : null;
+        if (payloadHistory == null && carried == null) {
+            addHistory(date, amount);
+            return;
+        }
+        long current = balanceOf(payloadHistory != null ? payloadHistory : carried.getValue());
+        long difference = amount - current;
+        if (difference != 0) {
+            if (payloadHistory != null) {
+                payloadHistory.setBalance(amount - deltaBefore(date));
+                changed(payloadHistory);
+            } else {
+                // The payload date becomes a change point of its own
+                addHistory(date, amount);
+            }
+            shiftLaterBalances(date, difference);
+        }
+    }
+
+    private void shiftLaterBalances(LocalDate date, long difference) {
+        if (deltaIndex == null) {
+            for (BalanceHistory later : timeline.tailMap(date, false).values()) {
+                later.setBalance(later.getBalance() + difference);
+                changed(later);
+            }
+            return;
+        }
+        deltaIndex.add(BalanceTimeline.toEpochDay(date), difference);
+        BalanceDelta delta = newDeltas.get(date);
+        if (delta == null) {
+            delta = new BalanceDelta();
+            delta.setDate(date);
+            delta.setCreditCard(creditCard);
+            newDeltas.put(date, delta);
+        }
+        delta.setDelta(delta.getDelta() + difference);
+    }
+
+    /**
+     * @return The balance readers see for the entry: its stored balance plus, in delta-log mode, every earlier delta
+     */
+    private long balanceOf(BalanceHistory history) {
+        return history.getBalance() + deltaBefore(history.getDate());
+    }
+
+    private long deltaBefore(LocalDate date) {
+        return deltaIndex == null ? 0 : deltaIndex.sumBefore(BalanceTimeline.toEpochDay(date));
+    }
+
+    /**
+     * Make sure every day from the earliest entry up to yesterday has an entry carrying the balance of the
+     * closest entry before it. Once filled, only a new earliest entry can open new gaps, so later calls
+     * only walk the part of the timeline in front of the previously filled range.
+     */
+    private void fillGaps(LocalDate today) {
+        LocalDate earliest = timeline.firstKey();
+        if (earliest.equals(filledFrom)) {
+            return;
+        }
+        Map<LocalDate, BalanceHistory> unfilled = filledFrom == null ? new TreeMap<>(timeline)
+                : new TreeMap<>(timeline.headMap(filledFrom, true));
+        BalanceHistory previous = null;
+        for (BalanceHistory next : unfilled.values()) {
+            if (previous != null) {
+                fillBetween(previous, next.getDate(), today);
+            }
+            previous = next;
+        }
+        if (filledFrom == null) {
+            fillBetween(previous, today, today);
+        }
+        filledFrom = earliest;
+    }
+
+    private void fillBetween(BalanceHistory previous, LocalDate nextDate, LocalDate today) {
+        LocalDate end = nextDate.isAfter(today) ? today : nextDate;
+        long balance = balanceOf(previous);
+        for (LocalDate date = previous.getDate().plusDays(1); date.isBefore(end); date = date.plusDays(1)) {
+            addHistory(date, balance);
+            gapRows++;
+        }
+    }
+
+    private void changed(BalanceHistory history) {
+        // Entries created by this plan are counted as new ones
+        if (!createdHistories.contains(history)) {
+            changedHistories.add(history);
+        }
+    }
+
+    private void addHistory(LocalDate date, long balance) {
+        BalanceHistory history = new BalanceHistory();
+        history.setDate(date);
+        history.setBalance(balance - deltaBefore(date));
+        history.setCreditCard(creditCard);
+        timeline.put(date, history);
+        newHistories.add(history);
+        createdHistories.add(history);
+    }
+}
@@ -0,0 +1,52 @@
+package com.shepherdmoney.interviewproject.serviceImpl;
+
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks over credit card ids. Updates of cards on different stripes run in parallel, updates of the
+ * same card are serialized. A multi-card update takes all its stripes in ascending stripe order, so two
+ * updates sharing cards can never deadlock. The rollover job takes the stripes of each chunk of cards it
+ * carries forward the same way.
+ */
+@Component
+public class CardLockStripes {
+
+    private final ReentrantLock[] stripes;
+
+    CardLockStripes(BalanceProperties balanceProperties) {
+        stripes = new ReentrantLock[balanceProperties.getLocking().getStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Run an action while holding the stripes of every given card
+     */
+    public <T> T withCardLocks(Collection<Integer> creditCardIds, Supplier<T> action) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (int creditCardId : creditCardIds) {
+            indexes.add(Math.floorMod(creditCardId, stripes.length));
+        }
+        Deque<ReentrantLock> locked = new ArrayDeque<>(indexes.size());
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                locked.push(stripes[index]);
+            }
+            return action.get();
+        } finally {
+            while (!locked.isEmpty()) {
+                locked.pop().unlock();
+            }
+        }
+    }
+}
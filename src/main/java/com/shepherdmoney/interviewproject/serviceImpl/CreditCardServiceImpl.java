@@ -1,38 +1,67 @@
 package com.shepherdmoney.interviewproject.serviceImpl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndex;
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndexCache;
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.eventlog.BalanceEventLog;
 import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.metrics.BalanceUpdateMetrics;
+import com.shepherdmoney.interviewproject.model.BalanceDelta;
 import com.shepherdmoney.interviewproject.model.BalanceHistory;
 import com.shepherdmoney.interviewproject.model.CreditCard;
 import com.shepherdmoney.interviewproject.model.User;
-import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceDeltaRepository;
 import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
 import com.shepherdmoney.interviewproject.repository.UserRepository;
 import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.BalanceExportService;
 import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
 import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
 import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.BulkCreateResultView;
+import com.shepherdmoney.interviewproject.vo.response.CardLookupStatsView;
+import com.shepherdmoney.interviewproject.vo.response.CardOwnerView;
 import com.shepherdmoney.interviewproject.vo.response.CreditCardView;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CreditCardServiceImpl implements CreditCardService {
 
     private static final Logger logger = LoggerFactory.getLogger(CreditCardServiceImpl.class);
 
-    @PersistenceContext
-    private EntityManager entityManager; // Inject the EntityManager
-
     @Autowired
     private CreditCardRepository creditCardRepository;
 
@@ -40,25 +69,285 @@ public class CreditCardServiceImpl implements CreditCardService {
     private UserRepository userRepository;
 
     @Autowired
-    private BalanceHistoryRepository balanceHistoryRepository;
+    private BalanceStore balanceStore;
+
+    // Null unless balance.event-log.enabled
+    @Autowired(required = false)
+    private BalanceEventLog balanceEventLog;
+
+    @Autowired
+    private BalanceDeltaRepository balanceDeltaRepository;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Autowired
+    private BalanceDeltaIndexCache balanceDeltaIndexCache;
+
+    @Autowired
+    private CardLookupCache cardLookupCache;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private CardLockStripes cardLockStripes;
+
+    @Autowired
+    private UpdateBulkhead updateBulkhead;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BalanceUpdateMetrics balanceUpdateMetrics;
 
 
     @Override
     public List<CreditCardView> getCreditCardsByUserId(int userId) {
-        // Find all credit cards associated with userId
-        List<CreditCard> cards = creditCardRepository.findByUserId(userId);
-        //map the list of credit cards to list of CreditCardView
-        return cards.stream()
-                .map(card -> new CreditCardView(card.getIssuanceBank(), card.getNumber()))
-                .collect(Collectors.toList());
+        // Read the views straight from the query, the card entities are never loaded
+        return creditCardRepository.findViewsByUserId(userId);
     }
 
+    /**
+     * Writes the views as a forward-only cursor returns them, so memory does not depend on the number of
+     * cards of the user. An unknown user has no cards and gets an empty array, like getCreditCardsByUserId.
+     * The array is only closed once every card is written: a listing cut short by a failure stays invalid
+     * JSON instead of looking complete.
+     *
+     * @throws BusinessException PARAM_EXCEPTION if the limit is not positive
+     */
+    @Override
+    public long writeCreditCardsByUserId(int userId, Integer afterId, Integer limit, BalanceExportService.OutputOpener output) throws IOException {
+        if (limit != null && limit <= 0) {
+            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+        }
+        Pageable page = limit == null ? Pageable.unpaged() : PageRequest.of(0, limit);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output.open())) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.writeStartArray();
+            Long written = readOnly.execute(status -> {
+                long cards = 0;
+                try (Stream<CreditCardView> views = creditCardRepository.streamViewsByUserId(userId,
+                        afterId == null ? Integer.MIN_VALUE : afterId, page)) {
+                    for (CreditCardView view : (Iterable<CreditCardView>) views::iterator) {
+                        generator.writeObject(view);
+                        cards++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return cards;
+            });
+            generator.writeEndArray();
+            return written == null ? 0 : written;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Resolves the card and its owner through the card lookup cache, which falls back to a single projection
+     * query on the unique card number index.
+     */
     @Override
     public Integer getUserByCreditCardNumber(String cardNumber) {
-        creditCardRepository.findByCardNumber(cardNumber)
+        CardOwnerView owner = findOwner(cardNumber)
                 .orElseThrow(() -> new BusinessException(ResponseEnum.CARD_NOT_FOUND));
-        return creditCardRepository.findUserByCreditCardNumber(cardNumber)
-                .orElseThrow(() -> new BusinessException(ResponseEnum.PARAM_EXCEPTION));
+        if (owner.getUserId() == null) {
+            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+        }
+        return owner.getUserId();
+    }
+
+    /**
+     * Point read. Served from the cached timeline of the card when there is one, otherwise by a point lookup
+     * in the balance store (a projection query on uk_balance_history_card_date with JPA). In sparse mode a day
+     * without an entry between the earliest entry and yesterday has the balance of the closest entry before it.
+     */
+    @Override
+    public BalanceHistoryView getBalanceOnDate(String cardNumber, LocalDate date) {
+        int creditCardId = resolveCardId(cardNumber);
+        boolean carryForward = isSparse() && date.isBefore(LocalDate.now());
+        BalanceTimeline timeline = balanceTimelineCache.get(creditCardId);
+        if (timeline != null) {
+            int epochDay = BalanceTimeline.toEpochDay(date);
+            int index = carryForward ? timeline.floorIndex(epochDay) : timeline.indexOf(epochDay);
+            if (index < 0) {
+                throw new BusinessException(ResponseEnum.BALANCE_NOT_FOUND);
+            }
+            return new BalanceHistoryView(date, timeline.balanceAt(index));
+        }
+        Optional<BalanceHistoryView> entry = carryForward
+                ? balanceStore.findLatestBalanceOnOrBefore(creditCardId, date)
+                : balanceStore.findBalanceOnDate(creditCardId, date);
+        return entry.map(view -> new BalanceHistoryView(date, resolveBalance(creditCardId, view)))
+                .orElseThrow(() -> new BusinessException(ResponseEnum.BALANCE_NOT_FOUND));
+    }
+
+    @Override
+    public BalanceHistoryView getNearestBalance(String cardNumber, LocalDate date) {
+        int creditCardId = resolveCardId(cardNumber);
+        boolean carryForward = isSparse() && date.isBefore(LocalDate.now());
+        BalanceTimeline timeline = balanceTimelineCache.get(creditCardId);
+        if (timeline != null) {
+            int epochDay = BalanceTimeline.toEpochDay(date);
+            int floor = carryForward ? timeline.floorIndex(epochDay) : -1;
+            if (floor >= 0) {
+                return new BalanceHistoryView(date, timeline.balanceAt(floor));
+            }
+            int index = timeline.ceilingIndex(epochDay);
+            if (index < 0) {
+                throw new BusinessException(ResponseEnum.BALANCE_NOT_FOUND);
+            }
+            return toView(timeline, index);
+        }
+        if (carryForward) {
+            Optional<BalanceHistoryView> floor = balanceStore.findLatestBalanceOnOrBefore(creditCardId, date);
+            if (floor.isPresent()) {
+                return new BalanceHistoryView(date, resolveBalance(creditCardId, floor.get()));
+            }
+        }
+        return balanceStore.findFirstBalanceOnOrAfter(creditCardId, date)
+                .map(view -> new BalanceHistoryView(view.getDate(), resolveBalance(creditCardId, view)))
+                .orElseThrow(() -> new BusinessException(ResponseEnum.BALANCE_NOT_FOUND));
+    }
+
+    @Override
+    public List<BalanceHistoryView> getBalanceHistory(String cardNumber, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+        }
+        int creditCardId = resolveCardId(cardNumber);
+        boolean sparse = isSparse();
+        BalanceTimeline timeline = balanceTimelineCache.get(creditCardId);
+        List<BalanceHistoryView> entries = new ArrayList<>();
+        if (timeline != null) {
+            int fromEpochDay = BalanceTimeline.toEpochDay(from);
+            int floor = sparse ? timeline.floorIndex(fromEpochDay - 1) : -1;
+            if (floor >= 0) {
+                entries.add(toView(timeline, floor));
+            }
+            timeline.forEachInRange(fromEpochDay, BalanceTimeline.toEpochDay(to),
+                    (epochDay, balance) -> entries.add(new BalanceHistoryView(LocalDate.ofEpochDay(epochDay), balance)));
+        } else {
+            if (sparse) {
+                balanceStore.findLatestBalanceOnOrBefore(creditCardId, from.minusDays(1)).ifPresent(entries::add);
+            }
+            entries.addAll(balanceStore.findBalancesBetween(creditCardId, from, to));
+            resolveBalances(creditCardId, entries);
+        }
+        return sparse ? carryForward(entries, from, to, LocalDate.now()) : entries;
+    }
+
+    /**
+     * Expand sparse change points into daily entries: every day of the range between the earliest change
+     * point and yesterday that has no entry gets the balance of the closest change point before it.
+     *
+     * @param changePoints Change points in ascending date order: at most one before the range, then the ones in it
+     */
+    private static List<BalanceHistoryView> carryForward(List<BalanceHistoryView> changePoints, LocalDate from,
+                                                         LocalDate to, LocalDate today) {
+        List<BalanceHistoryView> daily = new ArrayList<>();
+        BalanceHistoryView previous = null;
+        for (BalanceHistoryView changePoint : changePoints) {
+            if (previous != null) {
+                addCarried(daily, previous, from, changePoint.getDate(), today);
+            }
+            if (!changePoint.getDate().isBefore(from)) {
+                daily.add(changePoint);
+            }
+            previous = changePoint;
+        }
+        if (previous != null) {
+            addCarried(daily, previous, from, to.plusDays(1), today);
+        }
+        return daily;
+    }
+
+    private static void addCarried(List<BalanceHistoryView> daily, BalanceHistoryView previous, LocalDate from,
+                                   LocalDate nextDate, LocalDate today) {
+        LocalDate date = previous.getDate().plusDays(1);
+        if (date.isBefore(from)) {
+            date = from;
+        }
+        LocalDate end = nextDate.isAfter(today) ? today : nextDate;
+        for (; date.isBefore(end); date = date.plusDays(1)) {
+            daily.add(new BalanceHistoryView(date, previous.getBalance()));
+        }
+    }
+
+    /**
+     * @return The balance readers see for a stored entry: in delta-log mode its stored base balance plus
+     * every delta dated before it, otherwise the stored balance
+     */
+    private long resolveBalance(int creditCardId, BalanceHistoryView stored) {
+        if (!isDeltaLog()) {
+            return stored.getBalance();
+        }
+        return stored.getBalance() + deltaIndexForRead(creditCardId).sumBefore(BalanceTimeline.toEpochDay(stored.getDate()));
+    }
+
+    private void resolveBalances(int creditCardId, List<BalanceHistoryView> stored) {
+        if (!isDeltaLog()) {
+            return;
+        }
+        BalanceDeltaIndex deltaIndex = deltaIndexForRead(creditCardId);
+        for (BalanceHistoryView view : stored) {
+            view.setBalance(view.getBalance() + deltaIndex.sumBefore(BalanceTimeline.toEpochDay(view.getDate())));
+        }
+    }
+
+    /**
+     * The cached delta index of the card, or one built from its persisted deltas. Reads never publish an
+     * index: only writers do, after commit and under the card lock, so a read cannot replace a newer index.
+     */
+    private BalanceDeltaIndex deltaIndexForRead(int creditCardId) {
+        BalanceDeltaIndex cached = balanceDeltaIndexCache.get(creditCardId);
+        return cached != null ? cached : toDeltaIndex(balanceDeltaRepository.findByCreditCardId(creditCardId));
+    }
+
+    private static BalanceDeltaIndex toDeltaIndex(List<BalanceDelta> deltas) {
+        BalanceDeltaIndex deltaIndex = new BalanceDeltaIndex();
+        for (BalanceDelta delta : deltas) {
+            deltaIndex.add(BalanceTimeline.toEpochDay(delta.getDate()), delta.getDelta());
+        }
+        return deltaIndex;
+    }
+
+    private boolean isDeltaLog() {
+        return balanceProperties.getDeltaLog().isEnabled();
+    }
+
+    private boolean isSparse() {
+        return balanceProperties.getStorage().getMode() == BalanceProperties.StorageMode.SPARSE;
+    }
+
+    private int resolveCardId(String cardNumber) {
+        return findOwner(cardNumber)
+                .map(CardOwnerView::getCreditCardId)
+                .orElseThrow(() -> new BusinessException(ResponseEnum.CARD_NOT_FOUND));
+    }
+
+    private Optional<CardOwnerView> findOwner(String cardNumber) {
+        return cardLookupCache.find(cardNumber, creditCardRepository::findOwnerByCardNumber);
+    }
+
+    @Override
+    public CardLookupStatsView getCardLookupStats() {
+        return cardLookupCache.stats();
+    }
+
+    private static BalanceHistoryView toView(BalanceTimeline timeline, int index) {
+        return new BalanceHistoryView(LocalDate.ofEpochDay(timeline.epochDayAt(index)), timeline.balanceAt(index));
     }
 
     /**
@@ -69,133 +358,286 @@ public class CreditCardServiceImpl implements CreditCardService {
      * @param payload the payload containing details necessary to create a new credit card,
      *                including the user id, card issuance bank, and card number.
      * @return the id of the newly created credit card record.
-     * @throws BusinessException if the user id in the payload does not match any existing user.
+     * @throws BusinessException if the user id in the payload does not match any existing user,
+     *                           or DUPLICATE_CARD_NUMBER if the card number is already taken.
      */
     @Override
     public Integer createCardForUser(AddCreditCardToUserPayload payload) {
-        User user = userRepository.findById(payload.getUserId())
-                .orElseThrow(() -> new BusinessException(ResponseEnum.USER_NOT_FOUND));
-        CreditCard card = new CreditCard();
-        card.setIssuanceBank(payload.getCardIssuanceBank());
-        card.setNumber(payload.getCardNumber());
-        card.setUser(user);
-        card = creditCardRepository.saveAndFlush(card);
-        return card.getId();
+        // The user row stays locked until the card is committed, so a concurrent deletion of the user sees it
+        return transactionTemplate.execute(status -> {
+            User user = userRepository.findByIdForUpdate(payload.getUserId())
+                    .orElseThrow(() -> new BusinessException(ResponseEnum.USER_NOT_FOUND));
+            CreditCard card = new CreditCard();
+            card.setIssuanceBank(payload.getCardIssuanceBank());
+            card.setNumber(payload.getCardNumber());
+            card.setUser(user);
+            try {
+                // The unique index on the card number rejects duplicates, no need for a lookup first
+                card = creditCardRepository.saveAndFlush(card);
+            } catch (DataIntegrityViolationException e) {
+                throw new BusinessException(ResponseEnum.DUPLICATE_CARD_NUMBER, e);
+            }
+            return card.getId();
+        });
     }
 
+    /**
+     * Creates the cards of many payloads in one transaction. The users and the taken card numbers of all
+     * payloads are looked up with one query each, users are referenced without being loaded, and the cards
+     * are inserted in JDBC batches. The user rows stay locked until the cards are committed. A payload without a card number, of an unknown user, or whose number is
+     * taken or repeats an earlier payload is reported and left out; the others are created.
+     *
+     * @throws BusinessException DUPLICATE_CARD_NUMBER if a concurrent request took one of the numbers after it
+     * was looked up, in which case no card is created
+     */
     @Override
-    @Transactional
-    public String updateBalanceHistory(UpdateBalancePayload[] payloads) {
-        for (UpdateBalancePayload payload : payloads) {
-            String number = payload.getCreditCardNumber();
-            LocalDate payloadDate = payload.getBalanceDate();
-            Double payloadAmount = payload.getBalanceAmount();
+    public List<BulkCreateResultView> createCardsForUsers(List<AddCreditCardToUserPayload> payloads) {
+        Set<Integer> userIds = new HashSet<>();
+        Set<String> numbers = new HashSet<>();
+        for (AddCreditCardToUserPayload payload : payloads) {
+            userIds.add(payload.getUserId());
+            if (payload.getCardNumber() != null) {
+                numbers.add(payload.getCardNumber());
+            }
+        }
+        return transactionTemplate.execute(status -> {
+            Set<Integer> existingUsers = userIds.isEmpty() ? Set.of() : new HashSet<>(userRepository.findExistingIdsForUpdate(userIds));
+            Set<String> takenNumbers = numbers.isEmpty() ? new HashSet<>() : new HashSet<>(creditCardRepository.findExistingNumbers(numbers));
+            List<BulkCreateResultView> results = new ArrayList<>(payloads.size());
+            List<CreditCard> cards = new ArrayList<>(payloads.size());
+            for (int i = 0; i < payloads.size(); i++) {
+                AddCreditCardToUserPayload payload = payloads.get(i);
+                ResponseEnum error = payload.getCardNumber() == null || payload.getCardNumber().isBlank() ? ResponseEnum.PARAM_EXCEPTION
+                        : !existingUsers.contains(payload.getUserId()) ? ResponseEnum.USER_NOT_FOUND
+                        : !takenNumbers.add(payload.getCardNumber()) ? ResponseEnum.DUPLICATE_CARD_NUMBER
+                        : null;
+                if (error != null) {
+                    results.add(BulkCreateResultView.builder().index(i).status(error.getCode()).error(error.getMessage()).build());
+                    continue;
+                }
+                CreditCard card = new CreditCard();
+                card.setIssuanceBank(payload.getCardIssuanceBank());
+                card.setNumber(payload.getCardNumber());
+                card.setUser(userRepository.getReferenceById(payload.getUserId()));
+                cards.add(card);
+                results.add(BulkCreateResultView.builder().index(i).build());
+            }
+            try {
+                creditCardRepository.saveAll(cards);
+                creditCardRepository.flush();
+            } catch (DataIntegrityViolationException e) {
+                throw new BusinessException(ResponseEnum.DUPLICATE_CARD_NUMBER, e);
+            }
+            int created = 0;
+            for (BulkCreateResultView result : results) {
+                if (result.getStatus() == null) {
+                    result.setId(cards.get(created++).getId());
+                }
+            }
+            return results;
+        });
+    }
 
-            // Find the credit card corresponding to card number in payload
-            CreditCard creditCard = creditCardRepository.findByCardNumber(number)
-                    .orElseThrow(() -> new BusinessException(ResponseEnum.PARAM_EXCEPTION));
+    /**
+     * Applies a batch of balance updates. All card numbers of the batch are resolved with one query and the
+     * histories of all involved cards are loaded with one more. The payloads of each card are then folded
+     * into its history in memory in arrival order, which gives exactly the result of applying them one by
+     * one, and every card's new and changed entries are written once when the transaction commits. With
+     * balance.event-log.enabled the applied batch is appended to the event log and synced before that.
+     * <p>
+     * The lock stripes of all cards of the batch are held from before the transaction starts until after it
+     * has committed, so concurrent batches on the same card are applied one after the other and each one
+     * loads the history the previous one committed, while batches on other cards run in parallel. At most
+     * execution.max-concurrent-updates batches of this entry point run at once; a batch waits for its turn
+     * before taking any lock.
+     *
+     * @param payloads The balance updates, in the order they must be applied
+     * @return "200 OK" when every payload is applied
+     * @throws BusinessException PARAM_EXCEPTION if a card number is unknown or a card has no balance history,
+     *                           UPDATES_BUSY if the batch cannot start within execution.update-wait-timeout
+     */
+    @Override
+    public String updateBalanceHistory(UpdateBalancePayload[] payloads) {
+        if (payloads.length == 0) {
+            return "200 OK";
+        }
+        return updateBulkhead.withPermit(() -> applyBalanceUpdates(payloads));
+    }
 
-            // If there are gaps between two balance dates, fill the empty date with the balance of the previous date
-            fillGapsInBalanceHistory(creditCard);
+    /**
+     * Applies a batch of balance updates like updateBalanceHistory, but without the bulkhead. The ingestion
+     * workers and the import are already bounded by their partitions and their single stream, and a part
+     * queued behind an accepted submission must wait its turn rather than fail with UPDATES_BUSY.
+     *
+     * @param payloads The balance updates, in the order they must be applied
+     * @return "200 OK" when every payload is applied
+     * @throws BusinessException PARAM_EXCEPTION if a card number is unknown or a card has no balance history
+     */
+    @Override
+    public String applyBalanceUpdates(UpdateBalancePayload[] payloads) {
+        if (payloads.length == 0) {
+            return "200 OK";
+        }
+        Set<String> numbers = distinctCardNumbers(payloads);
+        List<Integer> creditCardIds = creditCardRepository.findIdsByCardNumberIn(numbers);
+        if (creditCardIds.size() != numbers.size()) {
+            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+        }
+        return cardLockStripes.withCardLocks(creditCardIds,
+                () -> transactionTemplate.execute(status -> applyBatch(payloads, numbers)));
+    }
 
-            // After each update operation, you can immediately synchronize the persistence context to the database
-            entityManager.flush();
-            // Clear the persistence context to avoid any potential issues with cached entities
-            entityManager.clear();
+    private String applyBatch(UpdateBalancePayload[] payloads, Set<String> numbers) {
+        Map<String, CreditCard> cardsByNumber = resolveCards(numbers);
+        Map<Integer, CardBalancePlan> plans = loadPlans(cardsByNumber.values());
 
-            // Update all subsequent balances after payload date
-            updateBalancesAfterPayloadDate(payloadDate, payloadAmount, creditCard);
+        // Group the payloads by card, keeping the arrival order within each card
+        Map<CardBalancePlan, List<UpdateBalancePayload>> payloadsByPlan = new LinkedHashMap<>();
+        for (UpdateBalancePayload payload : payloads) {
+            CardBalancePlan plan = plans.get(cardsByNumber.get(payload.getCreditCardNumber()).getId());
+            payloadsByPlan.computeIfAbsent(plan, key -> new ArrayList<>()).add(payload);
+        }
 
-            // After each update operation, you can immediately synchronize the persistence context to the database
-            entityManager.flush();
-            // Clear the persistence context to avoid any potential issues with cached entities
-            entityManager.clear();
+        LocalDate today = LocalDate.now();
+        Map<Integer, BalanceTimeline> bases = balanceEventLog == null ? null : unloggedBases(plans.values());
+        List<BalanceHistory> newHistories = new ArrayList<>();
+        List<BalanceDelta> newDeltas = new ArrayList<>();
+        Map<Integer, BalanceTimeline> timelines = new HashMap<>();
+        Map<Integer, BalanceDeltaIndex> deltaIndexes = new HashMap<>();
+        int gapRows = 0;
+        int rowsTouched = 0;
+        for (Map.Entry<CardBalancePlan, List<UpdateBalancePayload>> entry : payloadsByPlan.entrySet()) {
+            CardBalancePlan plan = entry.getKey();
+            for (UpdateBalancePayload payload : entry.getValue()) {
+                plan.apply(payload.getBalanceDate(), payload.getBalanceAmount(), today);
+            }
+            newHistories.addAll(plan.getNewHistories());
+            newDeltas.addAll(plan.getNewDeltas());
+            gapRows += plan.getGapRows();
+            rowsTouched += plan.getRowsTouched();
+            timelines.put(plan.getCreditCard().getId(), plan.toTimeline());
+            if (plan.getDeltaIndex() != null) {
+                deltaIndexes.put(plan.getCreditCard().getId(), plan.getDeltaIndex());
+            }
         }
+        logger.debug("{} payloads applied to {} cards, {} new history entries, {} new deltas",
+                payloads.length, plans.size(), newHistories.size(), newDeltas.size());
 
+        if (balanceEventLog != null) {
+            logBatch(payloads, cardsByNumber, bases, today);
+        }
+        balanceStore.saveAll(newHistories, timelines);
+        balanceDeltaRepository.saveAll(newDeltas);
+        writeThroughOnCommit(timelines, deltaIndexes);
+        balanceUpdateMetrics.recordBatch(payloads.length, gapRows, rowsTouched);
         return "200 OK";
     }
 
     /**
-     * Helper method to create and configure a new BalanceHistory object.
-     *
-     * @param date        The date for the balance history entry.
-     * @param balance     The balance amount for the entry.
-     * @param creditCard  The credit card associated with this balance history.
-     * @return A new instance of BalanceHistory with the provided values.
+     * @return The histories before the batch of the cards the event log has not seen yet
      */
-    private BalanceHistory createNewBalanceHistory(LocalDate date, Double balance, CreditCard creditCard) {
-        BalanceHistory newHistory = new BalanceHistory();
-        newHistory.setDate(date);
-        newHistory.setBalance(balance);
-        newHistory.setCreditCard(creditCard);
-        return newHistory;
+    private Map<Integer, BalanceTimeline> unloggedBases(Collection<CardBalancePlan> plans) {
+        Map<Integer, BalanceTimeline> bases = new HashMap<>();
+        for (CardBalancePlan plan : plans) {
+            if (!balanceEventLog.isLogged(plan.getCreditCard().getId())) {
+                bases.put(plan.getCreditCard().getId(), plan.toTimeline());
+            }
+        }
+        return bases;
     }
 
     /**
-     * Fills gaps in the balance history for a specific credit card. This method ensures that every date
-     * between the earliest and latest entries in the balance history has a record. If a date is missing,
-     * this method creates a new balance history entry using the balance from the most recent prior date.
-     *
-     * @param creditCard The credit card for which to fill balance history gaps.
-     */
-    @Transactional
-    private void fillGapsInBalanceHistory(CreditCard creditCard) {
-        // Retrieve the earliest and latest date in the balance history for the given credit card
-        LocalDate startDate = balanceHistoryRepository.findEarliestDateByCreditCard(creditCard)
-                .orElseThrow(() -> new BusinessException(ResponseEnum.PARAM_EXCEPTION));
-        List<BalanceHistory> gapHistories = new ArrayList<>();
-        LocalDate today = LocalDate.now();
-
-        // We start from the day after the earliest date and go up to today (inclusive)
-        for (LocalDate date = startDate.plusDays(1); date.isBefore(today); date = date.plusDays(1)) {
-            boolean exists = balanceHistoryRepository.existsByCreditCardAndDate(creditCard, date);
+     * Append the applied batch to the event log before anything is written, and complete it once the
+     * transaction has: a rollback leaves an abort record, a commit marks the cards first seen by it as logged.
+     */
+    private void logBatch(UpdateBalancePayload[] payloads, Map<String, CreditCard> cardsByNumber,
+                          Map<Integer, BalanceTimeline> bases, LocalDate today) {
+        int[] creditCardIds = new int[payloads.length];
+        int[] epochDays = new int[payloads.length];
+        long[] amounts = new long[payloads.length];
+        for (int index = 0; index < payloads.length; index++) {
+            creditCardIds[index] = cardsByNumber.get(payloads[index].getCreditCardNumber()).getId();
+            epochDays[index] = BalanceTimeline.toEpochDay(payloads[index].getBalanceDate());
+            amounts[index] = payloads[index].getBalanceAmount();
+        }
+        long sequence = balanceEventLog.append(BalanceTimeline.toEpochDay(today), bases, creditCardIds, epochDays, amounts);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    balanceEventLog.markLogged(bases.keySet());
+                }
+                balanceEventLog.complete(sequence, status == STATUS_COMMITTED);
+            }
+        });
+    }
 
-            if (!exists) {
-                // Find the most recent balance before the gap
-                BalanceHistory lastHistory = balanceHistoryRepository.findTopByCreditCardAndDateBeforeOrderByDateDesc(creditCard, date)
-                        .orElseThrow(() -> new BusinessException(ResponseEnum.PARAM_EXCEPTION));
+    /**
+     * Publish the new timelines and delta indexes to the caches once the transaction has committed, so the
+     * caches never show balances that were rolled back.
+     */
+    private void writeThroughOnCommit(Map<Integer, BalanceTimeline> timelines, Map<Integer, BalanceDeltaIndex> deltaIndexes) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                timelines.forEach(balanceTimelineCache::put);
+                deltaIndexes.forEach(balanceDeltaIndexCache::put);
+            }
+        });
+    }
 
-                BalanceHistory gapHistory = createNewBalanceHistory(date, lastHistory.getBalance(), creditCard);
-                gapHistories.add(gapHistory);
+    /**
+     * @throws BusinessException PARAM_EXCEPTION if a card number was never created, before any query
+     */
+    private Set<String> distinctCardNumbers(UpdateBalancePayload[] payloads) {
+        Set<String> numbers = new HashSet<>();
+        for (UpdateBalancePayload payload : payloads) {
+            if (!cardLookupCache.mightExist(payload.getCreditCardNumber())) {
+                throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
             }
+            numbers.add(payload.getCreditCardNumber());
         }
-
-        // Perform a bulk save operation
-        balanceHistoryRepository.saveAll(gapHistories);
-        balanceHistoryRepository.flush(); // Ensure all pending changes are applied to the database
+        return numbers;
     }
 
     /**
-     * Updates the balance histories for a given credit card after a specific payload date.
-     * If the balance history for the payload date does not exist, it will create a new entry.
-     * It then updates all subsequent balance histories to reflect the new payload amount.
+     * Resolve every distinct card number of a batch with a single IN query. In delta-log mode the cards are
+     * locked in the database as well, so the fold-down job cannot rewrite their base balances while the batch
+     * computes new ones.
      *
-     * @param payloadDate    The date from which the balance histories need to be updated.
-     * @param payloadAmount  The new transaction amount to be accounted for.
-     * @param creditCard     The credit card for which the balance histories are being updated.
-     */
-    private void updateBalancesAfterPayloadDate(LocalDate payloadDate,
-                                                Double payloadAmount, CreditCard creditCard) {
-        // Find the history for the payload date or create a new one if it doesn't exist.
-        BalanceHistory payloadHistory = balanceHistoryRepository.getByCreditCardAndDate(creditCard, payloadDate)
-                .orElseGet(() -> {
-                    // Use the helper method to create a new history for payload date if it doesn't exist
-                    BalanceHistory newHistory = createNewBalanceHistory(payloadDate, payloadAmount, creditCard);
-                    balanceHistoryRepository.save(newHistory);
-                    return newHistory;
-                });
-
-        // Calculate the difference and update subsequent histories
-        double difference = payloadAmount - payloadHistory.getBalance();
-        logger.debug("difference is {}", difference);
-        if (difference != 0) {
-            // Update the balance of the payload date's history.
-            payloadHistory.setBalance(payloadAmount);
-            // Persist changes and ensure they are immediately written to the database.
-            balanceHistoryRepository.save(payloadHistory);
-            // Update the balances of all history records after the payload date to account for the new payload amount.
-            balanceHistoryRepository.updateBalancesAfterDate(payloadDate, difference, creditCard);
+     * @throws BusinessException PARAM_EXCEPTION if any card number is unknown
+     */
+    private Map<String, CreditCard> resolveCards(Set<String> numbers) {
+        List<CreditCard> cards = isDeltaLog()
+                ? creditCardRepository.findByCardNumberInForUpdate(numbers)
+                : creditCardRepository.findByCardNumberIn(numbers);
+        Map<String, CreditCard> cardsByNumber = cards.stream()
+                .collect(Collectors.toMap(CreditCard::getNumber, Function.identity(), (first, second) -> first));
+        if (cardsByNumber.size() != numbers.size()) {
+            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
         }
+        return cardsByNumber;
     }
 
+    /**
+     * Load the balance histories of all given cards with a single store read, one plan per card. In delta-log
+     * mode their deltas are loaded with one more query; the cached indexes are not trusted for writes, since
+     * a plan computes base balances from them.
+     */
+    private Map<Integer, CardBalancePlan> loadPlans(Collection<CreditCard> creditCards) {
+        Map<Integer, List<BalanceHistory>> historiesByCard = balanceStore.loadForUpdate(creditCards);
+        Map<Integer, List<BalanceDelta>> deltasByCard = !isDeltaLog() ? null
+                : balanceDeltaRepository.findByCreditCardInOrderByDateAsc(creditCards).stream()
+                .collect(Collectors.groupingBy(delta -> delta.getCreditCard().getId()));
+        // With the rollover job dense histories are filled by the job, updates carry gaps like sparse ones
+        boolean carryGaps = isSparse() || balanceProperties.getRollover().isEnabled();
+        Map<Integer, CardBalancePlan> plans = new HashMap<>();
+        for (CreditCard creditCard : creditCards) {
+            List<BalanceHistory> histories = historiesByCard.getOrDefault(creditCard.getId(), List.of());
+            BalanceDeltaIndex deltaIndex = deltasByCard == null ? null
+                    : toDeltaIndex(deltasByCard.getOrDefault(creditCard.getId(), List.of()));
+            plans.put(creditCard.getId(), new CardBalancePlan(creditCard, histories, carryGaps, deltaIndex));
+        }
+        return plans;
+    }
 }
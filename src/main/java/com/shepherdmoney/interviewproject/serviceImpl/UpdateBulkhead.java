@@ -0,0 +1,51 @@
+package com.shepherdmoney.interviewproject.serviceImpl;
+
+import com.shepherdmoney.interviewproject.config.ExecutionProperties;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of update-balance batches of /credit-card:update-balance requests running at once. Every
+ * batch holds a pooled connection for its whole transaction, so without a bound concurrent slow requests can
+ * take every connection and cheap reads wait behind them. Waiting batches queue in arrival order. The
+ * ingestion workers and the import do not go through it: their concurrency is bounded already, and their
+ * batches were accepted before they run, so they must not be rejected.
+ */
+@Component
+class UpdateBulkhead {
+
+    private final Semaphore permits;
+
+    private final long waitTimeoutNanos;
+
+    UpdateBulkhead(ExecutionProperties executionProperties) {
+        permits = new Semaphore(executionProperties.getMaxConcurrentUpdates(), true);
+        waitTimeoutNanos = executionProperties.getUpdateWaitTimeout().toNanos();
+    }
+
+    /**
+     * Run an action once a permit is free
+     *
+     * @throws BusinessException UPDATES_BUSY if no permit frees up within the wait timeout
+     */
+    <T> T withPermit(Supplier<T> action) {
+        try {
+            if (!permits.tryAcquire(waitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new BusinessException(ResponseEnum.UPDATES_BUSY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ResponseEnum.UPDATES_BUSY);
+        }
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -1,16 +1,29 @@
 package com.shepherdmoney.interviewproject.serviceImpl;
 
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndexCache;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
 import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.BalanceDeltaRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
 import com.shepherdmoney.interviewproject.repository.UserRepository;
 import com.shepherdmoney.interviewproject.exception.BusinessException;
 import com.shepherdmoney.interviewproject.response.ResponseEnum;
 import com.shepherdmoney.interviewproject.service.UserService;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
 import com.shepherdmoney.interviewproject.vo.request.CreateUserPayload;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 @Service
 public class UserServiceImpl implements UserService {
@@ -18,6 +31,30 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceDeltaRepository balanceDeltaRepository;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private CardLookupCache cardLookupCache;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Autowired
+    private BalanceDeltaIndexCache balanceDeltaIndexCache;
+
+    @Autowired
+    private CardLockStripes cardLockStripes;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
 
     @Override
     public Integer createUser(CreateUserPayload payload) {
@@ -28,14 +65,81 @@ public class UserServiceImpl implements UserService {
         return user.getId();
     }
 
+    @Override
+    public List<Integer> createUsers(List<CreateUserPayload> payloads) {
+        List<User> users = new ArrayList<>(payloads.size());
+        for (CreateUserPayload payload : payloads) {
+            User user = new User();
+            BeanUtils.copyProperties(payload, user);
+            user.setCreditCards(new ArrayList<>());
+            users.add(user);
+        }
+        transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(users));
+        List<Integer> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
     @Override
     public String deleteUser(int id) {
-        boolean exists = userRepository.existsById(id);
-        if (exists) {
-            userRepository.deleteById(id);
-            return "User deleted successfully";
-        } else {
-            throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+        deleteUsers(new int[]{id});
+        return "User deleted successfully";
+    }
+
+    /**
+     * Delete the users with their cards, balance history and deltas in one transaction: the user rows are
+     * locked and their card ids selected, then one set-based DELETE runs per table, however many cards and
+     * days the users have. No entity is loaded. The card lock stripes are held throughout, so no update can
+     * write to a card being deleted. The stripes are taken for the card ids read beforehand; a card created
+     * before the user rows were locked is not covered by them, so the deletion is retried with it included.
+     */
+    @Override
+    public int deleteUsers(int[] userIds) {
+        Set<Integer> distinctUserIds = new LinkedHashSet<>();
+        for (int userId : userIds) {
+            distinctUserIds.add(userId);
+        }
+        if (distinctUserIds.isEmpty()) {
+            return 0;
         }
+        Set<Integer> lockedCardIds = new HashSet<>(creditCardRepository.findIdsByUserIdIn(distinctUserIds));
+        while (true) {
+            Set<Integer> heldCardIds = lockedCardIds;
+            List<Integer> creditCardIds = cardLockStripes.withCardLocks(heldCardIds, () -> transactionTemplate.execute(status -> {
+                // No card can be added to a locked user, so this is the final set of cards to delete
+                if (userRepository.findExistingIdsForUpdate(distinctUserIds).size() != distinctUserIds.size()) {
+                    throw new BusinessException(ResponseEnum.PARAM_EXCEPTION);
+                }
+                List<Integer> cardIds = creditCardRepository.findIdsByUserIdIn(distinctUserIds);
+                if (!heldCardIds.containsAll(cardIds)) {
+                    return cardIds;
+                }
+                balanceStore.deleteAll(cardIds);
+                if (!cardIds.isEmpty()) {
+                    balanceDeltaRepository.deleteByCreditCardIdIn(cardIds);
+                }
+                creditCardRepository.deleteByUserIdIn(distinctUserIds);
+                userRepository.deleteByIdIn(distinctUserIds);
+                evictOnCommit(distinctUserIds, cardIds);
+                return cardIds;
+            }));
+            if (heldCardIds.containsAll(creditCardIds)) {
+                return distinctUserIds.size();
+            }
+            lockedCardIds = new HashSet<>(creditCardIds);
+        }
+    }
+
+    private void evictOnCommit(Set<Integer> userIds, List<Integer> creditCardIds) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userIds.forEach(cardLookupCache::invalidateUser);
+                balanceTimelineCache.invalidateAll(creditCardIds);
+                creditCardIds.forEach(balanceDeltaIndexCache::invalidate);
+            }
+        });
     }
 }
@@ -0,0 +1,73 @@
+package com.shepherdmoney.interviewproject.store;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceExportRepository.BalanceRowHandler;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Where the balance histories of credit cards are kept, selected by balance.store.type. Reads return stored
+ * balances: in delta-log mode those are base balances the caller still has to resolve.
+ */
+public interface BalanceStore {
+
+    Optional<BalanceHistoryView> findBalanceOnDate(int creditCardId, LocalDate date);
+
+    Optional<BalanceHistoryView> findFirstBalanceOnOrAfter(int creditCardId, LocalDate date);
+
+    Optional<BalanceHistoryView> findLatestBalanceOnOrBefore(int creditCardId, LocalDate date);
+
+    /**
+     * @return The entries between two dates, both inclusive, in ascending date order
+     */
+    List<BalanceHistoryView> findBalancesBetween(int creditCardId, LocalDate from, LocalDate to);
+
+    /**
+     * Stream the entries of a card, of the cards of a user, or of every card when both ids are null, in
+     * (card id, date) order. Entries go to the handler as they are read, none are collected first.
+     */
+    void streamBalances(Integer creditCardId, Integer userId, int fetchSize, BalanceRowHandler handler);
+
+    /**
+     * Load the histories of the cards an update batch is about to change, with as few reads as possible
+     *
+     * @return The entries of every card that has any, by credit card id, in ascending date order
+     */
+    Map<Integer, List<BalanceHistory>> loadForUpdate(Collection<CreditCard> creditCards);
+
+    /**
+     * Persist the outcome of an update batch. Each store takes what it needs: the JPA store inserts the new
+     * entries and lets the persistence context flush the loaded ones it changed, the mapped store appends
+     * the timelines.
+     *
+     * @param newHistories The entries the batch created
+     * @param timelines    The complete history of every card of the batch after it, by credit card id
+     */
+    void saveAll(List<BalanceHistory> newHistories, Map<Integer, BalanceTimeline> timelines);
+
+    /**
+     * Replace the whole history of every given card, for instance with one rebuilt from the event log
+     */
+    void replaceAll(Map<CreditCard, BalanceTimeline> timelines);
+
+    /**
+     * Remove the whole history of every given card, as part of the transaction deleting the cards
+     */
+    void deleteAll(Collection<Integer> creditCardIds);
+
+    /**
+     * Give every day without an entry between the earliest entry of each card and the day before today the
+     * balance of the closest entry before it. Days that have an entry are left alone, so running it again for
+     * the same day adds nothing.
+     *
+     * @return The number of entries added
+     */
+    int carryForward(Collection<Integer> creditCardIds, LocalDate today);
+}
@@ -0,0 +1,112 @@
+package com.shepherdmoney.interviewproject.store;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceExportRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceExportRepository.BalanceRowHandler;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Balance histories as balance_history rows. Reads are projection queries on uk_balance_history_card_date and
+ * idx_credit_card_id_date_desc, updates load managed entities so changed balances are flushed on commit.
+ */
+@Component
+@ConditionalOnProperty(prefix = "balance.store", name = "type", havingValue = "jpa", matchIfMissing = true)
+public class JpaBalanceStore implements BalanceStore {
+
+    @Autowired
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Autowired
+    private BalanceExportRepository balanceExportRepository;
+
+    @Override
+    public Optional<BalanceHistoryView> findBalanceOnDate(int creditCardId, LocalDate date) {
+        return balanceHistoryRepository.findBalanceOnDate(creditCardId, date);
+    }
+
+    @Override
+    public Optional<BalanceHistoryView> findFirstBalanceOnOrAfter(int creditCardId, LocalDate date) {
+        return balanceHistoryRepository.findFirstBalanceOnOrAfter(creditCardId, date);
+    }
+
+    @Override
+    public Optional<BalanceHistoryView> findLatestBalanceOnOrBefore(int creditCardId, LocalDate date) {
+        return balanceHistoryRepository.findLatestBalanceOnOrBefore(creditCardId, date);
+    }
+
+    @Override
+    public List<BalanceHistoryView> findBalancesBetween(int creditCardId, LocalDate from, LocalDate to) {
+        return balanceHistoryRepository.findBalancesBetween(creditCardId, from, to);
+    }
+
+    @Override
+    public void streamBalances(Integer creditCardId, Integer userId, int fetchSize, BalanceRowHandler handler) {
+        balanceExportRepository.streamBalances(creditCardId, userId, fetchSize, handler);
+    }
+
+    @Override
+    public Map<Integer, List<BalanceHistory>> loadForUpdate(Collection<CreditCard> creditCards) {
+        return balanceHistoryRepository.findByCreditCardInOrderByDateAsc(creditCards)
+                .stream()
+                .collect(Collectors.groupingBy(history -> history.getCreditCard().getId()));
+    }
+
+    @Override
+    public void saveAll(List<BalanceHistory> newHistories, Map<Integer, BalanceTimeline> timelines) {
+        // Changed balances of loaded entries are flushed by the persistence context on commit
+        balanceHistoryRepository.saveAll(newHistories);
+    }
+
+    @Override
+    public void replaceAll(Map<CreditCard, BalanceTimeline> timelines) {
+        if (timelines.isEmpty()) {
+            return;
+        }
+        balanceHistoryRepository.deleteByCreditCardIn(timelines.keySet());
+        List<BalanceHistory> histories = new ArrayList<>();
+        timelines.forEach((creditCard, timeline) -> {
+            for (int index = 0; index < timeline.size(); index++) {
+                BalanceHistory history = new BalanceHistory();
+                history.setCreditCard(creditCard);
+                history.setDate(LocalDate.ofEpochDay(timeline.epochDayAt(index)));
+                history.setBalance(timeline.balanceAt(index));
+                histories.add(history);
+            }
+        });
+        balanceHistoryRepository.saveAll(histories);
+    }
+
+    @Override
+    public void deleteAll(Collection<Integer> creditCardIds) {
+        if (!creditCardIds.isEmpty()) {
+            balanceHistoryRepository.deleteByCreditCardIdIn(creditCardIds);
+        }
+    }
+
+    @Override
+    public int carryForward(Collection<Integer> creditCardIds, LocalDate today) {
+        if (creditCardIds.isEmpty()) {
+            return 0;
+        }
+        LocalDate earliest = balanceHistoryRepository.findEarliestDate(creditCardIds);
+        if (earliest == null || !earliest.isBefore(today)) {
+            return 0;
+        }
+        return balanceHistoryRepository.insertCarriedBalances(creditCardIds, today, ChronoUnit.DAYS.between(earliest, today));
+    }
+}
@@ -0,0 +1,557 @@
+package com.shepherdmoney.interviewproject.store;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceExportRepository;
+import com.shepherdmoney.interviewproject.repository.BalanceExportRepository.BalanceRowHandler;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Balance histories as memory-mapped columnar segments, users and cards stay in the database. A segment holds
+ * the whole history of one card: a header, the epoch days of its entries as an int column, then their
+ * balances in cents as a long column. Reads binary search the day column in place, so a point read touches
+ * a handful of pages and a range read walks both columns without copying them to the heap first.
+ * <p>
+ * Writes only append: every card of an update batch gets a new segment, and once the transaction of the
+ * batch commits the index points the card at it. Until then the segment is marked pending, and a rolled back
+ * one is marked aborted; replay skips both, so neither a rollback nor a crash before the commit leaves a
+ * change behind. Segments are packed into region files of balance.store.region-size. Once superseded segments take
+ * more space than live ones, the live ones are copied into fresh regions and the old files are deleted, as
+ * soon as no segment is pending.
+ * On startup the files of the directory are replayed in order, the last segment of a card wins.
+ * <p>
+ * Writers are serialized on the store. Readers take no lock: a segment is complete before the index points
+ * at it, and a reader keeps using the regions it started with while a compaction replaces them.
+ */
+@Component
+@ConditionalOnProperty(prefix = "balance.store", name = "type", havingValue = "mapped")
+public class MappedBalanceStore implements BalanceStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedBalanceStore.class);
+
+    private static final int MAGIC = 0x42414C31;
+
+    private static final int PENDING_MAGIC = 0x42414C30;
+
+    private static final int ABORTED_MAGIC = 0x42414C2D;
+
+    // Magic, credit card id, entry count, padding keeping the balance column 8-byte aligned
+    private static final int HEADER_BYTES = 16;
+
+    private static final String FILE_PREFIX = "segments-";
+
+    private static final String FILE_SUFFIX = ".bin";
+
+    @Autowired
+    private BalanceExportRepository balanceExportRepository;
+
+    private final Path directory;
+
+    private final boolean temporary;
+
+    private final int regionSize;
+
+    private volatile Regions regions;
+
+    // Guarded by this
+    private long nextFileNumber;
+
+    private long liveBytes;
+
+    private long deadBytes;
+
+    private int pendingSegments;
+
+    public MappedBalanceStore(BalanceProperties balanceProperties) throws IOException {
+        if (balanceProperties.getDeltaLog().isEnabled()) {
+            throw new IllegalStateException("balance.store.type=MAPPED does not support balance.delta-log.enabled");
+        }
+        BalanceProperties.Store store = balanceProperties.getStore();
+        this.regionSize = Math.toIntExact(store.getRegionSize().toBytes());
+        this.temporary = store.getDirectory().isBlank();
+        this.directory = temporary ? Files.createTempDirectory("balance-store")
+                : Files.createDirectories(Path.of(store.getDirectory()));
+        this.regions = replay();
+    }
+
+    @Override
+    public Optional<BalanceHistoryView> findBalanceOnDate(int creditCardId, LocalDate date) {
+        Segment segment = segment(creditCardId);
+        int index = segment == null ? -1 : segment.search(BalanceTimeline.toEpochDay(date));
+        return index >= 0 ? Optional.of(segment.viewAt(index)) : Optional.empty();
+    }
+
+    @Override
+    public Optional<BalanceHistoryView> findFirstBalanceOnOrAfter(int creditCardId, LocalDate date) {
+        Segment segment = segment(creditCardId);
+        int index = segment == null ? -1 : segment.ceilingIndex(BalanceTimeline.toEpochDay(date));
+        return index >= 0 ? Optional.of(segment.viewAt(index)) : Optional.empty();
+    }
+
+    @Override
+    public Optional<BalanceHistoryView> findLatestBalanceOnOrBefore(int creditCardId, LocalDate date) {
+        Segment segment = segment(creditCardId);
+        int index = segment == null ? -1 : segment.floorIndex(BalanceTimeline.toEpochDay(date));
+        return index >= 0 ? Optional.of(segment.viewAt(index)) : Optional.empty();
+    }
+
+    @Override
+    public List<BalanceHistoryView> findBalancesBetween(int creditCardId, LocalDate from, LocalDate to) {
+        Segment segment = segment(creditCardId);
+        int index = segment == null ? -1 : segment.ceilingIndex(BalanceTimeline.toEpochDay(from));
+        if (index < 0) {
+            return new ArrayList<>();
+        }
+        int toEpochDay = BalanceTimeline.toEpochDay(to);
+        List<BalanceHistoryView> entries = new ArrayList<>();
+        for (; index < segment.count() && segment.epochDayAt(index) <= toEpochDay; index++) {
+            entries.add(segment.viewAt(index));
+        }
+        return entries;
+    }
+
+    /**
+     * Cards come from a cursor over the credit_card table, the entries of each are read from its segment in place
+     */
+    @Override
+    public void streamBalances(Integer creditCardId, Integer userId, int fetchSize, BalanceRowHandler handler) {
+        balanceExportRepository.streamCards(creditCardId, userId, fetchSize, (id, cardNumber) -> {
+            Segment segment = segment(id);
+            for (int index = 0; segment != null && index < segment.count(); index++) {
+                handler.accept(id, cardNumber, LocalDate.ofEpochDay(segment.epochDayAt(index)), segment.balanceAt(index));
+            }
+        });
+    }
+
+    /**
+     * The returned entries are detached: they are written back as timelines by saveAll, never by JPA
+     */
+    @Override
+    public Map<Integer, List<BalanceHistory>> loadForUpdate(Collection<CreditCard> creditCards) {
+        Map<Integer, List<BalanceHistory>> historiesByCard = new HashMap<>();
+        for (CreditCard creditCard : creditCards) {
+            Segment segment = segment(creditCard.getId());
+            if (segment == null || segment.count() == 0) {
+                continue;
+            }
+            List<BalanceHistory> histories = new ArrayList<>(segment.count());
+            for (int index = 0; index < segment.count(); index++) {
+                BalanceHistory history = new BalanceHistory();
+                history.setDate(LocalDate.ofEpochDay(segment.epochDayAt(index)));
+                history.setBalance(segment.balanceAt(index));
+                history.setCreditCard(creditCard);
+                histories.add(history);
+            }
+            historiesByCard.put(creditCard.getId(), histories);
+        }
+        return historiesByCard;
+    }
+
+    /**
+     * Appends the segments right away, but only points the index at them once the transaction has committed
+     */
+    @Override
+    public void saveAll(List<BalanceHistory> newHistories, Map<Integer, BalanceTimeline> timelines) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(timelines);
+            return;
+        }
+        List<PendingSegment> pending = append(timelines);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                complete(pending, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    @Override
+    public void replaceAll(Map<CreditCard, BalanceTimeline> timelines) {
+        Map<Integer, BalanceTimeline> byId = new HashMap<>();
+        timelines.forEach((creditCard, timeline) -> byId.put(creditCard.getId(), timeline));
+        saveAll(List.of(), byId);
+    }
+
+    /**
+     * Appends an empty segment for every card once the transaction has committed, so a rolled back deletion
+     * keeps the histories and a replay does not bring deleted ones back
+     */
+    @Override
+    public void deleteAll(Collection<Integer> creditCardIds) {
+        Map<Integer, BalanceTimeline> empty = new HashMap<>();
+        for (int creditCardId : creditCardIds) {
+            empty.put(creditCardId, new BalanceTimeline(new int[0], new long[0]));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(empty);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                write(empty);
+            }
+        });
+    }
+
+    /**
+     * Appends a new segment for every card that had a day to fill
+     */
+    @Override
+    public synchronized int carryForward(Collection<Integer> creditCardIds, LocalDate today) {
+        int todayEpochDay = BalanceTimeline.toEpochDay(today);
+        Map<Integer, BalanceTimeline> filled = new HashMap<>();
+        int added = 0;
+        for (int creditCardId : creditCardIds) {
+            Segment segment = segment(creditCardId);
+            if (segment == null || segment.count() == 0 || segment.epochDayAt(0) >= todayEpochDay) {
+                continue;
+            }
+            int lastDay = Math.max(segment.epochDayAt(segment.count() - 1), todayEpochDay - 1);
+            int[] epochDays = new int[lastDay - segment.epochDayAt(0) + 1];
+            long[] balances = new long[epochDays.length];
+            int size = 0;
+            for (int index = 0; index < segment.count(); index++) {
+                int epochDay = segment.epochDayAt(index);
+                if (size > 0) {
+                    // Days in front of this entry still before today carry the previous balance
+                    int fillUntil = Math.min(epochDay, todayEpochDay);
+                    for (int day = epochDays[size - 1] + 1; day < fillUntil; day++) {
+                        epochDays[size] = day;
+                        balances[size] = balances[size - 1];
+                        size++;
+                    }
+                }
+                epochDays[size] = epochDay;
+                balances[size] = segment.balanceAt(index);
+                size++;
+            }
+            for (int day = epochDays[size - 1] + 1; day < todayEpochDay; day++) {
+                epochDays[size] = day;
+                balances[size] = balances[size - 1];
+                size++;
+            }
+            if (size > segment.count()) {
+                added += size - segment.count();
+                filled.put(creditCardId, new BalanceTimeline(Arrays.copyOf(epochDays, size), Arrays.copyOf(balances, size)));
+            }
+        }
+        saveAll(List.of(), filled);
+        return added;
+    }
+
+    /**
+     * Flush the regions to disk, then remove them if the directory is a temporary one
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (ByteBuffer region : regions.buffers) {
+            ((MappedByteBuffer) region).force();
+        }
+        if (temporary) {
+            deleteFiles(regionFiles());
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private Segment segment(int creditCardId) {
+        Regions current = regions;
+        Long location = current.index.get(creditCardId);
+        if (location == null) {
+            return null;
+        }
+        // Read after the index: a segment in a new region is only indexed once the region is published
+        ByteBuffer region = current.buffers[(int) (location >>> 32)];
+        int offset = (int) location.longValue();
+        return new Segment(region, offset, region.getInt(offset + 8));
+    }
+
+    /**
+     * Append and publish at once, outside of any transaction
+     */
+    private synchronized void write(Map<Integer, BalanceTimeline> timelines) {
+        complete(append(timelines), true);
+    }
+
+    private synchronized List<PendingSegment> append(Map<Integer, BalanceTimeline> timelines) {
+        List<PendingSegment> pending = new ArrayList<>(timelines.size());
+        try {
+            for (Map.Entry<Integer, BalanceTimeline> entry : timelines.entrySet()) {
+                pending.add(append(regions, entry.getKey(), entry.getValue()));
+            }
+        } catch (IOException e) {
+            complete(pending, false);
+            throw new UncheckedIOException(e);
+        }
+        pendingSegments += pending.size();
+        return pending;
+    }
+
+    /**
+     * Mark the segments live and index them, or mark them aborted, then compact if nothing is pending anymore.
+     * A compaction never runs while segments are pending, so their locations stay valid.
+     */
+    private synchronized void complete(List<PendingSegment> pending, boolean committed) {
+        for (PendingSegment segment : pending) {
+            ByteBuffer region = regions.buffers[segment.regionIndex()];
+            region.putInt(segment.offset(), committed ? MAGIC : ABORTED_MAGIC);
+            if (committed) {
+                index(regions, segment.creditCardId(), segment.regionIndex(), segment.offset(), segment.bytes());
+            } else {
+                deadBytes += segment.bytes();
+            }
+        }
+        pendingSegments -= pending.size();
+        if (pendingSegments == 0 && deadBytes > liveBytes && deadBytes >= regionSize) {
+            try {
+                compact();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private PendingSegment append(Regions target, int creditCardId, BalanceTimeline timeline) throws IOException {
+        int count = timeline.size();
+        int bytes = segmentBytes(count);
+        ByteBuffer region = regionWithRoom(target, bytes);
+        int offset = target.writeOffset;
+        region.putInt(offset + 4, creditCardId);
+        region.putInt(offset + 8, count);
+        region.putInt(offset + 12, 0);
+        int days = offset + HEADER_BYTES;
+        int balances = balanceColumn(offset, count);
+        for (int index = 0; index < count; index++) {
+            region.putInt(days + 4 * index, timeline.epochDayAt(index));
+            region.putLong(balances + 8 * index, timeline.balanceAt(index));
+        }
+        // Written last, so replay stops at a segment cut short by a crash
+        region.putInt(offset, PENDING_MAGIC);
+        target.writeOffset += bytes;
+        return new PendingSegment(creditCardId, target.buffers.length - 1, offset, bytes);
+    }
+
+    private void index(Regions target, int creditCardId, int regionIndex, int offset, int bytes) {
+        Long previous = target.index.put(creditCardId, ((long) regionIndex << 32) | offset);
+        if (previous != null) {
+            int previousBytes = segmentBytes(target.buffers[(int) (previous >>> 32)].getInt((int) previous.longValue() + 8));
+            liveBytes -= previousBytes;
+            deadBytes += previousBytes;
+        }
+        liveBytes += bytes;
+    }
+
+    private ByteBuffer regionWithRoom(Regions target, int bytes) throws IOException {
+        ByteBuffer[] buffers = target.buffers;
+        if (buffers.length > 0 && target.writeOffset + bytes <= buffers[buffers.length - 1].capacity()) {
+            return buffers[buffers.length - 1];
+        }
+        Path file = directory.resolve(String.format("%s%012d%s", FILE_PREFIX, nextFileNumber++, FILE_SUFFIX));
+        ByteBuffer region = map(file, Math.max(regionSize, bytes), StandardOpenOption.CREATE_NEW);
+        ByteBuffer[] grown = Arrays.copyOf(buffers, buffers.length + 1);
+        grown[buffers.length] = region;
+        target.buffers = grown;
+        target.files.add(file);
+        target.writeOffset = 0;
+        return region;
+    }
+
+    /**
+     * Copy the live segments into new regions, publish them, then delete the files of the old ones
+     */
+    private void compact() throws IOException {
+        Regions old = regions;
+        Regions compacted = new Regions();
+        long reclaimed = deadBytes;
+        liveBytes = 0;
+        deadBytes = 0;
+        for (Map.Entry<Integer, Long> entry : old.index.entrySet()) {
+            long location = entry.getValue();
+            ByteBuffer source = old.buffers[(int) (location >>> 32)];
+            int sourceOffset = (int) location;
+            int bytes = segmentBytes(source.getInt(sourceOffset + 8));
+            ByteBuffer region = regionWithRoom(compacted, bytes);
+            region.put(compacted.writeOffset, source, sourceOffset, bytes);
+            index(compacted, entry.getKey(), compacted.buffers.length - 1, compacted.writeOffset, bytes);
+            compacted.writeOffset += bytes;
+        }
+        regions = compacted;
+        deleteFiles(old.files);
+        logger.info("Compacted balance segments of {} cards, {} bytes reclaimed", compacted.index.size(), reclaimed);
+    }
+
+    private Regions replay() throws IOException {
+        Regions replayed = new Regions();
+        for (Path file : regionFiles()) {
+            ByteBuffer region = map(file, Files.size(file), StandardOpenOption.READ);
+            replayed.buffers = Arrays.copyOf(replayed.buffers, replayed.buffers.length + 1);
+            replayed.buffers[replayed.buffers.length - 1] = region;
+            replayed.files.add(file);
+            int offset = 0;
+            while (offset + HEADER_BYTES <= region.capacity() && isSegment(region.getInt(offset))) {
+                int bytes = segmentBytes(region.getInt(offset + 8));
+                if (offset + bytes > region.capacity()) {
+                    break;
+                }
+                if (region.getInt(offset) == MAGIC) {
+                    index(replayed, region.getInt(offset + 4), replayed.buffers.length - 1, offset, bytes);
+                } else {
+                    // Rolled back, or still pending when the process stopped
+                    deadBytes += bytes;
+                }
+                offset += bytes;
+            }
+            nextFileNumber = Long.parseLong(file.getFileName().toString()
+                    .substring(FILE_PREFIX.length(), file.getFileName().toString().length() - FILE_SUFFIX.length())) + 1;
+        }
+        // New segments go to a new region rather than after whatever the last file ends with
+        replayed.writeOffset = replayed.buffers.length == 0 ? 0 : replayed.buffers[replayed.buffers.length - 1].capacity();
+        if (!replayed.index.isEmpty()) {
+            logger.info("Replayed balance segments of {} cards from {}", replayed.index.size(), directory);
+        }
+        return replayed;
+    }
+
+    private List<Path> regionFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(FILE_PREFIX)
+                            && file.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static ByteBuffer map(Path file, long size, StandardOpenOption create) throws IOException {
+        // The mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file, create, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private static void deleteFiles(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete balance segment file {}", file, e);
+            }
+        }
+    }
+
+    private static boolean isSegment(int magic) {
+        return magic == MAGIC || magic == PENDING_MAGIC || magic == ABORTED_MAGIC;
+    }
+
+    private static int segmentBytes(int count) {
+        return balanceColumn(0, count) + 8 * count;
+    }
+
+    private static int balanceColumn(int offset, int count) {
+        return offset + HEADER_BYTES + ((4 * count + 7) & ~7);
+    }
+
+    /**
+     * The region buffers, their files and the index of the segment of every card. Replaced as a whole by a
+     * compaction; until then new regions are published before any segment in them is indexed.
+     */
+    private static final class Regions {
+
+        // Credit card id to region index (high 32 bits) and offset in the region (low 32 bits)
+        final Map<Integer, Long> index = new ConcurrentHashMap<>();
+
+        volatile ByteBuffer[] buffers = new ByteBuffer[0];
+
+        // Only used by writers
+        final List<Path> files = new ArrayList<>();
+
+        int writeOffset;
+    }
+
+    /**
+     * A segment appended by a transaction that has not completed yet
+     */
+    private record PendingSegment(int creditCardId, int regionIndex, int offset, int bytes) {
+    }
+
+    /**
+     * A view of one segment, read in place
+     */
+    private record Segment(ByteBuffer region, int offset, int count) {
+
+        int epochDayAt(int index) {
+            return region.getInt(offset + HEADER_BYTES + 4 * index);
+        }
+
+        long balanceAt(int index) {
+            return region.getLong(balanceColumn(offset, count) + 8 * index);
+        }
+
+        BalanceHistoryView viewAt(int index) {
+            return new BalanceHistoryView(LocalDate.ofEpochDay(epochDayAt(index)), balanceAt(index));
+        }
+
+        int floorIndex(int epochDay) {
+            int index = search(epochDay);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        int ceilingIndex(int epochDay) {
+            int index = search(epochDay);
+            if (index >= 0) {
+                return index;
+            }
+            int insertionPoint = -index - 1;
+            return insertionPoint < count ? insertionPoint : -1;
+        }
+
+        /**
+         * @return The index of the entry of the day, or -(insertion point + 1) like Arrays.binarySearch
+         */
+        int search(int epochDay) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midDay = epochDayAt(mid);
+                if (midDay < epochDay) {
+                    low = mid + 1;
+                } else if (midDay > epochDay) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -2,6 +2,10 @@ package com.shepherdmoney.interviewproject.vo.request;
 
 import java.time.LocalDate;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.shepherdmoney.interviewproject.money.CentsDeserializer;
+import com.shepherdmoney.interviewproject.money.CentsSerializer;
 import lombok.Data;
 
 @Data
@@ -11,5 +15,8 @@ public class UpdateBalancePayload {
     
     private LocalDate balanceDate;
 
-    private double balanceAmount;
+    // In cents, a decimal amount in JSON
+    @JsonSerialize(using = CentsSerializer.class)
+    @JsonDeserialize(using = CentsDeserializer.class)
+    private long balanceAmount;
 }
@@ -0,0 +1,24 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.shepherdmoney.interviewproject.money.CentsDeserializer;
+import com.shepherdmoney.interviewproject.money.CentsSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class BalanceHistoryView {
+
+    private LocalDate date;
+
+    // In cents, a decimal amount in JSON
+    @JsonSerialize(using = CentsSerializer.class)
+    @JsonDeserialize(using = CentsDeserializer.class)
+    private long balance;
+}
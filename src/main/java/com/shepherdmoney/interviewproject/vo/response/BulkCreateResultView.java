@@ -0,0 +1,26 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The outcome of one item of a bulk creation: the id generated for it, or the error that kept it out
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkCreateResultView {
+
+    // Position of the item in the input array, or of its line in an NDJSON stream, starting at 0
+    private long index;
+
+    private Integer id;
+
+    // HTTP status the item would have been rejected with on its own, absent when it was created
+    private Integer status;
+
+    private String error;
+}
@@ -0,0 +1,25 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class CardLookupStatsView {
+
+    // Lookups answered from the cache
+    private long hits;
+
+    // Lookups that went to the database
+    private long misses;
+
+    // Unknown card numbers rejected by the Bloom filter without a lookup
+    private long bloomRejections;
+
+    // Card numbers the Bloom filter let through that do not exist
+    private long falsePositives;
+
+    private int cachedEntries;
+}
@@ -1,5 +1,6 @@
 package com.shepherdmoney.interviewproject.vo.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,9 +8,13 @@ import lombok.Data;
 @Data
 @Builder
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class CreditCardView {
 
     private String issuanceBank;
 
     private String number;
+
+    // Keyset cursor: pass the id of the last card of a page as afterId to get the next page
+    private Integer id;
 }
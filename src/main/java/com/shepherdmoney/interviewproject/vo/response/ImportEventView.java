@@ -0,0 +1,40 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * One line of the NDJSON report streamed back while a balance import runs
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportEventView {
+
+    public enum Type {
+        // A line that was not applied
+        ERROR,
+        // A chunk has been committed
+        PROGRESS,
+        // The whole input has been read, always the last event
+        SUMMARY
+    }
+
+    private Type type;
+
+    // Line of the input an ERROR is about, starting at 1
+    private Long line;
+
+    private String message;
+
+    private long linesRead;
+
+    private long imported;
+
+    private long failed;
+
+    private long chunks;
+}
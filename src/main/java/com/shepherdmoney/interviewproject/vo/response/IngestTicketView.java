@@ -0,0 +1,34 @@
+package com.shepherdmoney.interviewproject.vo.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class IngestTicketView {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private String ticketId;
+
+    private Status status;
+
+    private int payloads;
+
+    // Number of partitions the batch was split into, each applied in its own transaction
+    private int parts;
+
+    private int completedParts;
+
+    private int failedParts;
+
+    // Message of the first failed part, null if none failed
+    private String error;
+}
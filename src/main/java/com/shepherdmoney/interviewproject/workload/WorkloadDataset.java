@@ -0,0 +1,33 @@
+package com.shepherdmoney.interviewproject.workload;
+
+/**
+ * A dataset loaded by WorkloadGenerator. Users and cards have consecutive ids, card i (from 1) belongs to
+ * user (i - 1) / cardsPerUser, and every card number can be recomputed from the seed.
+ */
+public record WorkloadDataset(long seed, int firstUserId, int users, int cardsPerUser, int firstCardId, int historyDays) {
+
+    // Odd and not a multiple of 5, so multiplying by it permutes the residues modulo 10^15
+    static final long CARD_NUMBER_MULTIPLIER = 2_654_435_761L;
+
+    static final long CARD_NUMBER_MODULUS = 1_000_000_000_000_000L;
+
+    public int cards() {
+        return users * cardsPerUser;
+    }
+
+    /**
+     * @param card From 1 to cards()
+     * @return 16 digits starting with 4, unique within the dataset
+     */
+    public String cardNumber(long card) {
+        long digits = Math.floorMod(card * CARD_NUMBER_MULTIPLIER + seed, CARD_NUMBER_MODULUS);
+        return "4" + String.format("%015d", digits);
+    }
+
+    /**
+     * @param card From 1 to cards()
+     */
+    public int userIdOf(long card) {
+        return firstUserId + (int) ((card - 1) / cardsPerUser);
+    }
+}
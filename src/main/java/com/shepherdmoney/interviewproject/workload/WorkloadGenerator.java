@@ -0,0 +1,129 @@
+package com.shepherdmoney.interviewproject.workload;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.config.WorkloadProperties;
+import com.shepherdmoney.interviewproject.job.CardNumberFilterLoader;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bulk-loads a seeded dataset with set-based INSERT ... SELECT statements over H2's SYSTEM_RANGE, bypassing
+ * JPA: users, several cards per user, and a dense daily balance history per card ending yesterday. With the
+ * MAPPED store the histories are built in memory and written through the store instead, chunk by chunk. Each id
+ * range is reserved first by moving its sequence past it, so entities persisted through JPA afterwards never
+ * collide with generated rows. Meant for an empty database on startup: entities persisted while a load runs
+ * may still take ids from blocks fetched before it.
+ */
+@Component
+public class WorkloadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadGenerator.class);
+
+    private static final int ROWS_PER_STATEMENT = 500_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CardNumberFilterLoader cardNumberFilterLoader;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    public WorkloadDataset generate(WorkloadProperties.Generate settings) {
+        long start = System.currentTimeMillis();
+        long seed = settings.getSeed();
+        int users = settings.getUsers();
+        int cardsPerUser = settings.getCardsPerUser();
+        int days = settings.getHistoryDays();
+        long cards = (long) users * cardsPerUser;
+
+        int firstUserId = (int) reserveIds("my_user_seq", users);
+        for (long from = 1; from <= users; from += ROWS_PER_STATEMENT) {
+            jdbcTemplate.update("INSERT INTO my_user (id, name, email) " +
+                            "SELECT ? + X - 1, CONCAT('user-', X), CONCAT('user-', X, '@example.com') FROM SYSTEM_RANGE(?, ?)",
+                    firstUserId, from, Math.min(from + ROWS_PER_STATEMENT - 1, users));
+        }
+
+        int firstCardId = (int) reserveIds("credit_card_seq", cards);
+        WorkloadDataset dataset = new WorkloadDataset(seed, firstUserId, users, cardsPerUser, firstCardId, days);
+        for (long from = 1; from <= cards; from += ROWS_PER_STATEMENT) {
+            jdbcTemplate.update("INSERT INTO credit_card (id, issuance_bank, number, user_id) " +
+                            "SELECT ? + X - 1, CONCAT('Bank ', MOD(X, 7)), " +
+                            "CONCAT('4', LPAD(CAST(MOD(X * ? + ?, ?) AS VARCHAR), 15, '0')), ? + (X - 1) / ? " +
+                            "FROM SYSTEM_RANGE(?, ?)",
+                    firstCardId, WorkloadDataset.CARD_NUMBER_MULTIPLIER, seed, WorkloadDataset.CARD_NUMBER_MODULUS,
+                    firstUserId, cardsPerUser, from, Math.min(from + ROWS_PER_STATEMENT - 1, cards));
+        }
+
+        long cardsPerStatement = Math.max(1, ROWS_PER_STATEMENT / days);
+        if (balanceProperties.getStore().getType() == BalanceProperties.StoreType.MAPPED) {
+            storeHistories(seed, firstCardId, cards, days, cardsPerStatement);
+        } else {
+            insertHistories(seed, firstCardId, cards, days, cardsPerStatement);
+        }
+
+        cardNumberFilterLoader.reload();
+        logger.info("Workload dataset loaded in {} ms: {} users, {} cards, {} balance history rows",
+                System.currentTimeMillis() - start, users, cards, cards * days);
+        return dataset;
+    }
+
+    private void insertHistories(long seed, int firstCardId, long cards, int days, long cardsPerStatement) {
+        long firstHistoryId = reserveIds("balance_history_seq", cards * days);
+        for (long from = 1; from <= cards; from += cardsPerStatement) {
+            // Day D of card C is D days ago, with a balance between 0 and 9999.99 (in cents) derived from C, D and the seed
+            jdbcTemplate.update("INSERT INTO balance_history (id, balance, date, credit_card_id) " +
+                            "SELECT ? + (C.X - 1) * ? + D.X - 1, MOD(C.X * 7919 + D.X * 104729 + ?, 1000000), " +
+                            "DATEADD('DAY', -D.X, CURRENT_DATE), ? + C.X - 1 " +
+                            "FROM SYSTEM_RANGE(?, ?) C, SYSTEM_RANGE(1, ?) D",
+                    firstHistoryId, days, seed, firstCardId, from, Math.min(from + cardsPerStatement - 1, cards), days);
+        }
+    }
+
+    /**
+     * The same balances as insertHistories, as timelines replacing the histories of the cards in the store
+     */
+    private void storeHistories(long seed, int firstCardId, long cards, int days, long cardsPerChunk) {
+        int todayEpochDay = BalanceTimeline.toEpochDay(LocalDate.now());
+        for (long from = 1; from <= cards; from += cardsPerChunk) {
+            Map<CreditCard, BalanceTimeline> timelines = new HashMap<>();
+            for (long card = from; card <= Math.min(from + cardsPerChunk - 1, cards); card++) {
+                int[] epochDays = new int[days];
+                long[] balances = new long[days];
+                for (int day = days; day >= 1; day--) {
+                    epochDays[days - day] = todayEpochDay - day;
+                    balances[days - day] = (card * 7919 + day * 104729L + seed) % 1_000_000;
+                }
+                CreditCard creditCard = new CreditCard();
+                creditCard.setId((int) (firstCardId + card - 1));
+                timelines.put(creditCard, new BalanceTimeline(epochDays, balances));
+            }
+            balanceStore.replaceAll(timelines);
+        }
+    }
+
+    /**
+     * Take the next value of a sequence as the first id of a range and restart the sequence after the range
+     *
+     * @return The first id of the range
+     */
+    private long reserveIds(String sequence, long count) {
+        Long first = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (first + count + 1));
+        return first;
+    }
+}
@@ -0,0 +1,225 @@
+package com.shepherdmoney.interviewproject.workload;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.config.WorkloadProperties;
+import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a weighted operation mix against the REST endpoints at a fixed rate. The schedule is open-loop:
+ * operation i is due at start + i / rate whatever happened to the earlier ones, and its latency is measured
+ * from that due time rather than from when a client thread got to it, so a stalled server shows up in the
+ * percentiles instead of silently lowering the offered load.
+ */
+public class WorkloadReplayDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadReplayDriver.class);
+
+    private static final long LATE_START_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    enum Operation {
+        LOOKUP("GET /credit-card:user-id"),
+        USER_CARDS("GET /credit-card:all"),
+        NEW_CARD("POST /credit-card"),
+        SAME_DAY_UPDATE("POST /credit-card:update-balance (same day)"),
+        BACKDATED_UPDATE("POST /credit-card:update-balance (backdated)");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final String baseUrl;
+
+    private final WorkloadDataset dataset;
+
+    private final WorkloadProperties.Replay settings;
+
+    private final ObjectMapper objectMapper;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    private final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+
+    private final AtomicLong lateStarts = new AtomicLong();
+
+    /**
+     * @param baseUrl For instance http://localhost:8080
+     */
+    public WorkloadReplayDriver(String baseUrl, WorkloadDataset dataset, WorkloadProperties.Replay settings, ObjectMapper objectMapper) {
+        this.baseUrl = baseUrl;
+        this.dataset = dataset;
+        this.settings = settings;
+        this.objectMapper = objectMapper;
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+            errors.put(operation, new AtomicLong());
+        }
+    }
+
+    public WorkloadReport run() throws InterruptedException {
+        if (dataset.cards() == 0) {
+            throw new IllegalArgumentException("the workload dataset has no cards");
+        }
+        Operation[] weighted = weightedOperations(settings.getMix());
+        long operations = settings.getDuration().toMillis() * settings.getRate() / 1000;
+        double intervalNanos = 1e9 / settings.getRate();
+        SplittableRandom random = new SplittableRandom(dataset.seed());
+        ExecutorService clients = Executors.newFixedThreadPool(settings.getThreads());
+
+        long start = System.nanoTime();
+        try {
+            for (long i = 0; i < operations; i++) {
+                long due = start + (long) (i * intervalNanos);
+                Operation operation = weighted[random.nextInt(weighted.length)];
+                HttpRequest request = request(operation, random);
+                LockSupport.parkNanos(due - System.nanoTime());
+                clients.execute(() -> send(operation, request, due));
+            }
+        } finally {
+            clients.shutdown();
+        }
+        if (!clients.awaitTermination(settings.getDuration().toMillis() + 60_000, TimeUnit.MILLISECONDS)) {
+            clients.shutdownNow();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        List<WorkloadReport.EndpointStats> endpoints = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = histograms.get(operation);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            endpoints.add(new WorkloadReport.EndpointStats(operation.getLabel(), histogram.getCount(),
+                    errors.get(operation).get(), histogram.getCount() * 1e9 / elapsed.toNanos(),
+                    histogram.valueAt(0.50) / 1e3, histogram.valueAt(0.95) / 1e3, histogram.valueAt(0.99) / 1e3,
+                    histogram.getMax() / 1e3));
+        }
+        WorkloadReport report = new WorkloadReport(elapsed, lateStarts.get(), endpoints);
+        log(report);
+        return report;
+    }
+
+    private void send(Operation operation, HttpRequest request, long due) {
+        if (System.nanoTime() - due > LATE_START_NANOS) {
+            lateStarts.incrementAndGet();
+        }
+        boolean failed;
+        try {
+            int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            failed = status < 200 || status >= 300;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            failed = true;
+        }
+        histograms.get(operation).record((System.nanoTime() - due) / 1000);
+        if (failed) {
+            errors.get(operation).incrementAndGet();
+        }
+    }
+
+    private HttpRequest request(Operation operation, SplittableRandom random) {
+        long card = 1 + random.nextLong(dataset.cards());
+        LocalDate today = LocalDate.now();
+        HttpRequest.Builder builder = switch (operation) {
+            case LOOKUP -> get("/credit-card:user-id?creditCardNumber=" + encode(dataset.cardNumber(card)));
+            case USER_CARDS -> get("/credit-card:all?userId=" + dataset.userIdOf(card));
+            case NEW_CARD -> {
+                AddCreditCardToUserPayload payload = new AddCreditCardToUserPayload();
+                payload.setUserId(dataset.userIdOf(card));
+                payload.setCardIssuanceBank("Workload Bank");
+                payload.setCardNumber("5" + UUID.randomUUID());
+                yield post("/credit-card", payload);
+            }
+            case SAME_DAY_UPDATE -> post("/credit-card:update-balance",
+                    new UpdateBalancePayload[]{balance(card, today, random)});
+            case BACKDATED_UPDATE -> post("/credit-card:update-balance",
+                    new UpdateBalancePayload[]{balance(card, today.minusDays(1 + random.nextInt(Math.max(1, dataset.historyDays()))), random)});
+        };
+        return builder.timeout(Duration.ofSeconds(30)).build();
+    }
+
+    private UpdateBalancePayload balance(long card, LocalDate date, SplittableRandom random) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(dataset.cardNumber(card));
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(random.nextInt(1_000_000));
+        return payload;
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+    }
+
+    private HttpRequest.Builder post(String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static Operation[] weightedOperations(WorkloadProperties.Mix mix) {
+        int[] weights = {mix.getLookup(), mix.getUserCards(), mix.getNewCard(), mix.getSameDayUpdate(), mix.getBackdatedUpdate()};
+        List<Operation> weighted = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            for (int i = 0; i < weights[operation.ordinal()]; i++) {
+                weighted.add(operation);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("the workload mix has no operation with a positive weight");
+        }
+        return weighted.toArray(new Operation[0]);
+    }
+
+    private static void log(WorkloadReport report) {
+        logger.info("Workload replay finished in {} ms, {} operations started more than 10 ms late",
+                report.elapsed().toMillis(), report.lateStarts());
+        for (WorkloadReport.EndpointStats stats : report.endpoints()) {
+            logger.info("{}: {} requests, {} errors, {}/s, p50 {} ms, p95 {} ms, p99 {} ms, max {} ms",
+                    stats.operation(), stats.requests(), stats.errors(), String.format("%.1f", stats.throughputPerSecond()),
+                    String.format("%.2f", stats.p50Millis()), String.format("%.2f", stats.p95Millis()),
+                    String.format("%.2f", stats.p99Millis()), String.format("%.2f", stats.maxMillis()));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.shepherdmoney.interviewproject.workload;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of a replay, one entry per operation of the mix that was sent at least once
+ */
+public record WorkloadReport(Duration elapsed, long lateStarts, List<EndpointStats> endpoints) {
+
+    /**
+     * @param errors Requests answered with a status other than 2xx or failed without an answer
+     */
+    public record EndpointStats(String operation, long requests, long errors, double throughputPerSecond,
+                                double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+    }
+
+    public EndpointStats of(String operation) {
+        return endpoints.stream().filter(stats -> stats.operation().equals(operation)).findFirst().orElse(null);
+    }
+}
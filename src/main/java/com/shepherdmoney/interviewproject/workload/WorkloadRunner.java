@@ -0,0 +1,53 @@
+package com.shepherdmoney.interviewproject.workload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.config.WorkloadProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the workload dataset on startup when workload.generate.users is set, then replays the operation mix
+ * against the embedded server when workload.replay.enabled is set
+ */
+@Component
+public class WorkloadRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadRunner.class);
+
+    @Autowired
+    private WorkloadProperties workloadProperties;
+
+    @Autowired
+    private WorkloadGenerator workloadGenerator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (workloadProperties.getGenerate().getUsers() <= 0) {
+            if (workloadProperties.getReplay().isEnabled()) {
+                logger.warn("Workload replay skipped: it needs a generated dataset, set workload.generate.users");
+            }
+            return;
+        }
+        WorkloadDataset dataset = workloadGenerator.generate(workloadProperties.getGenerate());
+        if (!workloadProperties.getReplay().isEnabled()) {
+            return;
+        }
+        String port = environment.getProperty("local.server.port");
+        if (port == null) {
+            logger.warn("Workload replay skipped: no embedded server is running");
+            return;
+        }
+        new WorkloadReplayDriver("http://localhost:" + port, dataset, workloadProperties.getReplay(), objectMapper).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.job.BalanceCentsMigration;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BalanceCentsMigrationTests {
+
+    private JdbcDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:cents-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    public void dollarColumnsAreConvertedToCents() {
+        // Arrange: the schema Hibernate created while amounts were doubles
+        createDollarTables();
+        jdbcTemplate.update("INSERT INTO balance_history VALUES (1, DATE '2023-04-10', 1234.56), (2, DATE '2023-04-11', 0.1),"
+                + " (3, DATE '2023-04-12', -2.5)");
+        jdbcTemplate.update("INSERT INTO balance_delta VALUES (1, DATE '2023-04-11', 19.99)");
+
+        // Act
+        int version = new BalanceCentsMigration(dataSource).migrate();
+        int again = new BalanceCentsMigration(dataSource).migrate();
+
+        // Assert: converted once, the second run is a no-op
+        assertEquals(BalanceCentsMigration.CENTS_COLUMNS, version);
+        assertEquals(BalanceCentsMigration.CENTS_COLUMNS, again);
+        assertEquals("BIGINT", columnType("BALANCE_HISTORY", "BALANCE"));
+        assertEquals("BIGINT", columnType("BALANCE_DELTA", "DELTA"));
+        assertEquals(List.of(123_456L, 10L, -250L),
+                jdbcTemplate.queryForList("SELECT balance FROM balance_history ORDER BY id", Long.class));
+        assertEquals(1_999L, jdbcTemplate.queryForObject("SELECT delta FROM balance_delta", Long.class));
+    }
+
+    @Test
+    public void interruptedMigrationDoesNotMultiplyTwice() {
+        // Arrange: the amounts were multiplied, but the column types were not changed yet
+        createDollarTables();
+        jdbcTemplate.update("INSERT INTO balance_history VALUES (1, DATE '2023-04-10', 123456)");
+        jdbcTemplate.execute("CREATE TABLE balance_schema_version (version INT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO balance_schema_version VALUES (?)", BalanceCentsMigration.AMOUNTS_IN_CENTS);
+
+        // Act
+        new BalanceCentsMigration(dataSource).migrate();
+
+        // Assert
+        assertEquals("BIGINT", columnType("BALANCE_HISTORY", "BALANCE"));
+        assertEquals(123_456L, jdbcTemplate.queryForObject("SELECT balance FROM balance_history", Long.class));
+    }
+
+    @Test
+    public void newDatabaseIsOnlyStamped() {
+        // Act
+        int version = new BalanceCentsMigration(dataSource).migrate();
+
+        // Assert
+        assertEquals(BalanceCentsMigration.CENTS_COLUMNS, version);
+        assertNull(columnType("BALANCE_HISTORY", "BALANCE"));
+    }
+
+    private void createDollarTables() {
+        jdbcTemplate.execute("CREATE TABLE balance_history (id BIGINT PRIMARY KEY, date DATE, balance FLOAT(53) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE balance_delta (id BIGINT PRIMARY KEY, date DATE, delta FLOAT(53) NOT NULL)");
+    }
+
+    private String columnType(String table, String column) {
+        List<String> types = jdbcTemplate.queryForList("SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE TABLE_NAME = ? AND COLUMN_NAME = ?", String.class, table, column);
+        return types.isEmpty() ? null : types.get(0);
+    }
+}
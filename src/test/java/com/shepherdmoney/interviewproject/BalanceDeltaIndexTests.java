@@ -0,0 +1,61 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BalanceDeltaIndexTests {
+
+    @Test
+    public void sumBefore_MatchesNaiveSums() {
+        // Arrange: deltas spread far to both sides of the first one, so the index has to grow both ways
+        Random random = new Random(11);
+        int firstDay = 20_000;
+        long[] naive = new long[4_000];
+        int naiveOrigin = firstDay - 2_000;
+        BalanceDeltaIndex index = new BalanceDeltaIndex();
+
+        for (int i = 0; i < 500; i++) {
+            // Act
+            int day = i == 0 ? firstDay : naiveOrigin + random.nextInt(naive.length);
+            long delta = random.nextInt(200) - 100;
+            index.add(day, delta);
+            naive[day - naiveOrigin] += delta;
+
+            // Assert
+            if (i % 50 == 0) {
+                assertSums(naive, naiveOrigin, index);
+            }
+        }
+        assertSums(naive, naiveOrigin, index);
+    }
+
+    @Test
+    public void copy_IsIndependent() {
+        BalanceDeltaIndex index = new BalanceDeltaIndex();
+        assertTrue(index.isEmpty());
+        index.add(100, 5);
+
+        BalanceDeltaIndex copy = index.copy();
+        copy.add(50, 7);
+        copy.add(90_000, 1);
+
+        assertEquals(5, index.sumBefore(200));
+        assertEquals(0, index.sumBefore(100));
+        assertEquals(12, copy.sumBefore(200));
+        assertEquals(13, copy.sumBefore(90_001));
+    }
+
+    private static void assertSums(long[] naive, int naiveOrigin, BalanceDeltaIndex index) {
+        long sum = 0;
+        for (int i = 0; i < naive.length; i++) {
+            assertEquals(sum, index.sumBefore(naiveOrigin + i), "sum before day " + (naiveOrigin + i));
+            sum += naive[i];
+        }
+        assertEquals(sum, index.sumBefore(naiveOrigin + naive.length + 1_000));
+    }
+}
@@ -0,0 +1,180 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndexCache;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.job.BalanceDeltaFolder;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceDeltaRepository;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The delta log must give exactly the balances of rewriting every later row, before and after fold-down,
+ * while a backdated correction only writes two rows.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class BalanceDeltaLogTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceDeltaLogTests.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Autowired
+    private BalanceDeltaIndexCache balanceDeltaIndexCache;
+
+    @Autowired
+    private BalanceDeltaFolder balanceDeltaFolder;
+
+    @Autowired
+    private BalanceDeltaRepository balanceDeltaRepository;
+
+    @AfterEach
+    public void restoreDefaults() {
+        balanceProperties.getDeltaLog().setEnabled(false);
+        balanceProperties.getStorage().setMode(BalanceProperties.StorageMode.DENSE);
+    }
+
+    @ParameterizedTest
+    @EnumSource(BalanceProperties.StorageMode.class)
+    public void deltaLog_MatchesCascadingUpdates(BalanceProperties.StorageMode mode) {
+        Random random = new Random(31);
+        LocalDate today = LocalDate.now();
+        balanceProperties.getStorage().setMode(mode);
+        for (int round = 0; round < 5; round++) {
+            // Arrange: the same seed history on a card updated in place and on a card using the delta log
+            CreditCard cascading = createCard();
+            CreditCard logged = createCard();
+            for (int i = 0; i < 3; i++) {
+                LocalDate date = today.minusDays(40 + 30 * i + random.nextInt(30));
+                long balance = random.nextInt(1000);
+                saveHistory(cascading, date, balance);
+                saveHistory(logged, date, balance);
+            }
+
+            for (int batch = 0; batch < 4; batch++) {
+                UpdateBalancePayload[] cascadingPayloads = new UpdateBalancePayload[10];
+                UpdateBalancePayload[] loggedPayloads = new UpdateBalancePayload[10];
+                for (int i = 0; i < cascadingPayloads.length; i++) {
+                    LocalDate date = today.minusDays(random.nextInt(140) - 5);
+                    long amount = random.nextInt(5) == 0 ? 0 : random.nextInt(1000);
+                    cascadingPayloads[i] = payload(cascading, date, amount);
+                    loggedPayloads[i] = payload(logged, date, amount);
+                }
+
+                // Act
+                balanceProperties.getDeltaLog().setEnabled(false);
+                creditCardService.updateBalanceHistory(cascadingPayloads);
+                List<BalanceHistoryView> expected = fullHistory(cascading);
+                balanceProperties.getDeltaLog().setEnabled(true);
+                creditCardService.updateBalanceHistory(loggedPayloads);
+
+                // Assert: from the caches, then from the database
+                assertEquals(expected, fullHistory(logged));
+                assertPointReadsMatch(expected, logged);
+                balanceTimelineCache.invalidate(logged.getId());
+                balanceDeltaIndexCache.invalidate(logged.getId());
+                assertEquals(expected, fullHistory(logged));
+                assertPointReadsMatch(expected, logged);
+            }
+
+            // Fold-down keeps every balance and empties the log of the card
+            List<BalanceHistoryView> expected = fullHistory(cascading);
+            assertTrue(balanceDeltaFolder.fold(logged.getId()) > 0);
+            assertTrue(balanceDeltaRepository.findByCreditCardId(logged.getId()).isEmpty());
+            assertEquals(expected, fullHistory(logged));
+            balanceTimelineCache.invalidate(logged.getId());
+            assertEquals(expected, fullHistory(logged));
+            balanceProperties.getDeltaLog().setEnabled(false);
+            assertEquals(expected, fullHistory(logged));
+        }
+    }
+
+    @Test
+    public void backdatedCorrection_WritesOneBalanceAndOneDelta() {
+        // Arrange: two years of daily history
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        int days = 730;
+        transactionTemplate.executeWithoutResult(status -> {
+            CreditCard reference = entityManager.getReference(CreditCard.class, card.getId());
+            for (int i = days; i > 0; i--) {
+                BalanceHistory history = new BalanceHistory();
+                history.setCreditCard(reference);
+                history.setDate(today.minusDays(i));
+                history.setBalance(100);
+                entityManager.persist(history);
+            }
+        });
+        balanceProperties.getDeltaLog().setEnabled(true);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Act
+        long start = System.nanoTime();
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload(card, today.minusDays(days - 1), 150)});
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        // Assert
+        logger.info("Backdated correction over {} later rows: {} updates, {} inserts in {} ms",
+                days - 2, statistics.getEntityUpdateCount(), statistics.getEntityInsertCount(), String.format("%.3f", millis));
+        assertEquals(1, statistics.getEntityUpdateCount());
+        assertEquals(1, statistics.getEntityInsertCount());
+        assertEquals(new BalanceHistoryView(today.minusDays(1), 150), creditCardService.getBalanceOnDate(card.getNumber(), today.minusDays(1)));
+        assertEquals(new BalanceHistoryView(today.minusDays(days), 100), creditCardService.getBalanceOnDate(card.getNumber(), today.minusDays(days)));
+    }
+
+    private List<BalanceHistoryView> fullHistory(CreditCard card) {
+        LocalDate today = LocalDate.now();
+        return creditCardService.getBalanceHistory(card.getNumber(), today.minusDays(200), today.plusDays(10));
+    }
+
+    private void assertPointReadsMatch(List<BalanceHistoryView> expected, CreditCard card) {
+        for (BalanceHistoryView entry : expected) {
+            assertEquals(entry, creditCardService.getBalanceOnDate(card.getNumber(), entry.getDate()));
+            assertEquals(entry, creditCardService.getNearestBalance(card.getNumber(), entry.getDate()));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.eventlog.BalanceEvent;
+import com.shepherdmoney.interviewproject.eventlog.BalanceEventLog;
+import com.shepherdmoney.interviewproject.job.BalanceEventRecovery;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Histories rebuilt from the event log (latest snapshot plus log tail) must equal the ones the updates wrote,
+ * and the log must keep every synced record across concurrent appends, aborts and a torn tail.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:eventlog;DB_CLOSE_DELAY=-1",
+        "balance.event-log.enabled=true"
+})
+public class BalanceEventLogTests extends BalanceFixtures {
+
+    private static Path logDirectory;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceEventRecovery balanceEventRecovery;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    private Path directory;
+
+    @DynamicPropertySource
+    static void eventLogDirectory(DynamicPropertyRegistry registry) throws IOException {
+        logDirectory = Files.createTempDirectory("balance-events");
+        registry.add("balance.event-log.directory", logDirectory::toString);
+    }
+
+    @Test
+    public void rebuildFromSnapshotAndTailMatchesUpdatedHistories() {
+        // Arrange: three cards with a seeded history the log has not seen
+        Random random = new Random(21);
+        LocalDate today = LocalDate.now();
+        List<CreditCard> cards = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CreditCard card = createCard();
+            saveHistory(card, today.minusDays(60 + i), 1_000L * (i + 1));
+            cards.add(card);
+        }
+
+        // Act: batches before and after a snapshot, then lose the stored histories and rebuild them
+        for (int round = 0; round < 20; round++) {
+            if (round == 10) {
+                balanceEventRecovery.snapshot();
+            }
+            UpdateBalancePayload[] payloads = new UpdateBalancePayload[1 + random.nextInt(4)];
+            for (int i = 0; i < payloads.length; i++) {
+                CreditCard card = cards.get(random.nextInt(cards.size()));
+                payloads[i] = payload(card, today.minusDays(random.nextInt(70) - 2), random.nextInt(10_000));
+            }
+            creditCardService.updateBalanceHistory(payloads);
+        }
+        Map<Integer, List<BalanceHistoryView>> expected = new HashMap<>();
+        Map<CreditCard, BalanceTimeline> lost = new HashMap<>();
+        for (CreditCard card : cards) {
+            expected.put(card.getId(), fullHistory(card));
+            lost.put(card, new BalanceTimeline(new int[]{BalanceTimeline.toEpochDay(today)}, new long[]{-1}));
+        }
+        transactionTemplate.executeWithoutResult(status -> balanceStore.replaceAll(lost));
+        int rebuilt = balanceEventRecovery.rebuild();
+
+        // Assert
+        assertEquals(cards.size(), rebuilt);
+        for (CreditCard card : cards) {
+            assertEquals(expected.get(card.getId()), fullHistory(card));
+        }
+    }
+
+    @Test
+    public void concurrentAppendsSurviveAbortsAndTornTail() throws Exception {
+        // Arrange: a log of its own with 1 KB segments
+        BalanceProperties properties = new BalanceProperties();
+        properties.getEventLog().setDirectory(directory.toString());
+        properties.getEventLog().setSegmentSize(DataSize.ofKilobytes(1));
+        BalanceEventLog log = new BalanceEventLog(properties);
+        ConcurrentLinkedQueue<Long> aborted = new ConcurrentLinkedQueue<>();
+
+        // Act: 8 writers append 100 single-payload batches each, every 10th one rolls back
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int writer = 0; writer < 8; writer++) {
+            int creditCardId = writer;
+            futures.add(writers.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    long sequence = log.append(19_000, Map.of(), new int[]{creditCardId}, new int[]{19_000 + i}, new long[]{i});
+                    boolean committed = i % 10 != 9;
+                    if (!committed) {
+                        aborted.add(sequence);
+                    }
+                    log.complete(sequence, committed);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        writers.shutdown();
+        log.close();
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files.filter(file -> file.getFileName().toString().startsWith("events-")).sorted()
+                    .reduce((first, second) -> second).orElseThrow();
+        }
+        Files.write(lastSegment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        BalanceEventLog reopened = new BalanceEventLog(properties);
+        long next = reopened.append(19_001, Map.of(), new int[]{99}, new int[]{19_001}, new long[]{7});
+        reopened.complete(next, true);
+
+        // Assert: every committed batch in sequence order, then the one appended after reopening
+        List<BalanceEvent> events = new ArrayList<>();
+        reopened.replay(1, Long.MAX_VALUE, events::add);
+        assertEquals(800 - aborted.size() + 1, events.size());
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i - 1).sequence() < events.get(i).sequence());
+        }
+        assertTrue(events.stream().noneMatch(event -> aborted.contains(event.sequence())));
+        assertEquals(next, events.get(events.size() - 1).sequence());
+        assertEquals(99, events.get(events.size() - 1).creditCardIds()[0]);
+        assertEquals(next + 1, reopened.lowWaterMark());
+        reopened.close();
+    }
+
+    private List<BalanceHistoryView> fullHistory(CreditCard card) {
+        LocalDate today = LocalDate.now();
+        return creditCardService.getBalanceHistory(card.getNumber(), today.minusDays(100), today.plusDays(10));
+    }
+}
@@ -0,0 +1,209 @@
+package com.shepherdmoney.interviewproject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.service.BalanceExportService;
+import com.shepherdmoney.interviewproject.service.BalanceFileFormat;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Exports must contain exactly what the read endpoints return, in every storage mode, and stream from the
+ * database cursor with a flat heap. Exports 500k rows by default; run with -Dbenchmark.exportRows=100000000
+ * for the 100M point.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+public class BalanceExportTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceExportTests.class);
+
+    private static final long EXPORT_ROWS = Long.getLong("benchmark.exportRows", 500_000);
+
+    private static final int SEED_DAYS = 1_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BalanceExportService balanceExportService;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @AfterEach
+    public void restoreDefaults() {
+        balanceProperties.getDeltaLog().setEnabled(false);
+        balanceProperties.getStorage().setMode(BalanceProperties.StorageMode.DENSE);
+        // Seeded rows use negative ids, which the id sequences never hand out
+        jdbcTemplate.update("DELETE FROM balance_history WHERE credit_card_id < 0");
+        jdbcTemplate.update("DELETE FROM credit_card WHERE id < 0");
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DENSE, false", "DENSE, true", "SPARSE, false", "SPARSE, true"})
+    public void cardExport_MatchesBalanceReads(BalanceProperties.StorageMode mode, boolean deltaLog) throws Exception {
+        // Arrange
+        balanceProperties.getStorage().setMode(mode);
+        balanceProperties.getDeltaLog().setEnabled(deltaLog);
+        Random random = new Random(17);
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard(createUser());
+        saveHistory(card, today.minusDays(60), 100);
+        UpdateBalancePayload[] payloads = new UpdateBalancePayload[15];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = payload(card, today.minusDays(random.nextInt(65) - 3), random.nextInt(1000));
+        }
+        creditCardService.updateBalanceHistory(payloads);
+
+        // Act
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long rows = balanceExportService.exportBalances(card.getNumber(), null, BalanceFileFormat.NDJSON, () -> output);
+
+        // Assert
+        List<BalanceHistoryView> exported = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            UpdateBalancePayload row = objectMapper.readValue(line, UpdateBalancePayload.class);
+            assertEquals(card.getNumber(), row.getCreditCardNumber());
+            exported.add(new BalanceHistoryView(row.getBalanceDate(), row.getBalanceAmount()));
+        }
+        assertEquals(creditCardService.getBalanceHistory(card.getNumber(), today.minusDays(100), today.plusDays(10)), exported);
+        assertEquals(exported.size(), rows);
+    }
+
+    @Test
+    public void userExport_GzippedCsvOverHttp() throws Exception {
+        // Arrange: two cards of one user, one card of another user
+        LocalDate today = LocalDate.now();
+        User user = createUser();
+        CreditCard first = createCard(user);
+        CreditCard second = createCard(user);
+        CreditCard other = createCard(createUser());
+        saveHistory(first, today.minusDays(1), 1000);
+        saveHistory(second, today.minusDays(2), 2000);
+        saveHistory(second, today.minusDays(1), 2550);
+        saveHistory(other, today.minusDays(1), 3000);
+
+        // Act
+        MockHttpServletResponse response = mockMvc.perform(get("/credit-card:export-balances")
+                        .param("userId", String.valueOf(user.getId()))
+                        .param("format", "CSV")
+                        .param("gzip", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse();
+
+        // Assert
+        String csv;
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            csv = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals("creditCardNumber,balanceDate,balanceAmount\n" +
+                first.getNumber() + "," + today.minusDays(1) + ",10.00\n" +
+                second.getNumber() + "," + today.minusDays(2) + ",20.00\n" +
+                second.getNumber() + "," + today.minusDays(1) + ",25.50\n", csv);
+    }
+
+    @Test
+    public void export_RejectsBadScopeBeforeWriting() throws Exception {
+        User user = createUser();
+        CreditCard card = createCard(user);
+
+        mockMvc.perform(get("/credit-card:export-balances")
+                        .param("creditCardNumber", card.getNumber())
+                        .param("userId", String.valueOf(user.getId())))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/credit-card:export-balances").param("creditCardNumber", "unknown-" + UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/credit-card:export-balances").param("userId", "-1"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void largeExport_FlatHeap() throws Exception {
+        // Arrange: EXPORT_ROWS rows over cards of one user, SEED_DAYS days each
+        User user = createUser();
+        long cards = EXPORT_ROWS / SEED_DAYS;
+        jdbcTemplate.update("INSERT INTO credit_card (id, issuance_bank, number, user_id) " +
+                "SELECT -X, 'Export Bank', CONCAT('export-', X), ? FROM SYSTEM_RANGE(1, ?)", user.getId(), cards);
+        for (long card = 1; card <= cards; card += 100) {
+            jdbcTemplate.update("INSERT INTO balance_history (id, balance, date, credit_card_id) " +
+                            "SELECT -(C.X * ? + D.X), D.X, DATEADD('DAY', -D.X, CURRENT_DATE), -C.X " +
+                            "FROM SYSTEM_RANGE(?, ?) C, SYSTEM_RANGE(1, ?) D",
+                    SEED_DAYS, card, Math.min(card + 99, cards), SEED_DAYS);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long baseline = usedHeapAfterGc(runtime);
+        long[] maxGrowth = {0};
+        long sampleEvery = EXPORT_ROWS / 5;
+
+        // Act: write to a sink that samples the heap along the way
+        long begin = System.nanoTime();
+        OutputStream sink = new OutputStream() {
+            private long newlines;
+
+            @Override
+            public void write(int b) {
+                if (b == '\n' && ++newlines % sampleEvery == 0) {
+                    maxGrowth[0] = Math.max(maxGrowth[0], usedHeapAfterGc(runtime) - baseline);
+                }
+            }
+        };
+        long rows = balanceExportService.exportBalances(null, user.getId(), BalanceFileFormat.NDJSON, () -> sink);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        // Assert
+        logger.info("Exported {} rows in {} s ({} rows/s), max heap growth {} MB", rows, String.format("%.1f", seconds),
+                String.format("%.0f", rows / seconds), maxGrowth[0] / (1024 * 1024));
+        assertEquals(cards * SEED_DAYS, rows);
+        assertTrue(maxGrowth[0] < 64L * 1024 * 1024, "heap grew by " + maxGrowth[0] + " bytes");
+    }
+
+    private static long usedHeapAfterGc(Runtime runtime) {
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,64 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Users, cards, balance history and update payloads shared by the Spring Boot tests. The repositories are
+ * autowired from the Spring context of the extending test class.
+ */
+abstract class BalanceFixtures {
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected CreditCardRepository creditCardRepository;
+
+    @Autowired
+    protected BalanceHistoryRepository balanceHistoryRepository;
+
+    protected User createUser() {
+        User user = new User();
+        user.setName("balance");
+        user.setEmail("balance@example.com");
+        return userRepository.save(user);
+    }
+
+    protected CreditCard createCard() {
+        return createCard(createUser());
+    }
+
+    protected CreditCard createCard(User user) {
+        CreditCard card = new CreditCard();
+        card.setIssuanceBank("Test Bank");
+        card.setNumber(UUID.randomUUID().toString());
+        card.setUser(user);
+        return creditCardRepository.save(card);
+    }
+
+    protected void saveHistory(CreditCard card, LocalDate date, long balance) {
+        BalanceHistory history = new BalanceHistory();
+        history.setCreditCard(card);
+        history.setDate(date);
+        history.setBalance(balance);
+        balanceHistoryRepository.save(history);
+    }
+
+    protected static UpdateBalancePayload payload(CreditCard card, LocalDate date, long amount) {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(card.getNumber());
+        payload.setBalanceDate(date);
+        payload.setBalanceAmount(amount);
+        return payload;
+    }
+}
@@ -0,0 +1,93 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the gap filling result and reports how query count and latency behave against history length.
+ * The number of queries must stay flat no matter how many days have to be filled.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class BalanceHistoryGapFillTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceHistoryGapFillTests.class);
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void fillGaps_CarriesPreviousBalanceForward() {
+        // Arrange: [today-5: 100, today-2: 200], payload today-1: 250
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        saveHistory(card, today.minusDays(5), 100);
+        saveHistory(card, today.minusDays(2), 200);
+
+        // Act
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload(card, today.minusDays(1), 250)});
+
+        // Assert
+        List<BalanceHistoryView> history = balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card);
+        assertEquals(List.of(
+                new BalanceHistoryView(today.minusDays(5), 100),
+                new BalanceHistoryView(today.minusDays(4), 100),
+                new BalanceHistoryView(today.minusDays(3), 100),
+                new BalanceHistoryView(today.minusDays(2), 200),
+                new BalanceHistoryView(today.minusDays(1), 250)
+        ), history);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {30, 365, 730, 1825})
+    public void fillGaps_QueryCountIsFlatAgainstHistoryLength(int historyDays) {
+        // Arrange: a single entry historyDays ago, everything after it is a gap
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        saveHistory(card, today.minusDays(historyDays), 100);
+        statistics.clear();
+
+        // Act
+        long start = System.nanoTime();
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload(card, today.minusDays(1), 150)});
+        long elapsedMicros = (System.nanoTime() - start) / 1_000;
+
+        // Assert
+        long queries = statistics.getQueryExecutionCount();
+        logger.info("gap fill over {} days: {} queries, {} statements prepared, {} rows inserted, {} us",
+                historyDays, queries, statistics.getPrepareStatementCount(), statistics.getEntityInsertCount(), elapsedMicros);
+        assertTrue(queries <= 3, "gap filling must not issue per-day queries, got " + queries);
+        assertEquals(historyDays, balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card).size());
+    }
+}
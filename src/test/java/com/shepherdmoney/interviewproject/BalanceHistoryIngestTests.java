@@ -0,0 +1,94 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ingest benchmark for BalanceHistory rows: one INSERT per row (JDBC batching switched off for the session)
+ * against the configured JDBC batch size with pooled id allocation.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class BalanceHistoryIngestTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceHistoryIngestTests.class);
+
+    private static final int ROWS = 20_000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void ingest_BatchedWritesAreFasterThanSingleRowWrites() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // Warm up both paths once so the comparison is not dominated by class loading and JIT
+        ingest(1, 2_000);
+        ingest(null, 2_000);
+
+        statistics.clear();
+        double singleRowRate = ingest(1, ROWS);
+        long singleRowStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        double batchedRate = ingest(null, ROWS);
+        long batchedStatements = statistics.getPrepareStatementCount();
+
+        logger.info("ingest of {} rows: one row per statement {} rows/s ({} statements), batched {} rows/s ({} statements)",
+                ROWS, String.format("%.0f", singleRowRate), singleRowStatements,
+                String.format("%.0f", batchedRate), batchedStatements);
+        assertTrue(batchedStatements < singleRowStatements / 10,
+                "batched ingest should prepare far fewer statements, got " + batchedStatements);
+    }
+
+    /**
+     * Persist rows for a fresh card in one transaction and return the achieved rows per second.
+     *
+     * @param jdbcBatchSize The JDBC batch size of the session, or null to keep the configured one
+     */
+    private double ingest(Integer jdbcBatchSize, int rows) {
+        CreditCard card = createCard();
+        LocalDate start = LocalDate.now().minusDays(rows);
+        long begin = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+            CreditCard reference = entityManager.getReference(CreditCard.class, card.getId());
+            for (int i = 0; i < rows; i++) {
+                BalanceHistory history = new BalanceHistory();
+                history.setCreditCard(reference);
+                history.setDate(start.plusDays(i));
+                history.setBalance(i);
+                entityManager.persist(history);
+                if ((i + 1) % 1_000 == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    reference = entityManager.getReference(CreditCard.class, card.getId());
+                }
+            }
+        });
+        return rows / ((System.nanoTime() - begin) / 1e9);
+    }
+}
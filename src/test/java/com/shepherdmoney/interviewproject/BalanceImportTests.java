@@ -0,0 +1,225 @@
+package com.shepherdmoney.interviewproject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.BalanceFileFormat;
+import com.shepherdmoney.interviewproject.service.BalanceImportService;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.ImportEventView;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Streaming NDJSON/CSV imports: chunked application must match one big batch, bad lines are reported one by
+ * one, and the input is consumed as it is applied rather than read up front.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+public class BalanceImportTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceImportTests.class);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BalanceImportService balanceImportService;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Test
+    public void ndjsonImport_MatchesSingleBatch() throws Exception {
+        // Arrange: the same history on imported cards and on reference cards, 2500 lines over 3 chunks
+        Random random = new Random(13);
+        LocalDate today = LocalDate.now();
+        List<CreditCard> imported = new ArrayList<>();
+        List<CreditCard> reference = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            LocalDate date = today.minusDays(40 + random.nextInt(20));
+            CreditCard importedCard = createCard();
+            CreditCard referenceCard = createCard();
+            saveHistory(importedCard, date, 100 * i);
+            saveHistory(referenceCard, date, 100 * i);
+            imported.add(importedCard);
+            reference.add(referenceCard);
+        }
+        StringBuilder ndjson = new StringBuilder();
+        UpdateBalancePayload[] referencePayloads = new UpdateBalancePayload[2_500];
+        for (int i = 0; i < referencePayloads.length; i++) {
+            int card = random.nextInt(3);
+            LocalDate date = today.minusDays(random.nextInt(70) - 3);
+            long amount = random.nextInt(1000);
+            ndjson.append(objectMapper.writeValueAsString(payload(imported.get(card), date, amount))).append('\n');
+            referencePayloads[i] = payload(reference.get(card), date, amount);
+        }
+        creditCardService.updateBalanceHistory(referencePayloads);
+
+        // Act
+        List<ImportEventView> events = postImport(ndjson.toString(), "application/x-ndjson");
+
+        // Assert
+        assertEquals(List.of(ImportEventView.Type.PROGRESS, ImportEventView.Type.PROGRESS, ImportEventView.Type.PROGRESS,
+                ImportEventView.Type.SUMMARY), events.stream().map(ImportEventView::getType).toList());
+        ImportEventView summary = events.get(events.size() - 1);
+        assertEquals(2_500, summary.getLinesRead());
+        assertEquals(2_500, summary.getImported());
+        assertEquals(0, summary.getFailed());
+        assertEquals(3, summary.getChunks());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(fullHistory(reference.get(i)), fullHistory(imported.get(i)));
+        }
+    }
+
+    @Test
+    public void csvImport_ReportsEveryBadLine() throws Exception {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        CreditCard withoutHistory = createCard();
+        saveHistory(card, today.minusDays(3), 10_000);
+        String csv = "creditCardNumber,balanceDate,balanceAmount\n" +
+                card.getNumber() + "," + today.minusDays(2) + ",150\n" +
+                card.getNumber() + ",yesterday,150\n" +
+                "unknown-" + UUID.randomUUID() + "," + today + ",10\n" +
+                card.getNumber() + "," + today + "\n" +
+                withoutHistory.getNumber() + "," + today + ",10\n" +
+                "\n" +
+                card.getNumber() + "," + today.minusDays(1) + ",175\n";
+
+        // Act
+        List<ImportEventView> events = postImport(csv, "text/csv");
+
+        // Assert: lines 3 to 6 are reported, the card without history only fails its own line; amounts are in cents
+        List<Long> errorLines = events.stream().filter(event -> event.getType() == ImportEventView.Type.ERROR)
+                .map(ImportEventView::getLine).sorted().toList();
+        assertEquals(List.of(3L, 4L, 5L, 6L), errorLines);
+        ImportEventView summary = events.get(events.size() - 1);
+        assertEquals(ImportEventView.Type.SUMMARY, summary.getType());
+        assertEquals(8, summary.getLinesRead());
+        assertEquals(2, summary.getImported());
+        assertEquals(4, summary.getFailed());
+        assertEquals(List.of(
+                new BalanceHistoryView(today.minusDays(3), 10_000),
+                new BalanceHistoryView(today.minusDays(2), 15_000),
+                new BalanceHistoryView(today.minusDays(1), 17_500)
+        ), fullHistory(card));
+    }
+
+    @Test
+    public void largeImport_ConsumesInputAsItGoes() throws Exception {
+        // Arrange: 50k generated lines over 10 cards, produced on demand
+        LocalDate today = LocalDate.now();
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            CreditCard card = createCard();
+            saveHistory(card, today.minusDays(30), 0);
+            numbers.add(card.getNumber());
+        }
+        int lines = 50_000;
+        GeneratedInput input = new GeneratedInput(lines,
+                line -> "{\"creditCardNumber\":\"" + numbers.get(line % numbers.size()) + "\",\"balanceDate\":\""
+                        + today.minusDays(1 + line % 5) + "\",\"balanceAmount\":" + line % 997 + "}\n");
+        long[] bytesReadAtFirstChunk = {-1};
+        long[] maxUsedHeap = {0};
+        Runtime runtime = Runtime.getRuntime();
+
+        // Act
+        ImportEventView summary = balanceImportService.importBalances(input, BalanceFileFormat.NDJSON, event -> {
+            if (event.getType() == ImportEventView.Type.PROGRESS) {
+                if (bytesReadAtFirstChunk[0] < 0) {
+                    bytesReadAtFirstChunk[0] = input.bytesRead;
+                }
+                maxUsedHeap[0] = Math.max(maxUsedHeap[0], runtime.totalMemory() - runtime.freeMemory());
+            }
+        });
+
+        // Assert: the first chunk was committed before more than a few buffers of input had been read
+        logger.info("Imported {} lines ({} bytes): first chunk committed after {} bytes, max used heap {} MB",
+                lines, input.bytesRead, bytesReadAtFirstChunk[0], maxUsedHeap[0] / (1024 * 1024));
+        assertEquals(lines, summary.getImported());
+        assertEquals(lines / 1_000, summary.getChunks());
+        assertTrue(bytesReadAtFirstChunk[0] < input.bytesRead / 10, bytesReadAtFirstChunk[0] + " bytes read");
+    }
+
+    private List<ImportEventView> postImport(String body, String contentType) throws Exception {
+        String response = mockMvc.perform(post("/credit-card:import-balances")
+                        .contentType(MediaType.parseMediaType(contentType))
+                        .content(body.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<ImportEventView> events = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            events.add(objectMapper.readValue(line, ImportEventView.class));
+        }
+        return events;
+    }
+
+    /**
+     * Input stream producing its lines only when they are read
+     */
+    private static final class GeneratedInput extends InputStream {
+
+        private final int lines;
+
+        private final IntFunction<String> generator;
+
+        private int nextLine;
+
+        private byte[] current = new byte[0];
+
+        private int position;
+
+        private long bytesRead;
+
+        private GeneratedInput(int lines, IntFunction<String> generator) {
+            this.lines = lines;
+            this.generator = generator;
+        }
+
+        @Override
+        public int read() {
+            if (position == current.length) {
+                if (nextLine == lines) {
+                    return -1;
+                }
+                current = generator.apply(nextLine++).getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            bytesRead++;
+            return current[position++];
+        }
+    }
+
+    private List<BalanceHistoryView> fullHistory(CreditCard card) {
+        LocalDate today = LocalDate.now();
+        return creditCardService.getBalanceHistory(card.getNumber(), today.minusDays(100), today.plusDays(10));
+    }
+}
@@ -0,0 +1,112 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.service.BalanceIngestionService;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.IngestTicketView;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * One partition with room for one queued payload: while the worker is busy, a second batch is queued and a
+ * third one is rejected, and a batch of two payloads never fits. Only one finished ticket is kept.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:backpressure;DB_CLOSE_DELAY=-1",
+        "balance.ingest.partitions=1",
+        "balance.ingest.queue-capacity=1",
+        "balance.ingest.backpressure=REJECT",
+        "balance.ingest.max-tickets=1"
+})
+public class BalanceIngestionBackpressureTests extends BalanceFixtures {
+
+    @MockBean
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceIngestionService balanceIngestionService;
+
+    @Test
+    public void submit_RejectsWhenQueueIsFull() throws InterruptedException {
+        // Arrange: a worker stuck on the first batch
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(creditCardService.applyBalanceUpdates(any())).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "200 OK";
+        });
+        UpdateBalancePayload[] batch = {payload(createCard(), LocalDate.now(), 1)};
+
+        // Act
+        balanceIngestionService.submit(batch);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        IngestTicketView queued = balanceIngestionService.submit(batch);
+        BusinessException rejected = assertThrows(BusinessException.class, () -> balanceIngestionService.submit(batch));
+        release.countDown();
+
+        // Assert
+        assertEquals(503, rejected.getCode());
+        assertEquals(IngestTicketView.Status.COMPLETED, awaitTicket(queued.getTicketId()).getStatus());
+    }
+
+    @Test
+    public void submit_RejectsPartLargerThanQueue() {
+        // Arrange: two payloads for the single partition
+        UpdateBalancePayload[] batch = {payload(createCard(), LocalDate.now(), 1), payload(createCard(), LocalDate.now(), 2)};
+
+        // Act
+        BusinessException rejected = assertThrows(BusinessException.class, () -> balanceIngestionService.submit(batch));
+
+        // Assert
+        assertEquals(413, rejected.getCode());
+    }
+
+    @Test
+    public void tickets_InFlightAreKeptFinishedAreForgotten() throws InterruptedException {
+        // Arrange: a worker stuck on the first batch
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(creditCardService.applyBalanceUpdates(any())).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "200 OK";
+        });
+        UpdateBalancePayload[] batch = {payload(createCard(), LocalDate.now(), 1)};
+
+        // Act: more tickets in flight than max-tickets
+        IngestTicketView running = balanceIngestionService.submit(batch);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        IngestTicketView queued = balanceIngestionService.submit(batch);
+
+        // Assert: both are kept until they finish
+        assertEquals(IngestTicketView.Status.RUNNING, balanceIngestionService.getTicket(running.getTicketId()).getStatus());
+        assertEquals(IngestTicketView.Status.QUEUED, balanceIngestionService.getTicket(queued.getTicketId()).getStatus());
+        release.countDown();
+        assertEquals(IngestTicketView.Status.COMPLETED, awaitTicket(queued.getTicketId()).getStatus());
+        assertEquals(404, assertThrows(BusinessException.class,
+                () -> balanceIngestionService.getTicket(running.getTicketId())).getCode());
+    }
+
+    private IngestTicketView awaitTicket(String ticketId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        IngestTicketView ticket = balanceIngestionService.getTicket(ticketId);
+        while ((ticket.getStatus() == IngestTicketView.Status.QUEUED || ticket.getStatus() == IngestTicketView.Status.RUNNING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ticket = balanceIngestionService.getTicket(ticketId);
+        }
+        return ticket;
+    }
+}
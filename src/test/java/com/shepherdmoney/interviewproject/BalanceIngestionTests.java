@@ -0,0 +1,123 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.BalanceIngestionService;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.IngestTicketView;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batches applied by the partition workers must end up exactly like the same batches applied synchronously.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class BalanceIngestionTests extends BalanceFixtures {
+
+    @Autowired
+    private BalanceIngestionService balanceIngestionService;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Test
+    public void asyncBatches_MatchSynchronousBatches() throws InterruptedException {
+        // Arrange: pairs of cards with the same seed history
+        Random random = new Random(5);
+        LocalDate today = LocalDate.now();
+        List<CreditCard> syncCards = new ArrayList<>();
+        List<CreditCard> asyncCards = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            CreditCard syncCard = createCard();
+            CreditCard asyncCard = createCard();
+            LocalDate date = today.minusDays(30 + random.nextInt(30));
+            long balance = random.nextInt(1000);
+            saveHistory(syncCard, date, balance);
+            saveHistory(asyncCard, date, balance);
+            syncCards.add(syncCard);
+            asyncCards.add(asyncCard);
+        }
+
+        // Act: several batches per card, so the order across tickets matters as well
+        List<String> tickets = new ArrayList<>();
+        for (int batch = 0; batch < 5; batch++) {
+            UpdateBalancePayload[] syncPayloads = new UpdateBalancePayload[40];
+            UpdateBalancePayload[] asyncPayloads = new UpdateBalancePayload[40];
+            for (int i = 0; i < syncPayloads.length; i++) {
+                int card = random.nextInt(syncCards.size());
+                LocalDate date = today.minusDays(random.nextInt(70) - 3);
+                long amount = random.nextInt(1000);
+                syncPayloads[i] = payload(syncCards.get(card), date, amount);
+                asyncPayloads[i] = payload(asyncCards.get(card), date, amount);
+            }
+            creditCardService.updateBalanceHistory(syncPayloads);
+            IngestTicketView ticket = balanceIngestionService.submit(asyncPayloads);
+            assertEquals(40, ticket.getPayloads());
+            tickets.add(ticket.getTicketId());
+        }
+
+        // Assert
+        for (String ticketId : tickets) {
+            IngestTicketView ticket = awaitTicket(ticketId);
+            assertEquals(IngestTicketView.Status.COMPLETED, ticket.getStatus(), ticket.getError());
+            assertEquals(ticket.getParts(), ticket.getCompletedParts());
+        }
+        for (int i = 0; i < syncCards.size(); i++) {
+            assertEquals(fullHistory(syncCards.get(i)), fullHistory(asyncCards.get(i)));
+        }
+    }
+
+    @Test
+    public void submit_RejectsUnknownCardSynchronously() {
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber("unknown-" + UUID.randomUUID());
+        payload.setBalanceDate(LocalDate.now());
+
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> balanceIngestionService.submit(new UpdateBalancePayload[]{payload}));
+        assertEquals(400, exception.getCode());
+        assertEquals(404, assertThrows(BusinessException.class, () -> balanceIngestionService.getTicket("missing")).getCode());
+    }
+
+    @Test
+    public void failedPart_IsReportedOnTheTicket() throws InterruptedException {
+        // A card without any history cannot be updated
+        CreditCard card = createCard();
+
+        IngestTicketView ticket = balanceIngestionService.submit(new UpdateBalancePayload[]{payload(card, LocalDate.now(), 10)});
+
+        IngestTicketView done = awaitTicket(ticket.getTicketId());
+        assertEquals(IngestTicketView.Status.FAILED, done.getStatus());
+        assertEquals(1, done.getFailedParts());
+        assertNotNull(done.getError());
+    }
+
+    private IngestTicketView awaitTicket(String ticketId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        IngestTicketView ticket = balanceIngestionService.getTicket(ticketId);
+        while ((ticket.getStatus() == IngestTicketView.Status.QUEUED || ticket.getStatus() == IngestTicketView.Status.RUNNING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ticket = balanceIngestionService.getTicket(ticketId);
+        }
+        return ticket;
+    }
+
+    private List<?> fullHistory(CreditCard card) {
+        LocalDate today = LocalDate.now();
+        return creditCardService.getBalanceHistory(card.getNumber(), today.minusDays(100), today.plusDays(10));
+    }
+}
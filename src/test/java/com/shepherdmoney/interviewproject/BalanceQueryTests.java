@@ -0,0 +1,146 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Balance reads against a card holding 10k days of history, every 7th day missing.
+ * Reads must be served by projection queries (no entity hydration) and stay within the latency targets.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class BalanceQueryTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceQueryTests.class);
+
+    private static final int HISTORY_DAYS = 10_000;
+
+    private static final double POINT_READ_P99_TARGET_MS = 20;
+
+    private static final double FULL_RANGE_READ_TARGET_MS = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    private CreditCard card;
+
+    private LocalDate start;
+
+    @BeforeEach
+    public void setup() {
+        card = createCard();
+        start = LocalDate.now().minusDays(HISTORY_DAYS);
+        transactionTemplate.executeWithoutResult(status -> {
+            CreditCard reference = entityManager.getReference(CreditCard.class, card.getId());
+            for (int i = 0; i < HISTORY_DAYS; i++) {
+                if (i % 7 == 6) {
+                    continue;
+                }
+                BalanceHistory history = new BalanceHistory();
+                history.setCreditCard(reference);
+                history.setDate(start.plusDays(i));
+                history.setBalance(i);
+                entityManager.persist(history);
+            }
+        });
+    }
+
+    @Test
+    public void reads_FromDatabase() {
+        balanceTimelineCache.invalidate(card.getId());
+        assertReads("database");
+    }
+
+    @Test
+    public void reads_FromCachedTimeline() {
+        List<BalanceHistoryView> history = balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card);
+        int[] epochDays = history.stream().mapToInt(view -> BalanceTimeline.toEpochDay(view.getDate())).toArray();
+        long[] balances = history.stream().mapToLong(BalanceHistoryView::getBalance).toArray();
+        balanceTimelineCache.put(card.getId(), new BalanceTimeline(epochDays, balances));
+        assertReads("cache");
+    }
+
+    private void assertReads(String source) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Point read
+        assertEquals(new BalanceHistoryView(start.plusDays(5), 5), creditCardService.getBalanceOnDate(card.getNumber(), start.plusDays(5)));
+        assertThrows(BusinessException.class, () -> creditCardService.getBalanceOnDate(card.getNumber(), start.plusDays(6)));
+        // Nearest on or after: day 6 is missing, so day 7 is returned
+        assertEquals(new BalanceHistoryView(start.plusDays(7), 7), creditCardService.getNearestBalance(card.getNumber(), start.plusDays(6)));
+        // Range: days 0..13 without 6 and 13
+        assertEquals(12, creditCardService.getBalanceHistory(card.getNumber(), start, start.plusDays(13)).size());
+
+        double pointP99 = p99Millis(() -> creditCardService.getBalanceOnDate(card.getNumber(), start.plusDays(HISTORY_DAYS / 2)));
+        double nearestP99 = p99Millis(() -> creditCardService.getNearestBalance(card.getNumber(), start.plusDays(HISTORY_DAYS - 8)));
+        double monthP99 = p99Millis(() -> creditCardService.getBalanceHistory(card.getNumber(), start.plusDays(100), start.plusDays(130)));
+        long begin = System.nanoTime();
+        List<BalanceHistoryView> all = creditCardService.getBalanceHistory(card.getNumber(), start, start.plusDays(HISTORY_DAYS));
+        double fullRangeMillis = (System.nanoTime() - begin) / 1e6;
+
+        logger.info("{} reads over {} days: point p99 {} ms, nearest p99 {} ms, 31-day range p99 {} ms, full range {} ms",
+                source, HISTORY_DAYS, format(pointP99), format(nearestP99), format(monthP99), format(fullRangeMillis));
+        assertEquals(HISTORY_DAYS - HISTORY_DAYS / 7, all.size());
+        assertEquals(0, statistics.getEntityLoadCount(), "balance reads must not hydrate entities");
+        assertTrue(pointP99 < POINT_READ_P99_TARGET_MS, "point read p99 " + pointP99 + " ms");
+        assertTrue(nearestP99 < POINT_READ_P99_TARGET_MS, "nearest read p99 " + nearestP99 + " ms");
+        assertTrue(fullRangeMillis < FULL_RANGE_READ_TARGET_MS, "full range read " + fullRangeMillis + " ms");
+    }
+
+    private static double p99Millis(Supplier<?> read) {
+        for (int i = 0; i < 200; i++) {
+            read.get();
+        }
+        long[] samples = new long[1_000];
+        for (int i = 0; i < samples.length; i++) {
+            long begin = System.nanoTime();
+            read.get();
+            samples[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(samples);
+        return samples[(int) (samples.length * 0.99) - 1] / 1e6;
+    }
+
+    private static String format(double millis) {
+        return String.format("%.3f", millis);
+    }
+}
@@ -0,0 +1,172 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.job.BalanceRolloverJob;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * With the rollover job, updates store only the days they touch and the job fills the rest: after a run the
+ * histories must equal the ones write-time gap filling produces, a run must be idempotent, and a late run
+ * must catch up on every missed day.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rollover;DB_CLOSE_DELAY=-1",
+        "balance.rollover.enabled=true",
+        "balance.rollover.chunk-cards=2",
+        "balance.rollover.parallelism=3"
+})
+public class BalanceRolloverTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceRolloverTests.class);
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceRolloverJob balanceRolloverJob;
+
+    @Test
+    public void rolloverAfterUpdatesMatchesWriteTimeGapFilling() {
+        // Arrange: seven cards with a few scattered entries each, and the same entries in reference models
+        Random random = new Random(22);
+        LocalDate today = LocalDate.now();
+        List<CreditCard> cards = new ArrayList<>();
+        List<TreeMap<LocalDate, Long>> models = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            CreditCard card = createCard();
+            TreeMap<LocalDate, Long> model = new TreeMap<>();
+            for (int entry = 0; entry < 3; entry++) {
+                LocalDate date = today.minusDays(10 + random.nextInt(80));
+                long balance = random.nextInt(100_000);
+                if (model.putIfAbsent(date, balance) == null) {
+                    saveHistory(card, date, balance);
+                }
+            }
+            cards.add(card);
+            models.add(model);
+        }
+
+        // Act: backdated, same-day and future updates, then one rollover run
+        for (int round = 0; round < 40; round++) {
+            int index = random.nextInt(cards.size());
+            UpdateBalancePayload payload = payload(cards.get(index), today.minusDays(random.nextInt(100) - 3), random.nextInt(100_000));
+            creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload});
+            applySequentially(models.get(index), payload, today);
+        }
+        long storedBeforeRollover = cards.stream()
+                .mapToLong(card -> balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card).size()).sum();
+        balanceRolloverJob.rollover(today);
+
+        // Assert: updates left the gaps to the job
+        for (TreeMap<LocalDate, Long> model : models) {
+            fillUpToYesterday(model, today);
+        }
+        long modelEntries = models.stream().mapToLong(TreeMap::size).sum();
+        assertTrue(storedBeforeRollover < modelEntries / 2, "updates must not fill gaps");
+        for (int i = 0; i < cards.size(); i++) {
+            assertEquals(toViews(models.get(i)), fullHistory(cards.get(i)));
+        }
+    }
+
+    @Test
+    public void rolloverIsIdempotentAndCatchesUpMissedDays() {
+        // Arrange: the latest entry is ten days old
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        saveHistory(card, today.minusDays(12), 100);
+        saveHistory(card, today.minusDays(10), 250);
+
+        // Act: a run five days ago, then the job was down until today and runs twice
+        long fiveDaysAgo = balanceRolloverJob.rollover(today.minusDays(5));
+        long caughtUp = balanceRolloverJob.rollover(today);
+        long again = balanceRolloverJob.rollover(today);
+
+        // Assert
+        assertEquals(1 + 4, fiveDaysAgo);
+        assertEquals(5, caughtUp);
+        assertEquals(0, again);
+        List<BalanceHistoryView> history = fullHistory(card);
+        assertEquals(12, history.size());
+        assertEquals(new BalanceHistoryView(today.minusDays(11), 100), history.get(1));
+        assertEquals(new BalanceHistoryView(today.minusDays(1), 250), history.get(history.size() - 1));
+    }
+
+    @Test
+    public void updateOfLongIdleCardWritesOneRow() {
+        // Arrange: one entry five years ago, nothing after it
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        saveHistory(card, today.minusYears(5), 1_000);
+
+        // Act
+        long start = System.nanoTime();
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload(card, today, 2_000)});
+        double updateMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        long added = balanceRolloverJob.rollover(today);
+        double rolloverMillis = (System.nanoTime() - start) / 1e6;
+
+        // Assert
+        logger.info("update of a card idle for 5 years: {} ms, rollover of {} days: {} ms",
+                String.format("%.1f", updateMillis), added, String.format("%.1f", rolloverMillis));
+        List<BalanceHistoryView> history = fullHistory(card);
+        assertEquals(today.toEpochDay() - today.minusYears(5).toEpochDay() - 1, added);
+        assertEquals(today.toEpochDay() - today.minusYears(5).toEpochDay() + 1, history.size());
+        assertEquals(new BalanceHistoryView(today.minusDays(1), 1_000), history.get(history.size() - 2));
+        assertEquals(new BalanceHistoryView(today, 2_000), history.get(history.size() - 1));
+    }
+
+    /**
+     * Reference implementation of a single payload: fill gaps up to yesterday, then set the payload date
+     * and shift every later balance by the difference.
+     */
+    private static void applySequentially(TreeMap<LocalDate, Long> model, UpdateBalancePayload payload, LocalDate today) {
+        fillUpToYesterday(model, today);
+        LocalDate date = payload.getBalanceDate();
+        long amount = payload.getBalanceAmount();
+        if (!model.containsKey(date)) {
+            model.put(date, amount);
+            return;
+        }
+        long difference = amount - model.get(date);
+        if (difference != 0) {
+            model.put(date, amount);
+            model.tailMap(date, false).replaceAll((key, balance) -> balance + difference);
+        }
+    }
+
+    private static void fillUpToYesterday(TreeMap<LocalDate, Long> model, LocalDate today) {
+        for (LocalDate date = model.firstKey().plusDays(1); date.isBefore(today); date = date.plusDays(1)) {
+            if (!model.containsKey(date)) {
+                model.put(date, model.floorEntry(date).getValue());
+            }
+        }
+    }
+
+    private static List<BalanceHistoryView> toViews(TreeMap<LocalDate, Long> model) {
+        List<BalanceHistoryView> views = new ArrayList<>();
+        model.forEach((date, balance) -> views.add(new BalanceHistoryView(date, balance)));
+        return views;
+    }
+
+    private List<BalanceHistoryView> fullHistory(CreditCard card) {
+        LocalDate today = LocalDate.now();
+        return creditCardService.getBalanceHistory(card.getNumber(), today.minusYears(6), today.plusDays(10));
+    }
+}
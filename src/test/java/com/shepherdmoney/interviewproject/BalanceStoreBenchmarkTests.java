@@ -0,0 +1,108 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
+import com.shepherdmoney.interviewproject.store.MappedBalanceStore;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Full-history scans and month range reads of a 10k-day card, from the JPA store and from memory-mapped
+ * segments holding the same history. Both stores must return the same balances; the speedups are logged,
+ * not asserted, since wall-clock ratios depend on the machine running the build.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class BalanceStoreBenchmarkTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceStoreBenchmarkTests.class);
+
+    private static final int HISTORY_DAYS = 10_000;
+
+    @Autowired
+    private BalanceStore jpaBalanceStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void mappedAndJpaReadTimings() throws Exception {
+        // Arrange: the same history in both stores
+        CreditCard card = createCard();
+        LocalDate start = LocalDate.now().minusDays(HISTORY_DAYS);
+        List<BalanceHistory> histories = new ArrayList<>();
+        int[] epochDays = new int[HISTORY_DAYS];
+        long[] balances = new long[HISTORY_DAYS];
+        for (int i = 0; i < HISTORY_DAYS; i++) {
+            BalanceHistory history = new BalanceHistory();
+            history.setCreditCard(card);
+            history.setDate(start.plusDays(i));
+            history.setBalance(i);
+            histories.add(history);
+            epochDays[i] = BalanceTimeline.toEpochDay(start.plusDays(i));
+            balances[i] = i;
+        }
+        Map<Integer, BalanceTimeline> timelines = Map.of(card.getId(), new BalanceTimeline(epochDays, balances));
+        transactionTemplate.executeWithoutResult(status -> jpaBalanceStore.saveAll(histories, timelines));
+        MappedBalanceStore mappedBalanceStore = new MappedBalanceStore(new BalanceProperties());
+        try {
+            mappedBalanceStore.saveAll(List.of(), timelines);
+            LocalDate end = start.plusDays(HISTORY_DAYS);
+            LocalDate monthFrom = start.plusDays(HISTORY_DAYS / 2);
+            LocalDate monthTo = monthFrom.plusDays(30);
+            assertEquals(jpaBalanceStore.findBalancesBetween(card.getId(), start, end),
+                    mappedBalanceStore.findBalancesBetween(card.getId(), start, end));
+
+            // Act
+            double jpaScan = medianMillis(50, () -> jpaBalanceStore.findBalancesBetween(card.getId(), start, end));
+            double mappedScan = medianMillis(50, () -> mappedBalanceStore.findBalancesBetween(card.getId(), start, end));
+            double jpaMonth = medianMillis(1_000, () -> jpaBalanceStore.findBalancesBetween(card.getId(), monthFrom, monthTo));
+            double mappedMonth = medianMillis(1_000, () -> mappedBalanceStore.findBalancesBetween(card.getId(), monthFrom, monthTo));
+
+            // Assert: the timings are only reported
+            logger.info("{}-day history: full scan jpa {} ms, mapped {} ms ({}x); 31-day range jpa {} ms, mapped {} ms ({}x)",
+                    HISTORY_DAYS, format(jpaScan), format(mappedScan), format(jpaScan / mappedScan),
+                    format(jpaMonth), format(mappedMonth), format(jpaMonth / mappedMonth));
+            assertEquals(jpaBalanceStore.findBalancesBetween(card.getId(), monthFrom, monthTo),
+                    mappedBalanceStore.findBalancesBetween(card.getId(), monthFrom, monthTo));
+        } finally {
+            mappedBalanceStore.close();
+        }
+    }
+
+    private static double medianMillis(int samples, Supplier<?> read) {
+        for (int i = 0; i < samples; i++) {
+            read.get();
+        }
+        long[] nanos = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long begin = System.nanoTime();
+            read.get();
+            nanos[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(nanos);
+        return nanos[samples / 2] / 1e6;
+    }
+
+    private static String format(double value) {
+        return String.format("%.3f", value);
+    }
+}
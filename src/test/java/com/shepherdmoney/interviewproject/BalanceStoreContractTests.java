@@ -0,0 +1,326 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.config.WorkloadProperties;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.job.BalanceHistoryCompactor;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.BalanceExportService;
+import com.shepherdmoney.interviewproject.service.BalanceFileFormat;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.store.BalanceStore;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.workload.WorkloadDataset;
+import com.shepherdmoney.interviewproject.workload.WorkloadGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Balance reads and updates must behave the same whichever BalanceStore holds the histories. Every read is
+ * checked from the cached timeline and again from the store itself.
+ */
+public abstract class BalanceStoreContractTests extends BalanceFixtures {
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceStore balanceStore;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private BalanceExportService balanceExportService;
+
+    @Autowired
+    private BalanceHistoryCompactor balanceHistoryCompactor;
+
+    @Autowired
+    private WorkloadGenerator workloadGenerator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    public void restoreMode() {
+        balanceProperties.getStorage().setMode(BalanceProperties.StorageMode.DENSE);
+    }
+
+    @Test
+    public void pointNearestAndRangeReads() {
+        // Arrange: ten days of history without day 3
+        LocalDate start = LocalDate.now().minusDays(100);
+        CreditCard card = createCard();
+        List<LocalDate> dates = new ArrayList<>();
+        List<Long> balances = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            if (i != 3) {
+                dates.add(start.plusDays(i));
+                balances.add(i * 100L);
+            }
+        }
+        seed(card, dates, balances);
+
+        // Act & Assert
+        assertEquals(new BalanceHistoryView(start.plusDays(2), 200), creditCardService.getBalanceOnDate(card.getNumber(), start.plusDays(2)));
+        BusinessException missing = assertThrows(BusinessException.class,
+                () -> creditCardService.getBalanceOnDate(card.getNumber(), start.plusDays(3)));
+        assertEquals(ResponseEnum.BALANCE_NOT_FOUND.getCode(), missing.getCode());
+        assertEquals(new BalanceHistoryView(start.plusDays(4), 400), creditCardService.getNearestBalance(card.getNumber(), start.plusDays(3)));
+        assertEquals(new BalanceHistoryView(start, 0), creditCardService.getNearestBalance(card.getNumber(), start.minusDays(30)));
+        assertThrows(BusinessException.class, () -> creditCardService.getNearestBalance(card.getNumber(), start.plusDays(10)));
+        assertEquals(List.of(
+                new BalanceHistoryView(start.plusDays(1), 100),
+                new BalanceHistoryView(start.plusDays(2), 200),
+                new BalanceHistoryView(start.plusDays(4), 400),
+                new BalanceHistoryView(start.plusDays(5), 500)
+        ), creditCardService.getBalanceHistory(card.getNumber(), start.plusDays(1), start.plusDays(5)));
+        assertEquals(List.of(), creditCardService.getBalanceHistory(card.getNumber(), start.minusDays(20), start.minusDays(1)));
+        assertEquals(new BalanceHistoryView(start.plusDays(9), 900),
+                balanceStore.findLatestBalanceOnOrBefore(card.getId(), start.plusDays(50)).orElseThrow());
+    }
+
+    @Test
+    public void denseBackdatedUpdateFillsGapsAndShiftsLaterBalances() {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        seed(card, List.of(today.minusDays(10), today.minusDays(5), today.minusDays(1)), List.of(100L, 200L, 300L));
+
+        // Act
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload(card, today.minusDays(7), 150)});
+
+        // Assert
+        List<BalanceHistoryView> expected = new ArrayList<>();
+        for (int daysAgo = 10; daysAgo >= 1; daysAgo--) {
+            long balance = daysAgo > 7 ? 100 : daysAgo > 5 ? 150 : daysAgo > 1 ? 250 : 350;
+            expected.add(new BalanceHistoryView(today.minusDays(daysAgo), balance));
+        }
+        assertHistory(card, today.minusDays(20), today, expected);
+    }
+
+    @Test
+    public void sparseUpdateStoresChangePointsOnly() {
+        // Arrange
+        balanceProperties.getStorage().setMode(BalanceProperties.StorageMode.SPARSE);
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        seed(card, List.of(today.minusDays(10), today.minusDays(2)), List.of(100L, 300L));
+
+        // Act: day 6 carries 100 forward, so it becomes a change point of 250 and day 2 moves up by 150
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload(card, today.minusDays(6), 250)});
+
+        // Assert
+        List<BalanceHistoryView> expected = new ArrayList<>();
+        for (int daysAgo = 10; daysAgo >= 1; daysAgo--) {
+            long balance = daysAgo > 6 ? 100 : daysAgo > 2 ? 250 : 450;
+            expected.add(new BalanceHistoryView(today.minusDays(daysAgo), balance));
+        }
+        assertHistory(card, today.minusDays(10), today, expected);
+        assertEquals(3, balanceStore.findBalancesBetween(card.getId(), today.minusDays(20), today).size());
+    }
+
+    @Test
+    public void failedBatchLeavesStoreUnchanged() {
+        // Arrange: the second card has no history, so the batch is rejected after the first card was planned
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        CreditCard empty = createCard();
+        seed(card, List.of(today.minusDays(3)), List.of(100L));
+
+        // Act
+        BusinessException exception = assertThrows(BusinessException.class, () -> creditCardService.updateBalanceHistory(
+                new UpdateBalancePayload[]{payload(card, today.minusDays(3), 500), payload(empty, today, 1)}));
+
+        // Assert
+        assertEquals(ResponseEnum.PARAM_EXCEPTION.getCode(), exception.getCode());
+        assertEquals(List.of(new BalanceHistoryView(today.minusDays(3), 100)),
+                balanceStore.findBalancesBetween(card.getId(), today.minusDays(10), today));
+        assertTrue(balanceStore.findBalancesBetween(empty.getId(), today.minusDays(10), today).isEmpty());
+    }
+
+    @Test
+    public void carryForwardFillsMissingDaysOnce() {
+        // Arrange: a gap inside the history, a gap up to today and an entry after today
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        CreditCard empty = createCard();
+        seed(card, List.of(today.minusDays(8), today.minusDays(5), today.minusDays(3), today.plusDays(2)),
+                List.of(100L, 200L, 300L, 400L));
+
+        // Act
+        int added = transactionTemplate.execute(status -> balanceStore.carryForward(List.of(card.getId(), empty.getId()), today));
+        int addedAgain = transactionTemplate.execute(status -> balanceStore.carryForward(List.of(card.getId(), empty.getId()), today));
+
+        // Assert: days 7, 6, 4, 2 and 1 are carried, today and tomorrow are left alone
+        assertEquals(5, added);
+        assertEquals(0, addedAgain);
+        List<BalanceHistoryView> expected = new ArrayList<>();
+        for (int daysAgo = 8; daysAgo >= 1; daysAgo--) {
+            long balance = daysAgo > 5 ? 100 : daysAgo > 3 ? 200 : 300;
+            expected.add(new BalanceHistoryView(today.minusDays(daysAgo), balance));
+        }
+        expected.add(new BalanceHistoryView(today.plusDays(2), 400));
+        balanceTimelineCache.invalidate(card.getId());
+        assertHistory(card, today.minusDays(20), today.plusDays(5), expected);
+        assertTrue(balanceStore.findBalancesBetween(empty.getId(), today.minusDays(10), today).isEmpty());
+    }
+
+    @Test
+    public void deleteAllRemovesHistoriesOnCommitOnly() {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        CreditCard deleted = createCard();
+        CreditCard kept = createCard();
+        seed(deleted, List.of(today.minusDays(2), today.minusDays(1)), List.of(100L, 200L));
+        seed(kept, List.of(today.minusDays(1)), List.of(300L));
+
+        // Act: a rolled back deletion, then a committed one
+        transactionTemplate.executeWithoutResult(status -> {
+            balanceStore.deleteAll(List.of(deleted.getId()));
+            status.setRollbackOnly();
+        });
+        int afterRollback = balanceStore.findBalancesBetween(deleted.getId(), today.minusDays(10), today).size();
+        transactionTemplate.executeWithoutResult(status -> balanceStore.deleteAll(List.of(deleted.getId())));
+
+        // Assert
+        assertEquals(2, afterRollback);
+        assertTrue(balanceStore.findBalancesBetween(deleted.getId(), today.minusDays(10), today).isEmpty());
+        assertTrue(balanceStore.findLatestBalanceOnOrBefore(deleted.getId(), today).isEmpty());
+        assertEquals(List.of(new BalanceHistoryView(today.minusDays(1), 300)),
+                balanceStore.findBalancesBetween(kept.getId(), today.minusDays(10), today));
+    }
+
+    @Test
+    public void rolledBackSaveLeavesHistoryUnchanged() {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        seed(card, List.of(today.minusDays(1)), List.of(100L));
+        BalanceHistory added = new BalanceHistory();
+        added.setCreditCard(card);
+        added.setDate(today.minusDays(2));
+        added.setBalance(50);
+        BalanceTimeline timeline = new BalanceTimeline(
+                new int[]{BalanceTimeline.toEpochDay(today.minusDays(2)), BalanceTimeline.toEpochDay(today.minusDays(1))},
+                new long[]{50, 100});
+
+        // Act
+        transactionTemplate.executeWithoutResult(status -> {
+            balanceStore.saveAll(List.of(added), Map.of(card.getId(), timeline));
+            status.setRollbackOnly();
+        });
+
+        // Assert
+        assertEquals(List.of(new BalanceHistoryView(today.minusDays(1), 100)),
+                balanceStore.findBalancesBetween(card.getId(), today.minusDays(10), today));
+    }
+
+    @Test
+    public void exportStreamsStoredEntries() throws Exception {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        seed(card, List.of(today.minusDays(2), today.minusDays(1)), List.of(100L, 250L));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        long rows = balanceExportService.exportBalances(card.getNumber(), null, BalanceFileFormat.CSV, () -> output);
+
+        // Assert
+        assertEquals(2, rows);
+        assertEquals("creditCardNumber,balanceDate,balanceAmount\n"
+                        + card.getNumber() + "," + today.minusDays(2) + ",1.00\n"
+                        + card.getNumber() + "," + today.minusDays(1) + ",2.50\n",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void compactionRemovesRepeatedBalances() {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        seed(card, List.of(today.minusDays(4), today.minusDays(3), today.minusDays(2), today.minusDays(1)),
+                List.of(100L, 100L, 200L, 200L));
+
+        // Act
+        balanceHistoryCompactor.compactAll();
+
+        // Assert
+        assertEquals(List.of(new BalanceHistoryView(today.minusDays(4), 100), new BalanceHistoryView(today.minusDays(2), 200)),
+                balanceStore.findBalancesBetween(card.getId(), today.minusDays(10), today));
+    }
+
+    @Test
+    public void generatedHistoriesAreStoredAndUpdatable() {
+        // Arrange
+        WorkloadProperties.Generate settings = new WorkloadProperties.Generate();
+        settings.setUsers(2);
+        settings.setCardsPerUser(2);
+        settings.setHistoryDays(5);
+        settings.setSeed(3);
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+
+        // Act
+        WorkloadDataset dataset = workloadGenerator.generate(settings);
+        UpdateBalancePayload update = new UpdateBalancePayload();
+        update.setCreditCardNumber(dataset.cardNumber(1));
+        update.setBalanceDate(yesterday);
+        update.setBalanceAmount(42);
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{update});
+
+        // Assert: card 1 has the five generated days, day D ago holding (7919 + D * 104729 + seed) mod 1000000
+        List<BalanceHistoryView> history = balanceStore.findBalancesBetween(dataset.firstCardId(), yesterday.minusDays(10), yesterday);
+        assertEquals(5, history.size());
+        assertEquals(new BalanceHistoryView(yesterday.minusDays(4), (7919 + 5 * 104729L + 3) % 1_000_000), history.get(0));
+        assertEquals(new BalanceHistoryView(yesterday, 42), history.get(4));
+    }
+
+    private void assertHistory(CreditCard card, LocalDate from, LocalDate to, List<BalanceHistoryView> expected) {
+        assertEquals(expected, creditCardService.getBalanceHistory(card.getNumber(), from, to));
+        balanceTimelineCache.invalidate(card.getId());
+        assertEquals(expected, creditCardService.getBalanceHistory(card.getNumber(), from, to));
+        for (BalanceHistoryView entry : expected) {
+            assertEquals(entry, creditCardService.getBalanceOnDate(card.getNumber(), entry.getDate()));
+        }
+    }
+
+    private void seed(CreditCard card, List<LocalDate> dates, List<Long> balances) {
+        List<BalanceHistory> histories = new ArrayList<>();
+        int[] epochDays = new int[dates.size()];
+        long[] amounts = new long[dates.size()];
+        for (int i = 0; i < dates.size(); i++) {
+            BalanceHistory history = new BalanceHistory();
+            history.setCreditCard(card);
+            history.setDate(dates.get(i));
+            history.setBalance(balances.get(i));
+            histories.add(history);
+            epochDays[i] = BalanceTimeline.toEpochDay(dates.get(i));
+            amounts[i] = balances.get(i);
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                balanceStore.saveAll(histories, Map.of(card.getId(), new BalanceTimeline(epochDays, amounts))));
+    }
+}
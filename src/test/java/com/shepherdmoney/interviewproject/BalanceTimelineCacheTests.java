@@ -0,0 +1,59 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BalanceTimelineCacheTests {
+
+    // Entries on days 10, 11, 12, 13 and 16, like the 04-10 .. 04-16 example of the CreditCard model
+    private final BalanceTimeline timeline = new BalanceTimeline(
+            new int[]{10, 11, 12, 13, 16},
+            new long[]{800, 1000, 1200, 1100, 900});
+
+    @Test
+    public void pointLookup() {
+        assertEquals(2, timeline.indexOf(12));
+        assertEquals(1200, timeline.balanceAt(timeline.indexOf(12)));
+        assertEquals(-1, timeline.indexOf(15));
+    }
+
+    @Test
+    public void closestDateLookup() {
+        // Given 4-15, the entry on or after it is 4-16 and the one on or before it is 4-13
+        assertEquals(16, timeline.epochDayAt(timeline.ceilingIndex(15)));
+        assertEquals(13, timeline.epochDayAt(timeline.floorIndex(15)));
+        assertEquals(-1, timeline.floorIndex(9));
+        assertEquals(-1, timeline.ceilingIndex(17));
+        assertEquals(0, timeline.ceilingIndex(1));
+    }
+
+    @Test
+    public void rangeTraversal() {
+        List<Long> balances = new ArrayList<>();
+        timeline.forEachInRange(11, 15, (epochDay, balance) -> balances.add(balance));
+        assertEquals(List.of(1000L, 1200L, 1100L), balances);
+    }
+
+    @Test
+    public void cacheEvictsLeastRecentlyUsedCard() {
+        BalanceProperties properties = new BalanceProperties();
+        properties.getCache().setMaxCards(2);
+        BalanceTimelineCache cache = new BalanceTimelineCache(properties);
+
+        cache.put(1, timeline);
+        cache.put(2, timeline);
+        cache.get(1);
+        cache.put(3, timeline);
+
+        assertSame(timeline, cache.get(1));
+        assertNull(cache.get(2));
+        assertSame(timeline, cache.get(3));
+    }
+}
@@ -0,0 +1,154 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that a batch folded per card gives exactly the result of applying its payloads one by one,
+ * and reports how throughput behaves against batch size.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class BalanceUpdateBatchTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceUpdateBatchTests.class);
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Test
+    public void updateBalanceHistory_MatchesSequentialSemantics() {
+        Random random = new Random(42);
+        LocalDate today = LocalDate.now();
+        for (int round = 0; round < 20; round++) {
+            // Arrange: a few cards with sparse histories and a mixed batch of same-day, backdated and new dates
+            List<CreditCard> cards = new ArrayList<>();
+            Map<String, TreeMap<LocalDate, Long>> expected = new TreeMap<>();
+            for (int i = 0; i < 3; i++) {
+                CreditCard card = createCard();
+                TreeMap<LocalDate, Long> model = new TreeMap<>();
+                for (int j = 0; j < 4; j++) {
+                    LocalDate date = today.minusDays(random.nextInt(60));
+                    if (!model.containsKey(date)) {
+                        long balance = random.nextInt(1000);
+                        model.put(date, balance);
+                        saveHistory(card, date, balance);
+                    }
+                }
+                cards.add(card);
+                expected.put(card.getNumber(), model);
+            }
+            UpdateBalancePayload[] payloads = new UpdateBalancePayload[30];
+            for (int i = 0; i < payloads.length; i++) {
+                CreditCard card = cards.get(random.nextInt(cards.size()));
+                payloads[i] = payload(card, today.minusDays(random.nextInt(75) - 3), random.nextInt(1000));
+            }
+
+            // Act
+            creditCardService.updateBalanceHistory(payloads);
+
+            // Assert
+            for (UpdateBalancePayload payload : payloads) {
+                applySequentially(expected.get(payload.getCreditCardNumber()), payload, today);
+            }
+            for (CreditCard card : cards) {
+                assertEquals(toViews(expected.get(card.getNumber())),
+                        balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card));
+            }
+        }
+    }
+
+    @Test
+    public void updateBalanceHistory_UnknownCardRejectsWholeBatch() {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        saveHistory(card, today.minusDays(1), 100);
+        UpdateBalancePayload unknown = new UpdateBalancePayload();
+        unknown.setCreditCardNumber("unknown-" + UUID.randomUUID());
+        unknown.setBalanceDate(today);
+
+        // Act & Assert
+        assertThrows(BusinessException.class, () -> creditCardService.updateBalanceHistory(
+                new UpdateBalancePayload[]{payload(card, today.minusDays(1), 500), unknown}));
+        assertEquals(List.of(new BalanceHistoryView(today.minusDays(1), 100)),
+                balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100, 500})
+    public void updateBalanceHistory_ThroughputAgainstBatchSize(int batchSize) {
+        // Arrange: one card with a year of history, every payload backdated into it
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        saveHistory(card, today.minusDays(365), 100);
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload(card, today.minusDays(365), 100)});
+        Random random = new Random(batchSize);
+        UpdateBalancePayload[] payloads = new UpdateBalancePayload[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            payloads[i] = payload(card, today.minusDays(1 + random.nextInt(364)), random.nextInt(1000));
+        }
+
+        // Act
+        long start = System.nanoTime();
+        creditCardService.updateBalanceHistory(payloads);
+        double elapsedMillis = (System.nanoTime() - start) / 1e6;
+
+        // Assert
+        logger.info("batch of {} payloads on one card: {} ms, {} payloads/s",
+                batchSize, String.format("%.1f", elapsedMillis), String.format("%.0f", batchSize * 1000 / elapsedMillis));
+        assertEquals(365, balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card).size());
+    }
+
+    /**
+     * Reference implementation of a single payload: fill gaps up to yesterday, then set the payload date
+     * and shift every later balance by the difference.
+     */
+    private static void applySequentially(TreeMap<LocalDate, Long> model, UpdateBalancePayload payload, LocalDate today) {
+        for (LocalDate date = model.firstKey().plusDays(1); date.isBefore(today); date = date.plusDays(1)) {
+            if (!model.containsKey(date)) {
+                model.put(date, model.floorEntry(date).getValue());
+            }
+        }
+        LocalDate date = payload.getBalanceDate();
+        long amount = payload.getBalanceAmount();
+        if (!model.containsKey(date)) {
+            model.put(date, amount);
+            return;
+        }
+        long difference = amount - model.get(date);
+        if (difference != 0) {
+            model.put(date, amount);
+            model.tailMap(date, false).replaceAll((key, balance) -> balance + difference);
+        }
+    }
+
+    private static List<BalanceHistoryView> toViews(TreeMap<LocalDate, Long> model) {
+        List<BalanceHistoryView> views = new ArrayList<>();
+        model.forEach((date, balance) -> views.add(new BalanceHistoryView(date, balance)));
+        return views;
+    }
+}
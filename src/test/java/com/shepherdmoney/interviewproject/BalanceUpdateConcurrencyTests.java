@@ -0,0 +1,221 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.model.BalanceHistory;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent update-balance batches from 1 to 8 threads. Every batch mixes cards owned by its thread with
+ * hot cards shared by all threads, in random order, so multi-card batches overlap all the time.
+ * Invariants checked afterwards:
+ * - the cards of each thread end up exactly like a sequential replay of that thread's payloads
+ * - hot cards only get payloads on their earliest date, which shifts every later day by the same
+ * difference, so each day keeps its offset to the earliest day whatever the interleaving
+ * - hot card histories have no gaps and the cached timelines agree with the database
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class BalanceUpdateConcurrencyTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceUpdateConcurrencyTests.class);
+
+    private static final int HOT_CARDS = 4;
+
+    private static final int CARDS_PER_THREAD = 3;
+
+    private static final int BATCHES_PER_THREAD = 25;
+
+    private static final int HISTORY_DAYS = 60;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Test
+    public void concurrentBatches_KeepHistoryInvariants() throws Exception {
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            runRound(threads);
+        }
+    }
+
+    private void runRound(int threads) throws Exception {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        LocalDate earliest = today.minusDays(HISTORY_DAYS);
+        Random random = new Random(threads);
+        List<CreditCard> hotCards = new ArrayList<>();
+        Map<Integer, List<BalanceHistoryView>> hotSeeds = new HashMap<>();
+        for (int i = 0; i < HOT_CARDS; i++) {
+            CreditCard card = createCard();
+            hotSeeds.put(card.getId(), seedDenseHistory(card, earliest, random));
+            hotCards.add(card);
+        }
+        List<List<CreditCard>> ownCards = new ArrayList<>();
+        List<List<CreditCard>> referenceCards = new ArrayList<>();
+        List<List<UpdateBalancePayload[]>> batches = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            List<CreditCard> own = new ArrayList<>();
+            List<CreditCard> reference = new ArrayList<>();
+            for (int i = 0; i < CARDS_PER_THREAD; i++) {
+                CreditCard ownCard = createCard();
+                CreditCard referenceCard = createCard();
+                LocalDate date = today.minusDays(20 + random.nextInt(20));
+                long balance = random.nextInt(1000);
+                saveHistory(ownCard, date, balance);
+                saveHistory(referenceCard, date, balance);
+                own.add(ownCard);
+                reference.add(referenceCard);
+            }
+            ownCards.add(own);
+            referenceCards.add(reference);
+            batches.add(generateBatches(own, hotCards, earliest, random));
+        }
+
+        // Act: all threads start together
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<UpdateBalancePayload[]> threadBatches : batches) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (UpdateBalancePayload[] batch : threadBatches) {
+                    creditCardService.updateBalanceHistory(batch);
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            // A deadlock shows up as a timeout here
+            future.get(120, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+        int payloads = batches.stream().flatMap(List::stream).mapToInt(batch -> batch.length).sum();
+        logger.info("{} threads: {} batches, {} payloads in {} s, {} payloads/s", threads, threads * BATCHES_PER_THREAD,
+                payloads, String.format("%.3f", seconds), String.format("%.0f", payloads / seconds));
+
+        // Assert: own cards against a sequential replay on the reference cards
+        for (int thread = 0; thread < threads; thread++) {
+            List<CreditCard> own = ownCards.get(thread);
+            List<CreditCard> reference = referenceCards.get(thread);
+            for (UpdateBalancePayload[] batch : batches.get(thread)) {
+                List<UpdateBalancePayload> replay = new ArrayList<>();
+                for (UpdateBalancePayload payload : batch) {
+                    int index = indexOfNumber(own, payload.getCreditCardNumber());
+                    if (index >= 0) {
+                        replay.add(payload(reference.get(index), payload.getBalanceDate(), payload.getBalanceAmount()));
+                    }
+                }
+                creditCardService.updateBalanceHistory(replay.toArray(new UpdateBalancePayload[0]));
+            }
+            for (int i = 0; i < CARDS_PER_THREAD; i++) {
+                assertEquals(fullHistory(reference.get(i)), fullHistory(own.get(i)));
+            }
+        }
+
+        // Hot cards: every day keeps its offset to the earliest day, without gaps, in the cache and in the database
+        for (CreditCard hotCard : hotCards) {
+            List<BalanceHistoryView> seed = hotSeeds.get(hotCard.getId());
+            List<BalanceHistoryView> cached = fullHistory(hotCard);
+            balanceTimelineCache.invalidate(hotCard.getId());
+            List<BalanceHistoryView> stored = fullHistory(hotCard);
+            assertEquals(stored, cached);
+            assertEquals(seed.size(), stored.size());
+            for (int day = 0; day < seed.size(); day++) {
+                assertEquals(seed.get(day).getDate(), stored.get(day).getDate());
+                assertEquals(seed.get(day).getBalance() - seed.get(0).getBalance(),
+                        stored.get(day).getBalance() - stored.get(0).getBalance(), 1e-6);
+            }
+        }
+    }
+
+    private List<UpdateBalancePayload[]> generateBatches(List<CreditCard> own, List<CreditCard> hotCards,
+                                                         LocalDate earliest, Random random) {
+        LocalDate today = LocalDate.now();
+        List<UpdateBalancePayload[]> batches = new ArrayList<>();
+        for (int b = 0; b < BATCHES_PER_THREAD; b++) {
+            List<UpdateBalancePayload> batch = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                CreditCard card = own.get(random.nextInt(own.size()));
+                batch.add(payload(card, today.minusDays(random.nextInt(50) - 3), random.nextInt(1000)));
+            }
+            for (int i = 0; i < 2; i++) {
+                CreditCard card = hotCards.get(random.nextInt(hotCards.size()));
+                batch.add(payload(card, earliest, random.nextInt(1000)));
+            }
+            Collections.shuffle(batch, random);
+            batches.add(batch.toArray(new UpdateBalancePayload[0]));
+        }
+        return batches;
+    }
+
+    private List<BalanceHistoryView> seedDenseHistory(CreditCard card, LocalDate earliest, Random random) {
+        List<BalanceHistoryView> seed = new ArrayList<>();
+        for (LocalDate date = earliest; date.isBefore(LocalDate.now()); date = date.plusDays(1)) {
+            seed.add(new BalanceHistoryView(date, random.nextInt(1000)));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            CreditCard reference = entityManager.getReference(CreditCard.class, card.getId());
+            for (BalanceHistoryView view : seed) {
+                BalanceHistory history = new BalanceHistory();
+                history.setCreditCard(reference);
+                history.setDate(view.getDate());
+                history.setBalance(view.getBalance());
+                entityManager.persist(history);
+            }
+        });
+        return seed;
+    }
+
+    private static int indexOfNumber(List<CreditCard> cards, String number) {
+        for (int i = 0; i < cards.size(); i++) {
+            if (cards.get(i).getNumber().equals(number)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<BalanceHistoryView> fullHistory(CreditCard card) {
+        LocalDate today = LocalDate.now();
+        return creditCardService.getBalanceHistory(card.getNumber(), today.minusDays(100), today.plusDays(10));
+    }
+}
@@ -0,0 +1,224 @@
+package com.shepherdmoney.interviewproject;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
+import com.shepherdmoney.interviewproject.vo.request.CreateUserPayload;
+import com.shepherdmoney.interviewproject.vo.response.BulkCreateResultView;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bulk creation of users and credit cards: results come back in input order with the generated ids, payloads
+ * that cannot be created are reported one by one without failing the others, streamed input is committed
+ * chunk by chunk, and a batched bulk create is compared with creating the same cards one request at a time.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulkcreate;DB_CLOSE_DELAY=-1",
+        "balance.bulk-import.chunk-size=3"
+})
+@AutoConfigureMockMvc
+public class BulkCreationTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkCreationTests.class);
+
+    private static final int BENCHMARK_CARDS = 2_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Test
+    public void bulkUsersReturnIdsInInputOrder() throws Exception {
+        // Arrange
+        List<CreateUserPayload> payloads = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            payloads.add(userPayload("bulk " + i));
+        }
+
+        // Act
+        String response = mockMvc.perform(put("/user:bulk").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payloads)))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        List<Integer> ids = objectMapper.readValue(response, new TypeReference<>() {
+        });
+
+        // Assert
+        assertEquals(payloads.size(), ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals("bulk " + i, userRepository.findById(ids.get(i)).orElseThrow().getName());
+        }
+    }
+
+    @Test
+    public void bulkCardsReportEachRejectedPayload() throws Exception {
+        // Arrange: two users, a number that is already taken, and a number repeated within the request
+        int first = createUser().getId();
+        int second = createUser().getId();
+        String taken = UUID.randomUUID().toString();
+        creditCardService.createCardForUser(cardPayload(first, taken));
+        String repeated = UUID.randomUUID().toString();
+        List<AddCreditCardToUserPayload> payloads = List.of(
+                cardPayload(first, UUID.randomUUID().toString()),
+                cardPayload(-1, UUID.randomUUID().toString()),
+                cardPayload(second, taken),
+                cardPayload(second, repeated),
+                cardPayload(first, repeated),
+                cardPayload(first, null),
+                cardPayload(second, UUID.randomUUID().toString()));
+
+        // Act
+        String response = mockMvc.perform(post("/credit-card:bulk").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(payloads)))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        List<BulkCreateResultView> results = objectMapper.readValue(response, new TypeReference<>() {
+        });
+
+        // Assert
+        assertEquals(payloads.size(), results.size());
+        Integer[] expectedStatus = {null, ResponseEnum.USER_NOT_FOUND.getCode(), ResponseEnum.DUPLICATE_CARD_NUMBER.getCode(),
+                null, ResponseEnum.DUPLICATE_CARD_NUMBER.getCode(), ResponseEnum.PARAM_EXCEPTION.getCode(), null};
+        for (int i = 0; i < results.size(); i++) {
+            BulkCreateResultView result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals(expectedStatus[i], result.getStatus());
+            if (expectedStatus[i] == null) {
+                CreditCard card = creditCardRepository.findById(result.getId()).orElseThrow();
+                assertEquals(payloads.get(i).getCardNumber(), card.getNumber());
+                assertEquals(payloads.get(i).getUserId(), card.getUser().getId());
+            } else {
+                assertNull(result.getId());
+                assertNotNull(result.getError());
+            }
+        }
+        assertEquals(second, creditCardService.getUserByCreditCardNumber(repeated));
+        assertEquals(first, creditCardService.getUserByCreditCardNumber(taken));
+    }
+
+    @Test
+    public void streamedCardsAreCreatedChunkByChunk() throws Exception {
+        // Arrange: 8 lines over chunks of 3, with a blank and a malformed line in between
+        int userId = createUser().getId();
+        List<String> numbers = new ArrayList<>();
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            if (i == 2) {
+                ndjson.append('\n');
+            } else if (i == 5) {
+                ndjson.append("{\"userId\":").append('\n');
+            } else {
+                String number = UUID.randomUUID().toString();
+                numbers.add(number);
+                ndjson.append(objectMapper.writeValueAsString(cardPayload(i == 6 ? -1 : userId, number))).append('\n');
+            }
+        }
+
+        // Act
+        String response = mockMvc.perform(post("/credit-card:bulk").contentType("application/x-ndjson").content(ndjson.toString()))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        List<BulkCreateResultView> results = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            results.add(objectMapper.readValue(line, BulkCreateResultView.class));
+        }
+
+        // Assert: every non-blank line in input order, line 5 malformed and line 6 of an unknown user
+        assertEquals(List.of(0L, 1L, 3L, 4L, 5L, 6L, 7L), results.stream().map(BulkCreateResultView::getIndex).toList());
+        assertEquals(ResponseEnum.PARAM_EXCEPTION.getCode(), results.get(4).getStatus());
+        assertEquals(ResponseEnum.USER_NOT_FOUND.getCode(), results.get(5).getStatus());
+        assertEquals(5, results.stream().filter(result -> result.getId() != null).count());
+        assertEquals(5, creditCardRepository.findByUserId(userId).size());
+    }
+
+    @Test
+    public void streamedUsersReturnIdsInInputOrder() throws Exception {
+        // Arrange
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            ndjson.append(objectMapper.writeValueAsString(userPayload("streamed " + i))).append('\n');
+        }
+
+        // Act
+        String response = mockMvc.perform(put("/user:bulk").contentType("application/x-ndjson").content(ndjson.toString()))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        // Assert
+        String[] lines = response.split("\n");
+        assertEquals(5, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            BulkCreateResultView result = objectMapper.readValue(lines[i], BulkCreateResultView.class);
+            assertEquals(i, result.getIndex());
+            assertEquals("streamed " + i, userRepository.findById(result.getId()).orElseThrow().getName());
+        }
+    }
+
+    @Test
+    public void bulkCreateBeatsOneRequestPerCard() {
+        // Arrange: the same number of cards for two users, one created in bulk and one card at a time
+        int bulkUser = createUser().getId();
+        int singleUser = createUser().getId();
+        List<AddCreditCardToUserPayload> bulk = new ArrayList<>();
+        List<AddCreditCardToUserPayload> single = new ArrayList<>();
+        for (int i = 0; i < BENCHMARK_CARDS; i++) {
+            bulk.add(cardPayload(bulkUser, UUID.randomUUID().toString()));
+            single.add(cardPayload(singleUser, UUID.randomUUID().toString()));
+        }
+
+        // Act
+        long start = System.nanoTime();
+        List<BulkCreateResultView> results = creditCardService.createCardsForUsers(bulk);
+        double bulkMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        for (AddCreditCardToUserPayload payload : single) {
+            creditCardService.createCardForUser(payload);
+        }
+        double singleMillis = (System.nanoTime() - start) / 1e6;
+
+        // Assert
+        logger.info("creating {} cards: bulk {} ms, one at a time {} ms",
+                BENCHMARK_CARDS, String.format("%.1f", bulkMillis), String.format("%.1f", singleMillis));
+        assertTrue(results.stream().allMatch(result -> result.getId() != null));
+        assertEquals(BENCHMARK_CARDS, creditCardRepository.findByUserId(bulkUser).size());
+        assertTrue(bulkMillis * 3 < singleMillis, "bulk creation must be at least three times as fast");
+    }
+
+    private static CreateUserPayload userPayload(String name) {
+        CreateUserPayload payload = new CreateUserPayload();
+        payload.setName(name);
+        payload.setEmail("bulk@example.com");
+        return payload;
+    }
+
+    private static AddCreditCardToUserPayload cardPayload(int userId, String number) {
+        AddCreditCardToUserPayload payload = new AddCreditCardToUserPayload();
+        payload.setUserId(userId);
+        payload.setCardIssuanceBank("Bulk Bank");
+        payload.setCardNumber(number);
+        return payload;
+    }
+}
@@ -0,0 +1,152 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.job.CardNumberFilterLoader;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Card number lookups go through uk_credit_card_number, so their latency must not grow with the number of
+ * cards, and unknown numbers are rejected by the Bloom filter without a query. Seeds 10k, 100k and 1M cards by default; run with -Dbenchmark.cards=10000000 for the 10M point.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class CardLookupBenchmarkTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(CardLookupBenchmarkTests.class);
+
+    private static final long MAX_CARDS = Long.getLong("benchmark.cards", 1_000_000);
+
+    private static final int SEED_CHUNK = 1_000_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private CardNumberFilterLoader cardNumberFilterLoader;
+
+    @AfterEach
+    public void removeSeededCards() {
+        // Seeded cards use negative ids, which the id sequence never hands out. Deleted in chunks, so the undo
+        // log of one statement never holds the whole table and its indexes
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM credit_card WHERE id < 0 FETCH FIRST 100000 ROWS ONLY");
+        } while (deleted > 0);
+    }
+
+    @Test
+    public void lookupLatency_FlatFrom10kCards() {
+        User user = createUser();
+        Random random = new Random(3);
+        long seeded = 0;
+        double firstP99 = 0;
+        for (long cards = 10_000; cards <= MAX_CARDS; cards *= 10) {
+            // Arrange: grow the table to the next size
+            seed(seeded + 1, cards, user.getId());
+            cardNumberFilterLoader.reload();
+            seeded = cards;
+            long size = cards;
+
+            // Act
+            double hitP99 = p99Millis(() -> {
+                String number = "bench-" + (1 + (long) (random.nextDouble() * size));
+                assertEquals(user.getId(), creditCardService.getUserByCreditCardNumber(number));
+            });
+            double missP99 = p99Millis(() -> assertThrows(BusinessException.class,
+                    () -> creditCardService.getUserByCreditCardNumber("missing-" + random.nextInt())));
+
+            // Assert
+            logger.info("{} cards: card-to-user lookup p99 {} ms, unknown card p99 {} ms",
+                    cards, String.format("%.3f", hitP99), String.format("%.3f", missP99));
+            if (firstP99 == 0) {
+                firstP99 = hitP99;
+            } else {
+                assertTrue(hitP99 < 3 * firstP99 + 1, cards + " cards: p99 " + hitP99 + " ms against " + firstP99 + " ms at 10k");
+            }
+        }
+    }
+
+    @Test
+    public void unknownCard_RejectedWithoutQuery() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber("never-created-" + UUID.randomUUID());
+        payload.setBalanceAmount(1);
+        statistics.clear();
+        long rejections = creditCardService.getCardLookupStats().getBloomRejections();
+
+        for (int i = 0; i < 100; i++) {
+            String number = "never-created-" + UUID.randomUUID();
+            BusinessException exception = assertThrows(BusinessException.class, () -> creditCardService.getUserByCreditCardNumber(number));
+            assertEquals(404, exception.getCode());
+        }
+        assertThrows(BusinessException.class, () -> creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{payload}));
+
+        // A few numbers may be false positives of the filter, each costing one query
+        assertTrue(statistics.getPrepareStatementCount() < 10, statistics.getPrepareStatementCount() + " statements");
+        assertTrue(creditCardService.getCardLookupStats().getBloomRejections() - rejections > 90);
+    }
+
+    @Test
+    public void createCard_RejectsDuplicateNumber() {
+        User user = createUser();
+        AddCreditCardToUserPayload payload = new AddCreditCardToUserPayload();
+        payload.setUserId(user.getId());
+        payload.setCardIssuanceBank("Test Bank");
+        payload.setCardNumber(UUID.randomUUID().toString());
+        creditCardService.createCardForUser(payload);
+
+        BusinessException exception = assertThrows(BusinessException.class, () -> creditCardService.createCardForUser(payload));
+        assertEquals(409, exception.getCode());
+        assertEquals(user.getId(), creditCardService.getUserByCreditCardNumber(payload.getCardNumber()));
+    }
+
+    private void seed(long from, long to, int userId) {
+        for (long chunkStart = from; chunkStart <= to; chunkStart += SEED_CHUNK) {
+            long chunkEnd = Math.min(chunkStart + SEED_CHUNK - 1, to);
+            jdbcTemplate.update("INSERT INTO credit_card (id, issuance_bank, number, user_id) " +
+                    "SELECT -X, 'Benchmark Bank', CONCAT('bench-', X), ? FROM SYSTEM_RANGE(?, ?)", userId, chunkStart, chunkEnd);
+        }
+    }
+
+    private static double p99Millis(Runnable lookup) {
+        for (int i = 0; i < 500; i++) {
+            lookup.run();
+        }
+        long[] samples = new long[2_000];
+        for (int i = 0; i < samples.length; i++) {
+            long begin = System.nanoTime();
+            lookup.run();
+            samples[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(samples);
+        return samples[(int) (samples.length * 0.99) - 1] / 1e6;
+    }
+}
@@ -0,0 +1,126 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
+import com.shepherdmoney.interviewproject.cache.CardNumberBloomFilter;
+import com.shepherdmoney.interviewproject.config.CardLookupProperties;
+import com.shepherdmoney.interviewproject.vo.response.CardLookupStatsView;
+import com.shepherdmoney.interviewproject.vo.response.CardOwnerView;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CardLookupCacheTests {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Map<String, CardOwnerView> database = Map.of(
+            "1111", new CardOwnerView(1, 10),
+            "2222", new CardOwnerView(2, 10),
+            "3333", new CardOwnerView(3, 20));
+
+    private final Function<String, Optional<CardOwnerView>> loader = number -> {
+        loads.incrementAndGet();
+        return Optional.ofNullable(database.get(number));
+    };
+
+    @Test
+    public void bloomFilter_NeverRejectsAddedNumbers() {
+        CardNumberBloomFilter filter = new CardNumberBloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add("card-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("card-" + i));
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives out of 100000");
+    }
+
+    @Test
+    public void find_CachesFoundAndUnknownNumbers() {
+        CardLookupCache cache = new CardLookupCache(new CardLookupProperties());
+
+        assertEquals(Optional.of(database.get("1111")), cache.find("1111", loader));
+        assertEquals(Optional.of(database.get("1111")), cache.find("1111", loader));
+        assertEquals(Optional.empty(), cache.find("9999", loader));
+        assertEquals(Optional.empty(), cache.find("9999", loader));
+
+        assertEquals(2, loads.get());
+        assertEquals(new CardLookupStatsView(2, 2, 0, 0, 2), cache.stats());
+    }
+
+    @Test
+    public void find_RejectsNumbersOutsideTheBloomFilter() {
+        CardLookupCache cache = new CardLookupCache(new CardLookupProperties());
+        CardNumberBloomFilter filter = new CardNumberBloomFilter(1_000, 0.01);
+        cache.beginFilterLoad(filter);
+        database.keySet().forEach(filter::add);
+        cache.completeFilterLoad();
+
+        assertEquals(Optional.empty(), cache.find("9999", loader));
+        assertEquals(Optional.of(database.get("2222")), cache.find("2222", loader));
+        cache.cardCreated("4444");
+
+        assertEquals(1, loads.get());
+        assertTrue(cache.mightExist("4444"));
+        assertEquals(1, cache.stats().getBloomRejections());
+    }
+
+    @Test
+    public void entries_ExpireAndAreInvalidated() throws InterruptedException {
+        CardLookupProperties properties = new CardLookupProperties();
+        properties.setTtl(Duration.ofMillis(50));
+        CardLookupCache cache = new CardLookupCache(properties);
+        cache.find("1111", loader);
+        cache.find("3333", loader);
+
+        Thread.sleep(100);
+        cache.find("1111", loader);
+        cache.invalidateUser(20);
+        cache.find("3333", loader);
+
+        assertEquals(4, loads.get());
+        assertEquals(0, cache.stats().getHits());
+    }
+
+    @Test
+    public void find_DoesNotCacheLoadOverlappingAnInvalidation() {
+        CardLookupCache cache = new CardLookupCache(new CardLookupProperties());
+
+        // The card is created, and its creation invalidated, while its "not found" is being read
+        assertEquals(Optional.empty(), cache.find("4444", number -> {
+            cache.cardCreated(number);
+            return Optional.empty();
+        }));
+        assertEquals(Optional.of(new CardOwnerView(4, 30)), cache.find("4444", number -> Optional.of(new CardOwnerView(4, 30))));
+
+        assertEquals(0, cache.stats().getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void cache_EvictsLeastRecentlyUsedNumber() {
+        CardLookupProperties properties = new CardLookupProperties();
+        properties.setMaxEntries(2);
+        CardLookupCache cache = new CardLookupCache(properties);
+
+        cache.find("1111", loader);
+        cache.find("2222", loader);
+        cache.find("1111", loader);
+        cache.find("3333", loader);
+        cache.find("2222", loader);
+
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,56 @@
+package com.shepherdmoney.interviewproject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.shepherdmoney.interviewproject.cache.BalanceDeltaIndex;
+import com.shepherdmoney.interviewproject.money.Cents;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CentsTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    public void payloadAmountsAreReadExactly() throws Exception {
+        assertEquals(10, readAmount("0.1"));
+        assertEquals(15_000, readAmount("150"));
+        assertEquals(123_457, readAmount("1234.567"));
+        assertEquals(-250, readAmount("\"-2.50\""));
+        assertEquals(10_000, readAmount("1e2"));
+        assertThrows(InvalidFormatException.class, () -> readAmount("1e30"));
+    }
+
+    @Test
+    public void balancesAreWrittenWithTwoDecimals() throws Exception {
+        String json = objectMapper.writeValueAsString(new BalanceHistoryView(LocalDate.of(2023, 4, 12), 123_450));
+
+        assertTrue(json.contains("\"balance\":1234.50"), json);
+        assertEquals(123_450, objectMapper.readValue(json, BalanceHistoryView.class).getBalance());
+    }
+
+    @Test
+    public void deltaSumsStayExact() {
+        // Ten thousand corrections of 0.10 sum to exactly 1000.00, where doubles drift
+        BalanceDeltaIndex index = new BalanceDeltaIndex();
+        double drifting = 0;
+        for (int day = 0; day < 10_000; day++) {
+            index.add(day, Cents.parse("0.10"));
+            drifting += 0.1;
+        }
+
+        assertEquals(100_000, index.sumBefore(10_000));
+        assertEquals("1000.00", Cents.format(index.sumBefore(10_000)));
+        assertNotEquals(1000.0, drifting);
+    }
+
+    private long readAmount(String json) throws Exception {
+        return objectMapper.readValue("{\"creditCardNumber\":\"1234\",\"balanceDate\":\"2023-04-12\",\"balanceAmount\":" + json + "}",
+                UpdateBalancePayload.class).getBalanceAmount();
+    }
+}
@@ -4,10 +4,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shepherdmoney.interviewproject.controller.CreditCardController;
 import com.shepherdmoney.interviewproject.exception.BusinessException;
 import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.BalanceExportService;
+import com.shepherdmoney.interviewproject.service.BalanceIngestionService;
 import com.shepherdmoney.interviewproject.service.CreditCardService;
 import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
 import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import com.shepherdmoney.interviewproject.vo.response.CardLookupStatsView;
 import com.shepherdmoney.interviewproject.vo.response.CreditCardView;
+import com.shepherdmoney.interviewproject.vo.response.IngestTicketView;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -19,10 +24,15 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -38,6 +48,9 @@ public class CreditCardControllerTests {
     @Mock
     private CreditCardService creditCardService;
 
+    @Mock
+    private BalanceIngestionService balanceIngestionService;
+
     @InjectMocks
     private CreditCardController creditCardController;
 
@@ -82,8 +95,8 @@ public class CreditCardControllerTests {
         // Arrange
         int userId = 1;
         List<CreditCardView> creditCardViews = new ArrayList<>();
-        creditCardViews.add(new CreditCardView("Bank of America", "123"));
-        given(creditCardService.getCreditCardsByUserId(userId)).willReturn(creditCardViews);
+        creditCardViews.add(new CreditCardView("Bank of America", "123", 1));
+        givenCardsWritten(userId, creditCardViews);
 
         // Act & Assert
         mockMvc.perform(get("/credit-card:all")
@@ -96,7 +109,7 @@ public class CreditCardControllerTests {
     public void getAllCardOfUser_NoCards() throws Exception {
         // Arrange
         int userId = 1;
-        given(creditCardService.getCreditCardsByUserId(userId)).willReturn(new ArrayList<>());
+        givenCardsWritten(userId, new ArrayList<>());
 
         // Act & Assert
         mockMvc.perform(get("/credit-card:all")
@@ -164,6 +177,110 @@ public class CreditCardControllerTests {
                 .andExpect(status().isBadRequest());
     }
 
+    // Test cases for balance reads
+
+    @Test
+    public void getBalanceOnDate_Successful() throws Exception {
+        // Arrange
+        String cardNumber = "1234";
+        LocalDate date = LocalDate.of(2023, 4, 12);
+        given(creditCardService.getBalanceOnDate(cardNumber, date)).willReturn(new BalanceHistoryView(date, 120_000));
+
+        // Act & Assert
+        mockMvc.perform(get("/credit-card:balance")
+                        .param("creditCardNumber", cardNumber)
+                        .param("date", "2023-04-12"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(1200.0));
+    }
+
+    @Test
+    public void getNearestBalance_Successful() throws Exception {
+        // Arrange: given 4-15, the entry of 4-16 is returned
+        String cardNumber = "1234";
+        given(creditCardService.getNearestBalance(cardNumber, LocalDate.of(2023, 4, 15)))
+                .willReturn(new BalanceHistoryView(LocalDate.of(2023, 4, 16), 90_000));
+
+        // Act & Assert
+        mockMvc.perform(get("/credit-card:balance-nearest")
+                        .param("creditCardNumber", cardNumber)
+                        .param("date", "2023-04-15"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(900.0));
+    }
+
+    @Test
+    public void getBalanceHistory_Successful() throws Exception {
+        // Arrange
+        String cardNumber = "1234";
+        LocalDate from = LocalDate.of(2023, 4, 10);
+        LocalDate to = LocalDate.of(2023, 4, 11);
+        given(creditCardService.getBalanceHistory(cardNumber, from, to)).willReturn(List.of(
+                new BalanceHistoryView(from, 80_000), new BalanceHistoryView(to, 100_000)));
+
+        // Act & Assert
+        mockMvc.perform(get("/credit-card:balance-history")
+                        .param("creditCardNumber", cardNumber)
+                        .param("from", "2023-04-10")
+                        .param("to", "2023-04-11"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].balance").value(1000.0));
+    }
+
+    @Test
+    public void updateCreditCardBalanceAsync_Accepted() throws Exception {
+        // Arrange
+        UpdateBalancePayload[] payloads = { new UpdateBalancePayload() };
+        given(balanceIngestionService.submit(any(UpdateBalancePayload[].class)))
+                .willReturn(new IngestTicketView("ticket-1", IngestTicketView.Status.QUEUED, 1, 1, 0, 0, null));
+
+        // Act & Assert
+        mockMvc.perform(post("/credit-card:update-balance-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(payloads)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.ticketId").value("ticket-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    @Test
+    public void getUpdateBalanceStatus_Successful() throws Exception {
+        // Arrange
+        given(balanceIngestionService.getTicket("ticket-1"))
+                .willReturn(new IngestTicketView("ticket-1", IngestTicketView.Status.COMPLETED, 1, 1, 1, 0, null));
+
+        // Act & Assert
+        mockMvc.perform(get("/credit-card:update-balance-status").param("ticketId", "ticket-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.completedParts").value(1));
+    }
+
+    @Test
+    public void getCardLookupStats_Successful() throws Exception {
+        // Arrange
+        given(creditCardService.getCardLookupStats()).willReturn(new CardLookupStatsView(5, 2, 7, 1, 2));
+
+        // Act & Assert
+        mockMvc.perform(get("/credit-card:lookup-stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits").value(5))
+                .andExpect(jsonPath("$.bloomRejections").value(7))
+                .andExpect(jsonPath("$.falsePositives").value(1));
+    }
+
+
+    /**
+     * Let the service write the given cards to the output it is handed, as the real one does
+     */
+    private void givenCardsWritten(int userId, List<CreditCardView> cards) throws Exception {
+        given(creditCardService.writeCreditCardsByUserId(eq(userId), isNull(), isNull(), any())).willAnswer(invocation -> {
+            try (OutputStream output = invocation.getArgument(3, BalanceExportService.OutputOpener.class).open()) {
+                output.write(asJsonString(cards).getBytes(StandardCharsets.UTF_8));
+            }
+            return (long) cards.size();
+        });
+    }
 
     // Utility method to convert object to JSON string
     private static String asJsonString(final Object obj) {
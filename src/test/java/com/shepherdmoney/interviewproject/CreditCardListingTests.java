@@ -0,0 +1,184 @@
+package com.shepherdmoney.interviewproject;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
+import com.shepherdmoney.interviewproject.vo.response.CreditCardView;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Card listings are read as a projection without loading card entities: keyset pages must cover every card
+ * of a user exactly once in id order, a listing cut short must not look complete, and the projection is
+ * compared with mapping loaded entities on a user with many cards.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+@SpyBean(CreditCardRepository.class)
+public class CreditCardListingTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(CreditCardListingTests.class);
+
+    private static final int CARDS = 5_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void keysetPagesCoverEveryCardOnce() throws Exception {
+        // Arrange
+        int userId = createUserWithCards(1_000);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Act: pages of 300 until an empty one
+        List<List<CreditCardView>> pages = new ArrayList<>();
+        Integer afterId = null;
+        List<CreditCardView> page;
+        do {
+            page = list(userId, afterId, 300);
+            pages.add(page);
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        } while (!page.isEmpty());
+        long entitiesLoaded = statistics.getEntityLoadCount();
+
+        // Assert
+        assertEquals(List.of(300, 300, 300, 100, 0), pages.stream().map(List::size).toList());
+        List<CreditCardView> paged = pages.stream().flatMap(List::stream).toList();
+        assertEquals(list(userId, null, null), paged);
+        assertEquals(creditCardService.getCreditCardsByUserId(userId), paged);
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue(paged.get(i - 1).getId() < paged.get(i).getId());
+        }
+        assertEquals(0, entitiesLoaded);
+    }
+
+    @Test
+    public void unknownUserAndInvalidLimit() throws Exception {
+        mockMvc.perform(get("/credit-card:all").param("userId", "-1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+        mockMvc.perform(get("/credit-card:all").param("userId", "-1").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void failedListingIsNotClosed() {
+        // Arrange: the cursor fails after the first card
+        int userId = createUserWithCards(1);
+        doAnswer(invocation -> Stream.concat(Stream.of(new CreditCardView("Corporate Bank", "first", 1)),
+                Stream.<CreditCardView>generate(() -> {
+                    throw new IllegalStateException("cursor failed");
+                }))).when(creditCardRepository).streamViewsByUserId(eq(userId), anyInt(), any());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        assertThrows(IllegalStateException.class,
+                () -> creditCardService.writeCreditCardsByUserId(userId, null, null, () -> output));
+
+        // Assert: the first card was written, the array was not closed
+        String written = output.toString();
+        assertTrue(written.startsWith("[{"), written);
+        assertFalse(written.endsWith("]"), written);
+    }
+
+    @Test
+    public void projectionBeatsMappingLoadedEntities() throws Exception {
+        // Arrange
+        int userId = createUserWithCards(CARDS);
+        creditCardService.getCreditCardsByUserId(userId);
+
+        // Act: best of three rounds each, both serialized to the same JSON
+        double projectionMillis = Double.MAX_VALUE;
+        double entityMillis = Double.MAX_VALUE;
+        List<CreditCardView> projected = List.of();
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            projected = creditCardService.getCreditCardsByUserId(userId);
+            objectMapper.writeValueAsString(projected);
+            projectionMillis = Math.min(projectionMillis, (System.nanoTime() - start) / 1e6);
+            start = System.nanoTime();
+            List<CreditCardView> mapped = new ArrayList<>();
+            for (CreditCard card : creditCardRepository.findByUserId(userId)) {
+                mapped.add(new CreditCardView(card.getIssuanceBank(), card.getNumber(), card.getId()));
+            }
+            objectMapper.writeValueAsString(mapped);
+            entityMillis = Math.min(entityMillis, (System.nanoTime() - start) / 1e6);
+        }
+
+        // Assert
+        logger.info("listing {} cards of a user: projection {} ms, loaded entities {} ms",
+                CARDS, String.format("%.1f", projectionMillis), String.format("%.1f", entityMillis));
+        assertEquals(CARDS, projected.size());
+        assertTrue(projectionMillis < entityMillis, "the projection must be faster than loading the entities");
+    }
+
+    private List<CreditCardView> list(int userId, Integer afterId, Integer limit) throws Exception {
+        var request = get("/credit-card:all").param("userId", String.valueOf(userId));
+        if (afterId != null) {
+            request.param("afterId", String.valueOf(afterId));
+        }
+        if (limit != null) {
+            request.param("limit", String.valueOf(limit));
+        }
+        String response = mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, new TypeReference<>() {
+        });
+    }
+
+    private int createUserWithCards(int cards) {
+        int userId = createUser().getId();
+        List<AddCreditCardToUserPayload> payloads = new ArrayList<>();
+        for (int i = 0; i < cards; i++) {
+            AddCreditCardToUserPayload payload = new AddCreditCardToUserPayload();
+            payload.setUserId(userId);
+            payload.setCardIssuanceBank("Corporate Bank");
+            payload.setCardNumber(UUID.randomUUID().toString());
+            payloads.add(payload);
+        }
+        creditCardService.createCardsForUsers(payloads);
+        return userId;
+    }
+}
@@ -0,0 +1,131 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.model.User;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * p99 latency of /credit-card:user-id while slow update-balance batches keep the server busy, once with the
+ * Tomcat platform thread pool and once with virtual threads. The pool is kept small so the updaters alone can
+ * occupy every platform thread. The virtual thread run needs a Java 21 runtime and is skipped otherwise.
+ * Every run starts its own application, whose repositories are autowired into the fixtures.
+ */
+public class ExecutionModeBenchmarkTests extends BalanceFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionModeBenchmarkTests.class);
+
+    private static final int TOMCAT_THREADS = 8;
+
+    private static final int UPDATERS = 16;
+
+    private static final int SLOW_CARDS = 8;
+
+    private static final int HISTORY_DAYS = 500;
+
+    private static final int LOOKUPS = 100;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    public void lookupLatencyUnderUpdates_PlatformThreads() throws Exception {
+        runBenchmark("platform");
+    }
+
+    @Test
+    public void lookupLatencyUnderUpdates_VirtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+        runBenchmark("virtual");
+    }
+
+    private void runBenchmark(String mode) throws Exception {
+        try (ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(InterviewProjectApplication.class)
+                .run("--server.port=0",
+                        "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "--execution.mode=" + mode,
+                        "--spring.datasource.url=jdbc:h2:mem:execution-" + mode + ";DB_CLOSE_DELAY=-1")) {
+            // Arrange: a card to look up and cards whose every update rewrites their whole history
+            String baseUrl = "http://localhost:" + context.getWebServer().getPort();
+            context.getAutowireCapableBeanFactory().autowireBean(this);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            User user = createUser();
+            String lookupNumber = createCard(user).getNumber();
+            List<String> slowNumbers = new ArrayList<>();
+            for (int i = 0; i < SLOW_CARDS; i++) {
+                CreditCard card = createCard(user);
+                jdbcTemplate.update("INSERT INTO balance_history (id, balance, date, credit_card_id) " +
+                                "SELECT -(? * 100000 + X), X, DATEADD('DAY', -X, CURRENT_DATE), ? FROM SYSTEM_RANGE(1, ?)",
+                        i, card.getId(), HISTORY_DAYS);
+                slowNumbers.add(card.getNumber());
+            }
+            String earliest = LocalDate.now().minusDays(HISTORY_DAYS).toString();
+
+            // Act: updaters post backdated batches until the lookups are done
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicInteger updates = new AtomicInteger();
+            ExecutorService updaters = Executors.newFixedThreadPool(UPDATERS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < UPDATERS; i++) {
+                String number = slowNumbers.get(i % SLOW_CARDS);
+                futures.add(updaters.submit(() -> {
+                    int amount = 0;
+                    while (running.get()) {
+                        String body = "[{\"creditCardNumber\":\"" + number + "\",\"balanceDate\":\"" + earliest
+                                + "\",\"balanceAmount\":" + (amount++ % 1000) + "}]";
+                        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/credit-card:update-balance"))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+                        assertTrue(response.statusCode() == 200 || response.statusCode() == 503, response.body());
+                        updates.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            Thread.sleep(1_000);
+            long[] samples = new long[LOOKUPS];
+            HttpRequest lookup = HttpRequest.newBuilder(URI.create(baseUrl + "/credit-card:user-id?creditCardNumber=" + lookupNumber)).GET().build();
+            for (int i = 0; i < LOOKUPS; i++) {
+                long begin = System.nanoTime();
+                HttpResponse<String> response = httpClient.send(lookup, HttpResponse.BodyHandlers.ofString());
+                samples[i] = System.nanoTime() - begin;
+                assertEquals(200, response.statusCode());
+                assertEquals(String.valueOf(user.getId()), response.body());
+            }
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+            updaters.shutdown();
+
+            // Assert
+            Arrays.sort(samples);
+            logger.info("{} threads: lookup p50 {} ms, p99 {} ms with {} updaters, {} update batches completed",
+                    mode, String.format("%.3f", samples[LOOKUPS / 2] / 1e6),
+                    String.format("%.3f", samples[(int) (LOOKUPS * 0.99) - 1] / 1e6), UPDATERS, updates.get());
+            assertTrue(updates.get() > 0);
+        }
+    }
+}
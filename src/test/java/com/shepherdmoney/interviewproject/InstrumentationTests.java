@@ -0,0 +1,138 @@
+package com.shepherdmoney.interviewproject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Service timers, per-request statement counts, balance update work and the slow request log. Every request
+ * counts as slow here, so the slow request path runs as well.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "instrumentation.slow-request-threshold=PT0S"
+})
+@AutoConfigureMockMvc
+public class InstrumentationTests extends BalanceFixtures {
+
+    private static final String UPDATE_BALANCE = "/credit-card:update-balance";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void updateBalance_IsMeasured() throws Exception {
+        // Arrange: balances 12 and 10 days ago, so a same-day update fills day 11 and the 9 days before today
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        saveHistory(card, today.minusDays(10), 100);
+        saveHistory(card, today.minusDays(12), 80);
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(card.getNumber());
+        payload.setBalanceDate(today);
+        payload.setBalanceAmount(150);
+
+        long serviceCalls = serviceTimer().count();
+        long requests = statementsSummary().count();
+        double statements = statementsSummary().totalAmount();
+        double gapRows = batchSummary("balance.update.gap.rows").totalAmount();
+        double rowsTouched = batchSummary("balance.update.rows.touched").totalAmount();
+        double slowRequests = slowCounter().count();
+
+        // Act
+        mockMvc.perform(post(UPDATE_BALANCE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UpdateBalancePayload[]{payload})))
+                .andExpect(status().isOk());
+
+        // Assert: 10 gap rows and the new entry of today, the earlier entries keep their balances
+        assertEquals(serviceCalls + 1, serviceTimer().count());
+        assertEquals(requests + 1, statementsSummary().count());
+        assertTrue(statementsSummary().totalAmount() - statements >= 3, "card, history and insert statements");
+        assertEquals(10, batchSummary("balance.update.gap.rows").totalAmount() - gapRows);
+        assertEquals(11, batchSummary("balance.update.rows.touched").totalAmount() - rowsTouched);
+        assertEquals(slowRequests + 1, slowCounter().count());
+    }
+
+    @Test
+    public void backdatedUpdate_CountsRewrittenRows() throws Exception {
+        // Arrange: yesterday and the 2 days before it exist, changing the oldest rewrites all 3
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        for (int day = 1; day <= 3; day++) {
+            saveHistory(card, today.minusDays(day), 100);
+        }
+        UpdateBalancePayload payload = new UpdateBalancePayload();
+        payload.setCreditCardNumber(card.getNumber());
+        payload.setBalanceDate(today.minusDays(3));
+        payload.setBalanceAmount(120);
+        double rowsTouched = batchSummary("balance.update.rows.touched").totalAmount();
+
+        // Act
+        mockMvc.perform(post(UPDATE_BALANCE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UpdateBalancePayload[]{payload})))
+                .andExpect(status().isOk());
+
+        // Assert
+        assertEquals(3, batchSummary("balance.update.rows.touched").totalAmount() - rowsTouched);
+    }
+
+    @Test
+    public void metricsEndpoint_ListsServiceTimers() throws Exception {
+        mockMvc.perform(get("/credit-card:lookup-stats")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/service.calls")).andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/http.server.requests.statements")).andExpect(status().isOk());
+    }
+
+    private Timer serviceTimer() {
+        return Timer.builder("service.calls")
+                .tag("service", "CreditCardService")
+                .tag("method", "updateBalanceHistory")
+                .tag("exception", "none")
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary statementsSummary() {
+        return DistributionSummary.builder("http.server.requests.statements")
+                .tag("method", "POST")
+                .tag("uri", UPDATE_BALANCE)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary batchSummary(String name) {
+        return DistributionSummary.builder(name).tag("batch.size", "1").register(meterRegistry);
+    }
+
+    private Counter slowCounter() {
+        return Counter.builder("http.server.requests.slow")
+                .tag("method", "POST")
+                .tag("uri", UPDATE_BALANCE)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,10 @@
+package com.shepherdmoney.interviewproject;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class JpaBalanceStoreContractTests extends BalanceStoreContractTests {
+}
@@ -0,0 +1,113 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimeline;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.store.MappedBalanceStore;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The store contract against memory-mapped segments, plus compaction and replay of the segment files.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:mapped;DB_CLOSE_DELAY=-1",
+        "balance.store.type=MAPPED"
+})
+public class MappedBalanceStoreContractTests extends BalanceStoreContractTests {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void compactionAndReplayKeepLatestSegments() throws IOException {
+        // Arrange: 4 KB regions, card 1 rewritten 20 times, card 2 written once
+        BalanceProperties properties = new BalanceProperties();
+        properties.getStore().setDirectory(directory.toString());
+        properties.getStore().setRegionSize(DataSize.ofKilobytes(4));
+        MappedBalanceStore store = new MappedBalanceStore(properties);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+
+        // Act
+        for (int version = 0; version < 20; version++) {
+            store.saveAll(List.of(), Map.of(1, timeline(start, 100, version)));
+        }
+        store.saveAll(List.of(), Map.of(2, timeline(start, 10, 1_000)));
+        store.close();
+        MappedBalanceStore reopened = new MappedBalanceStore(properties);
+
+        // Assert: without compaction the 21 segments of 1.2 KB would fill 7 regions
+        assertTrue(regionFiles() <= 3, regionFiles() + " region files");
+        for (MappedBalanceStore reading : List.of(store, reopened)) {
+            assertEquals(100, reading.findBalancesBetween(1, start, start.plusDays(200)).size());
+            assertEquals(new BalanceHistoryView(start.plusDays(99), 99 + 19),
+                    reading.findBalanceOnDate(1, start.plusDays(99)).orElseThrow());
+            assertEquals(new BalanceHistoryView(start.plusDays(9), 9 + 1_000),
+                    reading.findLatestBalanceOnOrBefore(2, start.plusDays(50)).orElseThrow());
+            assertTrue(reading.findFirstBalanceOnOrAfter(2, start.plusDays(10)).isEmpty());
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void rolledBackSegmentsAreNotReplayed() throws IOException {
+        // Arrange
+        BalanceProperties properties = new BalanceProperties();
+        properties.getStore().setDirectory(directory.toString());
+        MappedBalanceStore store = new MappedBalanceStore(properties);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        store.saveAll(List.of(), Map.of(1, timeline(start, 10, 0)));
+
+        // Act: a rolled back rewrite of card 1, then a committed write of card 2
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.saveAll(List.of(), Map.of(1, timeline(start, 10, 1_000)));
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        store.saveAll(List.of(), Map.of(2, timeline(start, 10, 2_000)));
+        store.close();
+        MappedBalanceStore reopened = new MappedBalanceStore(properties);
+
+        // Assert
+        for (MappedBalanceStore reading : List.of(store, reopened)) {
+            assertEquals(new BalanceHistoryView(start.plusDays(9), 9), reading.findBalanceOnDate(1, start.plusDays(9)).orElseThrow());
+            assertEquals(new BalanceHistoryView(start.plusDays(9), 2_009), reading.findBalanceOnDate(2, start.plusDays(9)).orElseThrow());
+        }
+        reopened.close();
+    }
+
+    private long regionFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static BalanceTimeline timeline(LocalDate start, int days, long offset) {
+        int[] epochDays = new int[days];
+        long[] balances = new long[days];
+        for (int i = 0; i < days; i++) {
+            epochDays[i] = BalanceTimeline.toEpochDay(start.plusDays(i));
+            balances[i] = i + offset;
+        }
+        return new BalanceTimeline(epochDays, balances);
+    }
+}
@@ -0,0 +1,350 @@
+package com.shepherdmoney.interviewproject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.cache.CardLookupCache;
+import com.shepherdmoney.interviewproject.config.WorkloadProperties;
+import com.shepherdmoney.interviewproject.model.User;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.vo.request.AddCreditCardToUserPayload;
+import com.shepherdmoney.interviewproject.vo.request.CreateUserPayload;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.IngestTicketView;
+import com.shepherdmoney.interviewproject.workload.WorkloadDataset;
+import com.shepherdmoney.interviewproject.workload.WorkloadGenerator;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Every endpoint runs against a small dataset (1 card, 5 days of history, single payloads) and a large one
+ * (20 cards, 400 days, 10 payloads per card), and its selects and single writes must stay within the same
+ * fixed bounds on both. Inserts and updates of many rows must go out as JDBC batches, so batches and
+ * sequence calls are only allowed to grow with the rows they carry. An N+1 pattern fails the bounds.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+@Import(SqlStatementCapture.Config.class)
+public class QueryCountRegressionTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCountRegressionTests.class);
+
+    // spring.jpa.properties.hibernate.jdbc.batch_size and the allocation size of the id sequences
+    private static final int JDBC_BATCH_SIZE = 100;
+
+    private static final int ID_BLOCK_SIZE = 50;
+
+    // Distinct batched statements a request may issue, each may leave one partial batch and one id block
+    private static final int MAX_BATCHED_STATEMENTS = 3;
+
+    private static final AtomicLong seeds = new AtomicLong(1_000);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SqlStatementCapture sqlStatementCapture;
+
+    @Autowired
+    private WorkloadGenerator workloadGenerator;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardLookupCache cardLookupCache;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    private enum Size {
+        SMALL(1, 5, 1),
+        LARGE(20, 400, 10);
+
+        private final int cards;
+
+        private final int historyDays;
+
+        private final int payloadsPerCard;
+
+        Size(int cards, int historyDays, int payloadsPerCard) {
+            this.cards = cards;
+            this.historyDays = historyDays;
+            this.payloadsPerCard = payloadsPerCard;
+        }
+    }
+
+    private record Scenario(WorkloadDataset dataset, Size size) {
+    }
+
+    @Test
+    public void createUser() throws Exception {
+        assertBounded("PUT /user", 0, 0, scenario -> {
+            CreateUserPayload payload = new CreateUserPayload();
+            payload.setName("counted");
+            payload.setEmail("counted@example.com");
+            return put("/user").contentType(MediaType.APPLICATION_JSON).content(json(payload));
+        });
+    }
+
+    @Test
+    public void bulkCreateUsers() throws Exception {
+        // One user per payload of the scenario, all of them batched
+        assertBounded("PUT /user:bulk", 0, 0, scenario -> {
+            List<CreateUserPayload> payloads = new ArrayList<>();
+            for (int i = 0; i < scenario.size().cards * scenario.size().payloadsPerCard; i++) {
+                CreateUserPayload payload = new CreateUserPayload();
+                payload.setName("counted " + i);
+                payload.setEmail("counted@example.com");
+                payloads.add(payload);
+            }
+            return put("/user:bulk").contentType(MediaType.APPLICATION_JSON).content(json(payloads));
+        });
+    }
+
+    @Test
+    public void deleteUser() throws Exception {
+        // The card ids before the card locks and again under the locked user row, then one DELETE each for
+        // history, deltas, cards and the user
+        assertBounded("DELETE /user", 3, 4, scenario ->
+                delete("/user").param("userId", String.valueOf(scenario.dataset().firstUserId())));
+    }
+
+    @Test
+    public void bulkDeleteUsers() throws Exception {
+        assertBounded("POST /user:bulk-delete", 3, 4, scenario -> {
+            User user = new User();
+            user.setName("deleted");
+            user.setEmail("deleted@example.com");
+            int[] userIds = {scenario.dataset().firstUserId(), userRepository.save(user).getId()};
+            return post("/user:bulk-delete").contentType(MediaType.APPLICATION_JSON).content(json(userIds));
+        });
+    }
+
+    @Test
+    public void addCreditCard() throws Exception {
+        assertBounded("POST /credit-card", 1, 0, scenario -> {
+            AddCreditCardToUserPayload payload = new AddCreditCardToUserPayload();
+            payload.setUserId(scenario.dataset().firstUserId());
+            payload.setCardIssuanceBank("Counted Bank");
+            payload.setCardNumber(UUID.randomUUID().toString());
+            return post("/credit-card").contentType(MediaType.APPLICATION_JSON).content(json(payload));
+        });
+    }
+
+    @Test
+    public void bulkAddCreditCards() throws Exception {
+        // The existing users and the taken numbers, each with one IN query whatever the number of cards
+        assertBounded("POST /credit-card:bulk", 2, 0, scenario -> {
+            List<AddCreditCardToUserPayload> payloads = new ArrayList<>();
+            for (int i = 0; i < scenario.size().cards * scenario.size().payloadsPerCard; i++) {
+                AddCreditCardToUserPayload payload = new AddCreditCardToUserPayload();
+                payload.setUserId(scenario.dataset().firstUserId());
+                payload.setCardIssuanceBank("Counted Bank");
+                payload.setCardNumber(UUID.randomUUID().toString());
+                payloads.add(payload);
+            }
+            return post("/credit-card:bulk").contentType(MediaType.APPLICATION_JSON).content(json(payloads));
+        });
+    }
+
+    @Test
+    public void getAllCardsOfUser() throws Exception {
+        assertBounded("GET /credit-card:all", 1, 0, scenario ->
+                get("/credit-card:all").param("userId", String.valueOf(scenario.dataset().firstUserId())));
+    }
+
+    @Test
+    public void getPageOfCardsOfUser() throws Exception {
+        assertBounded("GET /credit-card:all (page)", 1, 0, scenario ->
+                get("/credit-card:all").param("userId", String.valueOf(scenario.dataset().firstUserId()))
+                        .param("afterId", String.valueOf(scenario.dataset().firstCardId())).param("limit", "5"));
+    }
+
+    @Test
+    public void getUserIdForCreditCard() throws Exception {
+        assertBounded("GET /credit-card:user-id", 1, 0, scenario -> {
+            String number = scenario.dataset().cardNumber(scenario.size().cards);
+            cardLookupCache.invalidate(number);
+            return get("/credit-card:user-id").param("creditCardNumber", number);
+        });
+    }
+
+    @Test
+    public void updateBalance() throws Exception {
+        // Card ids, the cards and their histories, each with one IN query whatever the batch size
+        assertBounded("POST /credit-card:update-balance", 3, 0, scenario ->
+                post("/credit-card:update-balance").contentType(MediaType.APPLICATION_JSON).content(json(payloads(scenario))));
+    }
+
+    @Test
+    public void updateBalanceAsync() throws Exception {
+        for (Size size : Size.values()) {
+            Scenario scenario = scenario(size);
+            UpdateBalancePayload[] payloads = payloads(scenario);
+
+            sqlStatementCapture.begin();
+            String response = mockMvc.perform(post("/credit-card:update-balance-async")
+                            .contentType(MediaType.APPLICATION_JSON).content(json(payloads)))
+                    .andExpect(status().isAccepted())
+                    .andReturn().getResponse().getContentAsString();
+            String ticketId = objectMapper.readValue(response, IngestTicketView.class).getTicketId();
+            IngestTicketView ticket;
+            do {
+                Thread.sleep(20);
+                ticket = objectMapper.readValue(mockMvc.perform(get("/credit-card:update-balance-status").param("ticketId", ticketId))
+                        .andExpect(status().isOk()).andReturn().getResponse().getContentAsString(), IngestTicketView.class);
+            } while (ticket.getStatus() == IngestTicketView.Status.QUEUED || ticket.getStatus() == IngestTicketView.Status.RUNNING);
+            SqlStatementCapture.Counts counts = sqlStatementCapture.end();
+
+            assertTrue(ticket.getStatus() == IngestTicketView.Status.COMPLETED, ticket.toString());
+            assertCounts("POST /credit-card:update-balance-async", scenario, counts, 4, 0);
+        }
+    }
+
+    @Test
+    public void importBalances() throws Exception {
+        assertBounded("POST /credit-card:import-balances", 4, 0, scenario -> {
+            StringBuilder ndjson = new StringBuilder();
+            for (UpdateBalancePayload payload : payloads(scenario)) {
+                ndjson.append(json(payload)).append('\n');
+            }
+            return post("/credit-card:import-balances").contentType("application/x-ndjson").content(ndjson.toString());
+        });
+    }
+
+    @Test
+    public void exportBalancesOfCard() throws Exception {
+        // The scope lookup and the cursor; the writes switch H2 lazy query execution on and off again
+        assertBounded("GET /credit-card:export-balances (card)", 2, 2, scenario ->
+                get("/credit-card:export-balances").param("creditCardNumber", scenario.dataset().cardNumber(1)));
+    }
+
+    @Test
+    public void exportBalancesOfUser() throws Exception {
+        assertBounded("GET /credit-card:export-balances (user)", 2, 2, scenario ->
+                get("/credit-card:export-balances").param("userId", String.valueOf(scenario.dataset().firstUserId())).param("format", "CSV"));
+    }
+
+    @Test
+    public void getBalanceOnDate() throws Exception {
+        assertBounded("GET /credit-card:balance", 2, 0, scenario -> {
+            balanceTimelineCache.invalidate(scenario.dataset().firstCardId());
+            return get("/credit-card:balance").param("creditCardNumber", scenario.dataset().cardNumber(1))
+                    .param("date", LocalDate.now().minusDays(2).toString());
+        });
+    }
+
+    @Test
+    public void getNearestBalance() throws Exception {
+        assertBounded("GET /credit-card:balance-nearest", 2, 0, scenario -> {
+            balanceTimelineCache.invalidate(scenario.dataset().firstCardId());
+            return get("/credit-card:balance-nearest").param("creditCardNumber", scenario.dataset().cardNumber(1))
+                    .param("date", LocalDate.now().minusDays(1000).toString());
+        });
+    }
+
+    @Test
+    public void getBalanceHistory() throws Exception {
+        assertBounded("GET /credit-card:balance-history", 2, 0, scenario -> {
+            balanceTimelineCache.invalidate(scenario.dataset().firstCardId());
+            return get("/credit-card:balance-history").param("creditCardNumber", scenario.dataset().cardNumber(1))
+                    .param("from", LocalDate.now().minusDays(1000).toString())
+                    .param("to", LocalDate.now().toString());
+        });
+    }
+
+    @Test
+    public void getCardLookupStats() throws Exception {
+        assertBounded("GET /credit-card:lookup-stats", 0, 0, scenario -> get("/credit-card:lookup-stats"));
+    }
+
+    /**
+     * Send the request built for the small and for the large scenario and check the statements of both
+     */
+    private void assertBounded(String endpoint, int maxSelects, int maxWrites, Function<Scenario, RequestBuilder> request) throws Exception {
+        for (Size size : Size.values()) {
+            Scenario scenario = scenario(size);
+            RequestBuilder builder = request.apply(scenario);
+
+            sqlStatementCapture.begin();
+            int status = mockMvc.perform(builder).andReturn().getResponse().getStatus();
+            SqlStatementCapture.Counts counts = sqlStatementCapture.end();
+
+            assertTrue(status >= 200 && status < 300, endpoint + " answered " + status);
+            assertCounts(endpoint, scenario, counts, maxSelects, maxWrites);
+        }
+    }
+
+    private static void assertCounts(String endpoint, Scenario scenario, SqlStatementCapture.Counts counts, int maxSelects, int maxWrites) {
+        String context = endpoint + " with " + scenario.size() + " data: " + counts + "\n" + String.join("\n", counts.statements());
+        logger.info("{} on {} cards x {} days: {}", endpoint, scenario.size().cards, scenario.size().historyDays, counts);
+        assertTrue(counts.selects() <= maxSelects, context);
+        assertTrue(counts.writes() <= maxWrites, context);
+        assertTrue(counts.batches() <= MAX_BATCHED_STATEMENTS + counts.batchedRows() / JDBC_BATCH_SIZE, context);
+        assertTrue(counts.sequenceCalls() <= MAX_BATCHED_STATEMENTS + counts.batchedRows() / ID_BLOCK_SIZE, context);
+    }
+
+    private Scenario scenario(Size size) {
+        WorkloadProperties.Generate settings = new WorkloadProperties.Generate();
+        settings.setUsers(1);
+        settings.setCardsPerUser(size.cards);
+        settings.setHistoryDays(size.historyDays);
+        settings.setSeed(seeds.incrementAndGet());
+        return new Scenario(workloadGenerator.generate(settings), size);
+    }
+
+    /**
+     * Backdated payloads spread over the history of every card, the last one of each card for today
+     */
+    private static UpdateBalancePayload[] payloads(Scenario scenario) {
+        List<UpdateBalancePayload> payloads = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int card = 1; card <= scenario.size().cards; card++) {
+            for (int i = 1; i <= scenario.size().payloadsPerCard; i++) {
+                UpdateBalancePayload payload = new UpdateBalancePayload();
+                payload.setCreditCardNumber(scenario.dataset().cardNumber(card));
+                int daysAgo = i == scenario.size().payloadsPerCard ? 0 : scenario.size().historyDays * i / scenario.size().payloadsPerCard;
+                payload.setBalanceDate(today.minusDays(daysAgo));
+                payload.setBalanceAmount(100 * card + i);
+                payloads.add(payload);
+            }
+        }
+        return payloads.toArray(new UpdateBalancePayload[0]);
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.cache.BalanceTimelineCache;
+import com.shepherdmoney.interviewproject.config.BalanceProperties;
+import com.shepherdmoney.interviewproject.job.BalanceHistoryCompactor;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.BalanceHistoryView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sparse storage must answer every read exactly like dense storage while storing far fewer rows.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class SparseBalanceStorageTests extends BalanceFixtures {
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceProperties balanceProperties;
+
+    @Autowired
+    private BalanceTimelineCache balanceTimelineCache;
+
+    @Autowired
+    private BalanceHistoryCompactor balanceHistoryCompactor;
+
+    @AfterEach
+    public void restoreMode() {
+        balanceProperties.getStorage().setMode(BalanceProperties.StorageMode.DENSE);
+    }
+
+    @Test
+    public void sparseReadsMatchDenseReads() {
+        Random random = new Random(7);
+        LocalDate today = LocalDate.now();
+        for (int round = 0; round < 10; round++) {
+            // Arrange: the same seed history and payloads on a dense card and on a sparse card
+            CreditCard dense = createCard();
+            CreditCard sparse = createCard();
+            for (int i = 0; i < 3; i++) {
+                LocalDate date = today.minusDays(30 + 20 * i + random.nextInt(20));
+                long balance = random.nextInt(1000);
+                saveHistory(dense, date, balance);
+                saveHistory(sparse, date, balance);
+            }
+            UpdateBalancePayload[] densePayloads = new UpdateBalancePayload[20];
+            UpdateBalancePayload[] sparsePayloads = new UpdateBalancePayload[20];
+            for (int i = 0; i < densePayloads.length; i++) {
+                // The last payload lands on yesterday, so dense storage ends up without gaps
+                LocalDate date = i == densePayloads.length - 1 ? today.minusDays(1) : today.minusDays(random.nextInt(95) - 3);
+                long amount = random.nextInt(5) == 0 ? 0 : random.nextInt(1000);
+                densePayloads[i] = payload(dense, date, amount);
+                sparsePayloads[i] = payload(sparse, date, amount);
+            }
+
+            // Act
+            balanceProperties.getStorage().setMode(BalanceProperties.StorageMode.DENSE);
+            creditCardService.updateBalanceHistory(densePayloads);
+            List<BalanceHistoryView> denseHistory = fullHistory(dense);
+            balanceProperties.getStorage().setMode(BalanceProperties.StorageMode.SPARSE);
+            creditCardService.updateBalanceHistory(sparsePayloads);
+
+            // Assert: from the cache and from the database
+            assertEquals(denseHistory, fullHistory(sparse));
+            assertPointReadsMatch(denseHistory, sparse);
+            balanceTimelineCache.invalidate(sparse.getId());
+            assertEquals(denseHistory, fullHistory(sparse));
+            assertPointReadsMatch(denseHistory, sparse);
+            assertTrue(balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(sparse).size() <= denseHistory.size());
+        }
+    }
+
+    @Test
+    public void compactionKeepsObservableHistory() {
+        // Arrange: a dense card with long flat stretches
+        LocalDate today = LocalDate.now();
+        CreditCard card = createCard();
+        saveHistory(card, today.minusDays(400), 100);
+        creditCardService.updateBalanceHistory(new UpdateBalancePayload[]{
+                payload(card, today.minusDays(200), 250),
+                payload(card, today.minusDays(50), 50),
+                payload(card, today.plusDays(2), 50)});
+        List<BalanceHistoryView> denseHistory = fullHistory(card);
+        int denseRows = balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card).size();
+
+        // Act
+        balanceProperties.getStorage().setMode(BalanceProperties.StorageMode.SPARSE);
+        balanceHistoryCompactor.compactAll();
+
+        // Assert: only the change points and the future entry are left
+        assertEquals(List.of(
+                new BalanceHistoryView(today.minusDays(400), 100),
+                new BalanceHistoryView(today.minusDays(200), 250),
+                new BalanceHistoryView(today.minusDays(50), 50),
+                new BalanceHistoryView(today.plusDays(2), 50)
+        ), balanceHistoryRepository.findBalancesByCreditCardOrderByDateAsc(card));
+        assertEquals(401, denseRows);
+        assertEquals(denseHistory, fullHistory(card));
+    }
+
+    private List<BalanceHistoryView> fullHistory(CreditCard card) {
+        LocalDate today = LocalDate.now();
+        return creditCardService.getBalanceHistory(card.getNumber(), today.minusDays(500), today.plusDays(10));
+    }
+
+    private void assertPointReadsMatch(List<BalanceHistoryView> denseHistory, CreditCard sparse) {
+        for (BalanceHistoryView entry : denseHistory) {
+            assertEquals(entry, creditCardService.getBalanceOnDate(sparse.getNumber(), entry.getDate()));
+            assertEquals(entry, creditCardService.getNearestBalance(sparse.getNumber(), entry.getDate()));
+        }
+        LocalDate beforeHistory = denseHistory.get(0).getDate().minusDays(3);
+        assertEquals(denseHistory.get(0), creditCardService.getNearestBalance(sparse.getNumber(), beforeHistory));
+    }
+}
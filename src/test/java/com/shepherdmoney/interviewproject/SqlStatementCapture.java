@@ -0,0 +1,119 @@
+package com.shepherdmoney.interviewproject;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records every statement executed through the application DataSource, by JPA and JdbcTemplate alike and on
+ * any thread, between begin() and end(). Import {@link Config} to wrap the DataSource.
+ */
+public class SqlStatementCapture implements QueryExecutionListener {
+
+    /**
+     * Statements of one capture. A JDBC batch counts as one batch whatever its size, its rows are counted in
+     * batchedRows; sequence calls are counted apart from selects.
+     *
+     * @param writes Inserts, updates, deletes and session settings executed one at a time
+     */
+    public record Counts(int selects, int writes, int batches, int batchedRows, int sequenceCalls, List<String> statements) {
+
+        /**
+         * @return Round trips whose number must not grow with the data: selects and single writes
+         */
+        public int fixedRoundTrips() {
+            return selects + writes;
+        }
+
+        @Override
+        public String toString() {
+            return selects + " selects, " + writes + " writes, " + batches + " batches of " + batchedRows
+                    + " rows, " + sequenceCalls + " sequence calls";
+        }
+    }
+
+    @TestConfiguration
+    public static class Config {
+
+        @Bean
+        public SqlStatementCapture sqlStatementCapture() {
+            return new SqlStatementCapture();
+        }
+
+        @Bean
+        public static BeanPostProcessor sqlStatementCaptureProxy(ObjectProvider<SqlStatementCapture> capture) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        return ProxyDataSourceBuilder.create(dataSource).name(beanName).listener(capture.getObject()).build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    private final List<String> statements = new ArrayList<>();
+
+    private boolean capturing;
+
+    private int selects;
+
+    private int writes;
+
+    private int batches;
+
+    private int batchedRows;
+
+    private int sequenceCalls;
+
+    public synchronized void begin() {
+        statements.clear();
+        selects = 0;
+        writes = 0;
+        batches = 0;
+        batchedRows = 0;
+        sequenceCalls = 0;
+        capturing = true;
+    }
+
+    public synchronized Counts end() {
+        capturing = false;
+        return new Counts(selects, writes, batches, batchedRows, sequenceCalls, List.copyOf(statements));
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public synchronized void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (!capturing || queryInfoList.isEmpty()) {
+            return;
+        }
+        String sql = queryInfoList.get(0).getQuery().trim();
+        statements.add(sql);
+        String lower = sql.toLowerCase(Locale.ROOT);
+        if (lower.contains("next value for")) {
+            sequenceCalls++;
+        } else if (execInfo.isBatch()) {
+            batches++;
+            batchedRows += Math.max(execInfo.getBatchSize(), queryInfoList.get(0).getParametersList().size());
+        } else if (lower.startsWith("select") || lower.startsWith("with")) {
+            selects++;
+        } else {
+            writes++;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.service.BalanceIngestionService;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.vo.request.UpdateBalancePayload;
+import com.shepherdmoney.interviewproject.vo.response.IngestTicketView;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A bulkhead without any permit: every update-balance request is busy, queued ingestion parts still apply.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulkhead;DB_CLOSE_DELAY=-1",
+        "execution.max-concurrent-updates=0",
+        "execution.update-wait-timeout=PT0S"
+})
+public class UpdateBulkheadTests extends BalanceFixtures {
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private BalanceIngestionService balanceIngestionService;
+
+    @Test
+    public void updateBalanceHistory_RejectedWhenBusy() {
+        // Arrange
+        CreditCard card = createCard();
+        saveHistory(card, LocalDate.now().minusDays(1), 100);
+
+        // Act
+        BusinessException exception = assertThrows(BusinessException.class, () -> creditCardService.updateBalanceHistory(
+                new UpdateBalancePayload[]{payload(card, LocalDate.now(), 50)}));
+
+        // Assert
+        assertEquals(503, exception.getCode());
+    }
+
+    @Test
+    public void ingestionParts_BypassTheBulkhead() throws InterruptedException {
+        // Arrange
+        CreditCard card = createCard();
+        saveHistory(card, LocalDate.now().minusDays(1), 100);
+
+        // Act
+        IngestTicketView ticket = balanceIngestionService.submit(new UpdateBalancePayload[]{payload(card, LocalDate.now(), 50)});
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 30_000;
+        IngestTicketView done = balanceIngestionService.getTicket(ticket.getTicketId());
+        while ((done.getStatus() == IngestTicketView.Status.QUEUED || done.getStatus() == IngestTicketView.Status.RUNNING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            done = balanceIngestionService.getTicket(ticket.getTicketId());
+        }
+        assertEquals(IngestTicketView.Status.COMPLETED, done.getStatus(), done.getError());
+    }
+}
@@ -0,0 +1,131 @@
+package com.shepherdmoney.interviewproject;
+
+import com.shepherdmoney.interviewproject.config.WorkloadProperties;
+import com.shepherdmoney.interviewproject.exception.BusinessException;
+import com.shepherdmoney.interviewproject.model.CreditCard;
+import com.shepherdmoney.interviewproject.repository.BalanceHistoryRepository;
+import com.shepherdmoney.interviewproject.repository.CreditCardRepository;
+import com.shepherdmoney.interviewproject.repository.UserRepository;
+import com.shepherdmoney.interviewproject.response.ResponseEnum;
+import com.shepherdmoney.interviewproject.service.UserService;
+import com.shepherdmoney.interviewproject.workload.WorkloadDataset;
+import com.shepherdmoney.interviewproject.workload.WorkloadGenerator;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deleting users removes their cards and balance history with set-based statements, all or none, and is
+ * compared with removing the same rows entity by entity on users with 10 cards and 5 years of history.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class UserDeletionTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDeletionTests.class);
+
+    private static final int CARDS_PER_USER = 10;
+
+    private static final int HISTORY_DAYS = 5 * 365;
+
+    private static final AtomicLong seeds = new AtomicLong(23_000);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private WorkloadGenerator workloadGenerator;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CreditCardRepository creditCardRepository;
+
+    @Autowired
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void setBasedDeletionBeatsEntityRemoval() {
+        // Arrange: two users with 10 cards x 5 years each, one per approach
+        WorkloadDataset setBased = generate(1);
+        WorkloadDataset entityByEntity = generate(1);
+        List<CreditCard> cards = creditCardRepository.findByUserId(setBased.firstUserId());
+
+        // Act
+        long start = System.nanoTime();
+        String message = userService.deleteUser(setBased.firstUserId());
+        double setBasedMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        removeEntityByEntity(entityByEntity.firstUserId());
+        double entityMillis = (System.nanoTime() - start) / 1e6;
+
+        // Assert
+        logger.info("deleting a user with {} cards x {} days: set-based {} ms, entity by entity {} ms",
+                CARDS_PER_USER, HISTORY_DAYS, String.format("%.1f", setBasedMillis), String.format("%.1f", entityMillis));
+        assertEquals("User deleted successfully", message);
+        assertFalse(userRepository.existsById(setBased.firstUserId()));
+        assertEquals(CARDS_PER_USER, cards.size());
+        assertTrue(creditCardRepository.findIdsByUserIdIn(List.of(setBased.firstUserId())).isEmpty());
+        assertTrue(balanceHistoryRepository.findByCreditCardInOrderByDateAsc(cards).isEmpty());
+        assertTrue(setBasedMillis * 2 < entityMillis, "set-based deletion must be at least twice as fast");
+    }
+
+    @Test
+    public void bulkDeletionIsAllOrNothing() {
+        // Arrange
+        WorkloadDataset dataset = generate(3);
+        int[] userIds = {dataset.firstUserId(), dataset.firstUserId() + 1, dataset.firstUserId() + 2};
+
+        // Act: one unknown id rejects the whole request, then the three users go at once
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> userService.deleteUsers(new int[]{userIds[0], -1}));
+        boolean keptOnFailure = userRepository.existsById(userIds[0])
+                && creditCardRepository.findIdsByUserIdIn(List.of(userIds[0])).size() == CARDS_PER_USER;
+        int deleted = userService.deleteUsers(new int[]{userIds[0], userIds[1], userIds[2], userIds[0]});
+
+        // Assert
+        assertEquals(ResponseEnum.PARAM_EXCEPTION.getCode(), exception.getCode());
+        assertTrue(keptOnFailure);
+        assertEquals(3, deleted);
+        assertTrue(userRepository.findAllById(List.of(userIds[0], userIds[1], userIds[2])).isEmpty());
+        assertTrue(creditCardRepository.findIdsByUserIdIn(List.of(userIds[0], userIds[1], userIds[2])).isEmpty());
+    }
+
+    private WorkloadDataset generate(int users) {
+        WorkloadProperties.Generate settings = new WorkloadProperties.Generate();
+        settings.setUsers(users);
+        settings.setCardsPerUser(CARDS_PER_USER);
+        settings.setHistoryDays(HISTORY_DAYS);
+        settings.setSeed(seeds.incrementAndGet());
+        return workloadGenerator.generate(settings);
+    }
+
+    /**
+     * The removal the associations would need without set-based statements: load every entity, then delete it
+     */
+    private void removeEntityByEntity(int userId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<CreditCard> cards = creditCardRepository.findByUserId(userId);
+            balanceHistoryRepository.deleteAll(balanceHistoryRepository.findByCreditCardInOrderByDateAsc(cards));
+            creditCardRepository.deleteAll(cards);
+            userRepository.deleteById(userId);
+        });
+    }
+}
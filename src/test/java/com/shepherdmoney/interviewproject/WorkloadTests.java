@@ -0,0 +1,132 @@
+package com.shepherdmoney.interviewproject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shepherdmoney.interviewproject.config.WorkloadProperties;
+import com.shepherdmoney.interviewproject.service.CreditCardService;
+import com.shepherdmoney.interviewproject.workload.LatencyHistogram;
+import com.shepherdmoney.interviewproject.workload.WorkloadDataset;
+import com.shepherdmoney.interviewproject.workload.WorkloadGenerator;
+import com.shepherdmoney.interviewproject.workload.WorkloadReplayDriver;
+import com.shepherdmoney.interviewproject.workload.WorkloadReport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A small generated dataset must be complete and reproducible, and a short replay against it must succeed.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class WorkloadTests extends BalanceFixtures {
+
+    private static final int USERS = 2_000;
+
+    private static final int CARDS_PER_USER = 3;
+
+    private static final int HISTORY_DAYS = 30;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WorkloadGenerator workloadGenerator;
+
+    @Autowired
+    private CreditCardService creditCardService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void generatedDatasetIsCompleteAndReproducible() {
+        // Act
+        WorkloadDataset dataset = workloadGenerator.generate(settings(11));
+
+        // Assert: row counts within the reserved id ranges
+        int cards = USERS * CARDS_PER_USER;
+        assertEquals(USERS, count("SELECT COUNT(*) FROM my_user WHERE id BETWEEN ? AND ?",
+                dataset.firstUserId(), dataset.firstUserId() + USERS - 1));
+        assertEquals(cards, count("SELECT COUNT(*) FROM credit_card WHERE id BETWEEN ? AND ?",
+                dataset.firstCardId(), dataset.firstCardId() + cards - 1));
+        assertEquals((long) cards * HISTORY_DAYS, count("SELECT COUNT(*) FROM balance_history WHERE credit_card_id BETWEEN ? AND ? " +
+                        "AND date BETWEEN ? AND ?", dataset.firstCardId(), dataset.firstCardId() + cards - 1,
+                LocalDate.now().minusDays(HISTORY_DAYS), LocalDate.now().minusDays(1)));
+
+        // Card numbers are unique, recomputable and owned by the expected user
+        Set<String> numbers = new HashSet<>();
+        for (int card = 1; card <= cards; card++) {
+            numbers.add(dataset.cardNumber(card));
+        }
+        assertEquals(cards, numbers.size());
+        for (int card = 1; card <= cards; card += 97) {
+            assertEquals(dataset.userIdOf(card), creditCardService.getUserByCreditCardNumber(dataset.cardNumber(card)));
+        }
+        assertEquals(new WorkloadDataset(11, 0, USERS, CARDS_PER_USER, 0, HISTORY_DAYS).cardNumber(42), dataset.cardNumber(42));
+
+        // Entities saved through JPA afterwards get ids past the generated range
+        assertTrue(createUser().getId() >= dataset.firstUserId() + USERS);
+    }
+
+    @Test
+    public void replayRunsTheMixWithoutErrors() throws InterruptedException {
+        // Arrange
+        WorkloadDataset dataset = workloadGenerator.generate(settings(12));
+        WorkloadProperties.Replay replay = new WorkloadProperties.Replay();
+        replay.setRate(50);
+        replay.setDuration(Duration.ofSeconds(4));
+        replay.setThreads(8);
+
+        // Act
+        WorkloadReport report = new WorkloadReplayDriver("http://localhost:" + port, dataset, replay, objectMapper).run();
+
+        // Assert
+        assertEquals(200, report.endpoints().stream().mapToLong(WorkloadReport.EndpointStats::requests).sum());
+        for (WorkloadReport.EndpointStats stats : report.endpoints()) {
+            assertEquals(0, stats.errors(), stats.operation());
+            assertTrue(stats.p50Millis() <= stats.p99Millis() && stats.p99Millis() <= stats.maxMillis(), stats.operation());
+        }
+        assertNotNull(report.of("GET /credit-card:user-id"));
+    }
+
+    @Test
+    public void histogramPercentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000, histogram.valueAt(0.50), 50_000 / 256.0);
+        assertEquals(99_000, histogram.valueAt(0.99), 99_000 / 256.0);
+        assertTrue(histogram.valueAt(0.99) >= 99_000);
+        assertEquals(100_000, histogram.valueAt(1));
+    }
+
+    private WorkloadProperties.Generate settings(long seed) {
+        WorkloadProperties.Generate settings = new WorkloadProperties.Generate();
+        settings.setUsers(USERS);
+        settings.setCardsPerUser(CARDS_PER_USER);
+        settings.setHistoryDays(HISTORY_DAYS);
+        settings.setSeed(seed);
+        return settings;
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+}